@@ -0,0 +1,167 @@
+package com.mobdev.hellofiles;
+
+/**
+ * LogStore implementation backed by two parallel primitive arrays (timestamps and values).
+ * Each record costs 16 bytes without any per-object header or reference.
+ *
+ * The arrays are used as a growable ring buffer: the first log can be stored at any slot and the
+ * following ones wrap around the end of the arrays. Both add() and addToHead() cost O(1) and a
+ * removal shifts only the logs on the shorter side of the removed position.
+ */
+public class ArrayLogStore implements LogStore {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] timestamps = null;
+
+	private double[] values = null;
+
+	/*
+	 * Slot of the first log
+	 */
+	private int head = 0;
+
+	private int size = 0;
+
+	public ArrayLogStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ArrayLogStore(int capacity) {
+		capacity = Math.max(capacity, DEFAULT_CAPACITY);
+		this.timestamps = new long[capacity];
+		this.values = new double[capacity];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long getTimestamp(int position) {
+		checkPosition(position);
+		return timestamps[getSlot(position)];
+	}
+
+	@Override
+	public double getValue(int position) {
+		checkPosition(position);
+		return values[getSlot(position)];
+	}
+
+	@Override
+	public void getRange(int position, int count, long[] timestamps, double[] values, int offset) {
+
+		if(position < 0 || count < 0 || position + count > size)
+			throw new IndexOutOfBoundsException("Range: " + position + "+" + count + " Size: " + size);
+
+		//The range is copied in two parts when it wraps around the end of the arrays
+		int slot = getSlot(position);
+		int firstCount = Math.min(count, this.timestamps.length - slot);
+		System.arraycopy(this.timestamps, slot, timestamps, offset, firstCount);
+		System.arraycopy(this.values, slot, values, offset, firstCount);
+		System.arraycopy(this.timestamps, 0, timestamps, offset + firstCount, count - firstCount);
+		System.arraycopy(this.values, 0, values, offset + firstCount, count - firstCount);
+	}
+
+	@Override
+	public void add(long timestamp, double value) {
+		ensureCapacity(size + 1);
+		int slot = getSlot(size);
+		timestamps[slot] = timestamp;
+		values[slot] = value;
+		size++;
+	}
+
+	@Override
+	public void addToHead(long timestamp, double value) {
+		ensureCapacity(size + 1);
+		head = (head == 0 ? timestamps.length : head) - 1;
+		timestamps[head] = timestamp;
+		values[head] = value;
+		size++;
+	}
+
+	@Override
+	public void remove(int position) {
+
+		checkPosition(position);
+
+		if(position < size / 2) {
+			//Shift the previous logs forward and move the head
+			for(int i = position; i > 0; i--)
+				move(i - 1, i);
+			head = getSlot(1);
+		}
+		else {
+			//Shift the following logs backward
+			for(int i = position + 1; i < size; i++)
+				move(i, i - 1);
+		}
+
+		size--;
+
+		if(size == 0)
+			head = 0;
+	}
+
+	private void move(int fromPosition, int toPosition) {
+		int fromSlot = getSlot(fromPosition);
+		int toSlot = getSlot(toPosition);
+		timestamps[toSlot] = timestamps[fromSlot];
+		values[toSlot] = values[fromSlot];
+	}
+
+	/**
+	 * Remove all the logs keeping the arrays, so the store can be reused without allocating
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	@Override
+	public int indexOf(long timestamp, double value) {
+		long valueBits = Double.doubleToLongBits(value);
+		for(int i = 0; i < size; i++) {
+			int slot = getSlot(i);
+			if(timestamps[slot] == timestamp && Double.doubleToLongBits(values[slot]) == valueBits)
+				return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public LogStore copy() {
+		ArrayLogStore copy = new ArrayLogStore(size);
+		getRange(0, size, copy.timestamps, copy.values, 0);
+		copy.size = size;
+		return copy;
+	}
+
+	/*
+	 * Slot of the arrays storing the log at the target position
+	 */
+	private int getSlot(int position) {
+		int slot = head + position;
+		return slot >= timestamps.length ? slot - timestamps.length : slot;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > timestamps.length) {
+			int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+			long[] newTimestamps = new long[newCapacity];
+			double[] newValues = new double[newCapacity];
+			getRange(0, size, newTimestamps, newValues, 0);
+			timestamps = newTimestamps;
+			values = newValues;
+			head = 0;
+		}
+	}
+
+	private void checkPosition(int position) {
+		if(position < 0 || position >= size)
+			throw new IndexOutOfBoundsException("Position: " + position + " Size: " + size);
+	}
+}
@@ -0,0 +1,66 @@
+package com.mobdev.hellofiles;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of a stream of bits written by {@link BitWriter}. The bytes are loaded from the buffer
+ * in a long as needed, so reading a field costs a few shifts.
+ */
+public class BitReader {
+
+	private ByteBuffer buffer = null;
+
+	/*
+	 * Bits loaded and not read yet (the last availableBits bits of the long)
+	 */
+	private long available = 0;
+
+	private int availableBits = 0;
+
+	/**
+	 * @param buffer the stream from its position to its limit (the reader consumes it)
+	 */
+	public BitReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public boolean readBit() {
+		return readBits(1) != 0;
+	}
+
+	/**
+	 * @param count the number of bits (0 to 64)
+	 * @return the bits in the lowest positions of the result
+	 * @throws BufferUnderflowException if the stream ends before
+	 */
+	public long readBits(int count) {
+
+		if(count > 32) {
+			long high = readBits(count - 32);
+			return (high << 32) | readBits(32);
+		}
+
+		if(count == 0)
+			return 0;
+
+		//At most 7 + 32 bits are loaded
+		while(availableBits < count) {
+			available = (available << 8) | (buffer.get() & 0xFF);
+			availableBits += 8;
+		}
+
+		availableBits -= count;
+		return (available >>> availableBits) & (-1L >>> (64 - count));
+	}
+
+	/**
+	 * @return the number of bits of value 1 before the first 0, up to the maximum count (the 0 is read too)
+	 */
+	public int readOnes(int maxCount) {
+		int count = 0;
+		while(count < maxCount && readBit())
+			count++;
+		return count;
+	}
+}
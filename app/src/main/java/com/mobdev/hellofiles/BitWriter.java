@@ -0,0 +1,105 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Writer of a stream of bits in a growable byte array (the most significant bit of each byte first).
+ * The pending bits are kept in a long and moved to the array a byte at a time, so writing a field
+ * costs a few shifts. It can be reset and reused for the next stream.
+ */
+public class BitWriter {
+
+	private byte[] bytes = null;
+
+	private int length = 0;
+
+	/*
+	 * Bits not written in the array yet (the last pendingBits bits of the long)
+	 */
+	private long pending = 0;
+
+	private int pendingBits = 0;
+
+	/**
+	 * @param initialCapacity the initial size of the array in bytes
+	 */
+	public BitWriter(int initialCapacity) {
+		this.bytes = new byte[Math.max(initialCapacity, 8)];
+	}
+
+	/**
+	 * Discard the written bits
+	 */
+	public void reset() {
+		length = 0;
+		pending = 0;
+		pendingBits = 0;
+	}
+
+	public void writeBit(boolean bit) {
+		writeBits(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Write the lowest bits of the value
+	 * @param value the bits to write (the higher ones are ignored)
+	 * @param count the number of bits (0 to 64)
+	 */
+	public void writeBits(long value, int count) {
+
+		if(count > 32) {
+			writeBits(value >>> 32, count - 32);
+			count = 32;
+		}
+
+		if(count == 0)
+			return;
+
+		//At most 7 + 32 bits are pending
+		pending = (pending << count) | (value & (-1L >>> (64 - count)));
+		pendingBits += count;
+
+		while(pendingBits >= 8) {
+			pendingBits -= 8;
+			append((byte)(pending >>> pendingBits));
+		}
+	}
+
+	/**
+	 * @return the number of written bits
+	 */
+	public long getBitCount() {
+		return length * 8L + pendingBits;
+	}
+
+	/**
+	 * @return the number of bytes of the stream (the last byte is padded with zeros)
+	 */
+	public int getByteLength() {
+		return length + (pendingBits > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Pad the last byte with zeros. The bits written after are stored in the next byte.
+	 * @return the array containing the stream in its first getByteLength() bytes
+	 */
+	public byte[] finish() {
+
+		if(pendingBits > 0) {
+			append((byte)(pending << (8 - pendingBits)));
+			pendingBits = 0;
+		}
+
+		pending = 0;
+		return bytes;
+	}
+
+	private void append(byte b) {
+
+		if(length == bytes.length) {
+			byte[] largerBytes = new byte[bytes.length * 2];
+			System.arraycopy(bytes, 0, largerBytes, 0, length);
+			bytes = largerBytes;
+		}
+
+		bytes[length++] = b;
+	}
+}
@@ -0,0 +1,72 @@
+package com.mobdev.hellofiles;
+
+/**
+ * CRC-32C (Castagnoli) checksum used to validate the records stored on file.
+ *
+ * java.util.zip.CRC32C is available only from Android 8.0 (API 26), so the checksum is computed
+ * with the table-driven "slicing-by-8" algorithm: eight bytes are processed with eight table
+ * lookups and no branch, which is several times faster than the classic byte-at-a-time loop.
+ */
+public final class Crc32c {
+
+	/*
+	 * Reversed Castagnoli polynomial
+	 */
+	private static final int POLYNOMIAL = 0x82F63B78;
+
+	private static final int[][] TABLES = new int[8][256];
+
+	static {
+		for(int i = 0; i < 256; i++) {
+			int crc = i;
+			for(int bit = 0; bit < 8; bit++)
+				crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+			TABLES[0][i] = crc;
+		}
+
+		for(int i = 0; i < 256; i++)
+			for(int table = 1; table < 8; table++)
+				TABLES[table][i] = (TABLES[table - 1][i] >>> 8) ^ TABLES[0][TABLES[table - 1][i] & 0xFF];
+	}
+
+	private Crc32c() {
+	}
+
+	/**
+	 * @return the checksum of the target bytes
+	 */
+	public static int compute(byte[] bytes, int offset, int length) {
+		return update(0, bytes, offset, length);
+	}
+
+	/**
+	 * Continue a checksum with more bytes
+	 * @param crc the checksum of the previous bytes (0 for the first ones)
+	 * @return the checksum of all the bytes
+	 */
+	public static int update(int crc, byte[] bytes, int offset, int length) {
+
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+
+		crc = ~crc;
+		int end = offset + length;
+
+		while(end - offset >= 8) {
+
+			int low = crc ^ ((bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+					| (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24);
+
+			crc = t7[low & 0xFF] ^ t6[(low >>> 8) & 0xFF] ^ t5[(low >>> 16) & 0xFF] ^ t4[low >>> 24]
+					^ t3[bytes[offset + 4] & 0xFF] ^ t2[bytes[offset + 5] & 0xFF]
+					^ t1[bytes[offset + 6] & 0xFF] ^ t0[bytes[offset + 7] & 0xFF];
+
+			offset += 8;
+		}
+
+		while(offset < end)
+			crc = (crc >>> 8) ^ t0[(crc ^ bytes[offset++]) & 0xFF];
+
+		return ~crc;
+	}
+}
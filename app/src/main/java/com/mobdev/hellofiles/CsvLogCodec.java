@@ -0,0 +1,191 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+
+/**
+ * Comma separated values: a header line followed by a line for each log, e.g.
+ *
+ * timestamp,value,time
+ * 1585000000000,12.5,2020-03-23T21:46:40.000Z
+ *
+ * The time column is the ISO 8601 rendering of the timestamp for the spreadsheets and it is ignored
+ * by the import. The columns of the import are located by the header, so they can be in any order
+ * and the header can be omitted (timestamp and value are then the first two columns).
+ */
+public class CsvLogCodec extends LineLogCodec {
+
+	public static final String NAME = "csv";
+
+	public static final String TIMESTAMP_COLUMN = "timestamp";
+
+	public static final String VALUE_COLUMN = "value";
+
+	public static final String TIME_COLUMN = "time";
+
+	private static final char SEPARATOR = ',';
+
+	private static final char QUOTE = '"';
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getMimeType() {
+		return "text/csv";
+	}
+
+	@Override
+	public String getFileExtension() {
+		return "csv";
+	}
+
+	@Override
+	protected LineDecoder createDecoder() {
+		return new CsvDecoder();
+	}
+
+	@Override
+	protected LineEncoder createEncoder() {
+		return new LineEncoder() {
+
+			private LogTimestampFormatter timestampFormatter = LogTimestampFormatter.createIso8601();
+
+			@Override
+			protected void encodeHeader(StringBuilder builder) {
+				builder.append(TIMESTAMP_COLUMN).append(SEPARATOR).append(VALUE_COLUMN).append(SEPARATOR).append(TIME_COLUMN).append('\n');
+			}
+
+			@Override
+			protected void encode(long timestamp, double value, StringBuilder builder) {
+				builder.append(timestamp).append(SEPARATOR).append(value).append(SEPARATOR);
+				timestampFormatter.format(timestamp, builder);
+			}
+		};
+	}
+
+	private static class CsvDecoder extends LineDecoder {
+
+		private boolean isFirstLine = true;
+
+		private int timestampColumn = 0;
+
+		private int valueColumn = 1;
+
+		@Override
+		protected boolean decode(char[] chars, int start, int end) throws IOException {
+
+			if(isFirstLine) {
+				isFirstLine = false;
+
+				//A header starts with a name instead of a number (the first column of a log is the timestamp)
+				char first = chars[start] == QUOTE && start + 1 < end ? chars[start + 1] : chars[start];
+				if(Character.isLetter(first)) {
+					readHeader(chars, start, end);
+					return false;
+				}
+			}
+
+			int column = 0;
+			int fieldStart = start;
+			int decodedFields = 0;
+
+			while(fieldStart <= end && decodedFields < 2) {
+
+				int fieldEnd = findFieldEnd(chars, fieldStart, end);
+
+				if(column == timestampColumn) {
+					timestamp = parseTimestamp(chars, fieldStart, fieldEnd);
+					decodedFields++;
+				}
+				else if(column == valueColumn) {
+					value = parseValue(chars, fieldStart, fieldEnd);
+					decodedFields++;
+				}
+
+				column++;
+				fieldStart = fieldEnd + 1;
+			}
+
+			if(decodedFields < 2)
+				throw new IOException("Missing Timestamp or Value Column");
+
+			return true;
+		}
+
+		private void readHeader(char[] chars, int start, int end) throws IOException {
+
+			timestampColumn = -1;
+			valueColumn = -1;
+
+			int column = 0;
+			int fieldStart = start;
+
+			while(fieldStart <= end) {
+
+				int fieldEnd = findFieldEnd(chars, fieldStart, end);
+				String name = new String(chars, fieldStart, fieldEnd - fieldStart).trim();
+
+				if(name.length() >= 2 && name.charAt(0) == QUOTE && name.charAt(name.length() - 1) == QUOTE)
+					name = name.substring(1, name.length() - 1).trim();
+
+				if(TIMESTAMP_COLUMN.equalsIgnoreCase(name))
+					timestampColumn = column;
+				else if(VALUE_COLUMN.equalsIgnoreCase(name))
+					valueColumn = column;
+
+				column++;
+				fieldStart = fieldEnd + 1;
+			}
+
+			if(timestampColumn < 0 || valueColumn < 0)
+				throw new IOException("Header Without Timestamp and Value Columns: " + new String(chars, start, end - start));
+		}
+	}
+
+	/*
+	 * End of the field starting at the target position (the separator or the end of the line).
+	 * The separators inside a quoted field are skipped.
+	 */
+	private static int findFieldEnd(char[] chars, int start, int end) {
+
+		boolean isQuoted = false;
+
+		for(int i = start; i < end; i++) {
+			if(chars[i] == QUOTE)
+				isQuoted = !isQuoted;
+			else if(chars[i] == SEPARATOR && !isQuoted)
+				return i;
+		}
+
+		return end;
+	}
+
+	private static long parseTimestamp(char[] chars, int start, int end) {
+		start = trimStart(chars, start, end);
+		end = trimEnd(chars, start, end);
+		return LogNumberParser.parseLong(chars, start, end);
+	}
+
+	private static double parseValue(char[] chars, int start, int end) {
+		start = trimStart(chars, start, end);
+		end = trimEnd(chars, start, end);
+		return LogNumberParser.parseDouble(chars, start, end);
+	}
+
+	/*
+	 * Skip the spaces and the opening quote
+	 */
+	private static int trimStart(char[] chars, int start, int end) {
+		while(start < end && (chars[start] <= ' ' || chars[start] == QUOTE))
+			start++;
+		return start;
+	}
+
+	private static int trimEnd(char[] chars, int start, int end) {
+		while(end > start && (chars[end - 1] <= ' ' || chars[end - 1] == QUOTE))
+			end--;
+		return end;
+	}
+}
@@ -0,0 +1,201 @@
+package com.mobdev.hellofiles;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bit-level compression of a block of logs as in Facebook's Gorilla time series database.
+ *
+ * Timestamps: the first one is stored outside of the stream, then each one is stored as the
+ * difference between its delta and the previous delta (delta of delta), zig-zag encoded, with a
+ * variable-length prefix:
+ *   '0' (same delta), '10' + 7 bits, '110' + 9 bits, '1110' + 12 bits, '11110' + 32 bits, '11111' + 64 bits
+ * Samples taken at a regular interval with a small jitter need one bit or a few bits each.
+ *
+ * Values: each value is XOR-ed with the previous one (0 for the first value):
+ *   '0' (same value)
+ *   '10' + meaningful bits, when they fit the leading/trailing zeros window of the previous value
+ *   '11' + 5 bits of leading zeros + 6 bits of meaningful length (0 for 64) + meaningful bits
+ * Slowly changing values share sign, exponent and the high bits of the mantissa, so only the few
+ * bits that change are stored.
+ *
+ * The streams are decoded on demand, one log at a time, by a {@link TimestampDecoder} and a
+ * {@link ValueDecoder}.
+ */
+public final class GorillaCodec {
+
+	private static final int MAX_LEADING_ZEROS = 31;
+
+	private GorillaCodec() {
+	}
+
+	/**
+	 * Encode the timestamps after the first one
+	 * @param timestamps the timestamps of the block
+	 * @param count the number of timestamps
+	 * @param writer the destination of the stream
+	 */
+	public static void encodeTimestamps(long[] timestamps, int count, BitWriter writer) {
+
+		long previousDelta = 0;
+
+		for(int i = 1; i < count; i++) {
+
+			long delta = timestamps[i] - timestamps[i - 1];
+			long deltaOfDelta = delta - previousDelta;
+			previousDelta = delta;
+
+			long zigZag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+
+			if(zigZag == 0)
+				writer.writeBits(0, 1);
+			else if(zigZag >>> 7 == 0)
+				writer.writeBits((0x2L << 7) | zigZag, 2 + 7);
+			else if(zigZag >>> 9 == 0)
+				writer.writeBits((0x6L << 9) | zigZag, 3 + 9);
+			else if(zigZag >>> 12 == 0)
+				writer.writeBits((0xEL << 12) | zigZag, 4 + 12);
+			else if(zigZag >>> 32 == 0) {
+				writer.writeBits(0x1E, 5);
+				writer.writeBits(zigZag, 32);
+			}
+			else {
+				writer.writeBits(0x1F, 5);
+				writer.writeBits(zigZag, 64);
+			}
+		}
+	}
+
+	/**
+	 * Encode the values
+	 * @param values the values of the block
+	 * @param count the number of values
+	 * @param writer the destination of the stream
+	 */
+	public static void encodeValues(double[] values, int count, BitWriter writer) {
+
+		long previousBits = 0;
+		int windowLeading = -1;
+		int windowTrailing = 0;
+
+		for(int i = 0; i < count; i++) {
+
+			long bits = Double.doubleToRawLongBits(values[i]);
+			long xor = bits ^ previousBits;
+			previousBits = bits;
+
+			if(xor == 0) {
+				writer.writeBits(0, 1);
+				continue;
+			}
+
+			int leading = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+			int trailing = Long.numberOfTrailingZeros(xor);
+
+			if(windowLeading >= 0 && leading >= windowLeading && trailing >= windowTrailing) {
+				writer.writeBits(0x2, 2);
+				writer.writeBits(xor >>> windowTrailing, 64 - windowLeading - windowTrailing);
+			}
+			else {
+				int meaningfulBits = 64 - leading - trailing;
+				writer.writeBits(0x3, 2);
+				writer.writeBits(leading, 5);
+				writer.writeBits(meaningfulBits & 0x3F, 6);
+				writer.writeBits(xor >>> trailing, meaningfulBits);
+				windowLeading = leading;
+				windowTrailing = trailing;
+			}
+		}
+	}
+
+	/**
+	 * Decoder of the timestamps written by {@link #encodeTimestamps}, one at a time
+	 */
+	public static class TimestampDecoder {
+
+		private BitReader reader = null;
+
+		private long timestamp = 0;
+
+		private long delta = 0;
+
+		/**
+		 * @param firstTimestamp the first timestamp of the block (stored outside of the stream)
+		 * @param column the encoded timestamps after the first one
+		 */
+		public TimestampDecoder(long firstTimestamp, ByteBuffer column) {
+			this.reader = new BitReader(column);
+			this.timestamp = firstTimestamp;
+		}
+
+		/**
+		 * @return the timestamp following the last decoded one (or the first one)
+		 */
+		public long next() {
+
+			long zigZag = 0;
+
+			switch(reader.readOnes(5)) {
+				case 0:
+					return timestamp += delta;
+				case 1:
+					zigZag = reader.readBits(7);
+					break;
+				case 2:
+					zigZag = reader.readBits(9);
+					break;
+				case 3:
+					zigZag = reader.readBits(12);
+					break;
+				case 4:
+					zigZag = reader.readBits(32);
+					break;
+				default:
+					zigZag = reader.readBits(64);
+					break;
+			}
+
+			delta += (zigZag >>> 1) ^ -(zigZag & 1);
+			return timestamp += delta;
+		}
+	}
+
+	/**
+	 * Decoder of the values written by {@link #encodeValues}, one at a time
+	 */
+	public static class ValueDecoder {
+
+		private BitReader reader = null;
+
+		private long valueBits = 0;
+
+		private int windowLeading = 0;
+
+		private int windowTrailing = 0;
+
+		public ValueDecoder(ByteBuffer column) {
+			this.reader = new BitReader(column);
+		}
+
+		/**
+		 * @return the raw bits of the next value
+		 */
+		public long nextBits() {
+
+			if(!reader.readBit())
+				return valueBits;
+
+			if(reader.readBit()) {
+				windowLeading = (int)reader.readBits(5);
+				int meaningfulBits = (int)reader.readBits(6);
+				if(meaningfulBits == 0)
+					meaningfulBits = 64;
+				windowTrailing = 64 - windowLeading - meaningfulBits;
+				if(windowTrailing < 0)
+					throw new IllegalArgumentException("Invalid Value Window: " + windowLeading + "+" + meaningfulBits);
+			}
+
+			valueBits ^= reader.readBits(64 - windowLeading - windowTrailing) << windowTrailing;
+			return valueBits;
+		}
+	}
+}
@@ -23,6 +23,41 @@ public  class HistoryFragment extends Fragment {
 	private LinearLayoutManager mLayoutManager = null;
 	private MyAdapter mAdapter = null;
 	private ImageButton addButton = null;
+	private LogOverviewView overviewView = null;
+
+	/*
+	 * Refresh only the changed rows of the list (the changes are notified by the manager, also the
+	 * ones applied by this fragment). The overview chart is redrawn from its precomputed levels.
+	 */
+	private LogListListener logListListener = new LogListListener() {
+		@Override
+		public void onLogsInserted(int position, int count) {
+			if(mAdapter != null)
+				mAdapter.notifyItemRangeInserted(position, count);
+			refreshOverview();
+		}
+
+		@Override
+		public void onLogsRemoved(int position, int count) {
+			if(mAdapter != null)
+				mAdapter.notifyItemRangeRemoved(position, count);
+			refreshOverview();
+		}
+
+		@Override
+		public void onLogsChanged(int position, int count) {
+			if(mAdapter != null)
+				mAdapter.notifyItemRangeChanged(position, count);
+			refreshOverview();
+		}
+
+		@Override
+		public void onLogListChanged() {
+			if(mAdapter != null)
+				mAdapter.notifyDataSetChanged();
+			refreshOverview();
+		}
+	};
 
 	@Override
 	public View onCreateView(LayoutInflater inflater, ViewGroup container,Bundle savedInstanceState) {
@@ -42,8 +77,12 @@ public  class HistoryFragment extends Fragment {
         mRecyclerView.setHasFixedSize(true);
         
         // specify an adapter (see also next example)
-        mAdapter  = new MyAdapter(LogDescriptorManager.getInstance(getActivity()).getLogList(), getActivity());
+        mAdapter  = new MyAdapter(LogDescriptorManager.getInstance(getActivity()).getLogStore(), getActivity());
         mRecyclerView.setAdapter(mAdapter);
+        LogDescriptorManager.getInstance(getActivity()).addLogListListener(logListListener);
+
+        overviewView = (LogOverviewView)rootView.findViewById(R.id.overview_view);
+        overviewView.setOverview(LogDescriptorManager.getInstance(getActivity()).getOverview());
 
         addButton  = (ImageButton)rootView.findViewById(R.id.addButton);
         addButton.setOnClickListener(new OnClickListener() {
@@ -55,7 +94,6 @@ public  class HistoryFragment extends Fragment {
 				Random rand = new Random();
 				int number = rand.nextInt((1000 - 0) + 1);
 				LogDescriptorManager.getInstance(getActivity()).addLogToHead(new LogDescriptor(System.currentTimeMillis(),Double.valueOf(number)));
-				mAdapter.notifyItemInserted(0);
 				
 				mLayoutManager.scrollToPosition(0);
 			}
@@ -64,11 +102,34 @@ public  class HistoryFragment extends Fragment {
 		return rootView;
 	}
 
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		LogDescriptorManager.getInstance(getActivity()).removeLogListListener(logListListener);
+		overviewView = null;
+	}
+
+	/**
+	 * The changes of the list (e.g. an import) are already applied by the LogListListener, so the
+	 * whole list is refreshed only if the manager has a different store
+	 */
 	public void updateHistory(){
 		if(mRecyclerView != null && mAdapter != null){
-			mAdapter.setmDataset(LogDescriptorManager.getInstance(getActivity()).getLogList());
-			mAdapter.notifyDataSetChanged();
+			LogStore logStore = LogDescriptorManager.getInstance(getActivity()).getLogStore();
+			if(mAdapter.getmDataset() != logStore){
+				mAdapter.setmDataset(logStore);
+				mAdapter.notifyDataSetChanged();
+			}
+			refreshOverview();
 		}
 	}
+
+	/*
+	 * The overview can be replaced by the manager (e.g. when the list is reset by an import)
+	 */
+	private void refreshOverview(){
+		if(overviewView != null)
+			overviewView.setOverview(LogDescriptorManager.getInstance(getActivity()).getOverview());
+	}
 	
 }
\ No newline at end of file
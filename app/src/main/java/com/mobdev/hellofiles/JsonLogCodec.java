@@ -0,0 +1,169 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming JSON codec for the log list (a JSON array of LogDescriptor objects).
+ * The document is decoded and encoded element by element with Gson's JsonReader and JsonWriter,
+ * so the memory used does not depend on the size of the document.
+ */
+public class JsonLogCodec implements LogCodec {
+
+	public static final String NAME = "json";
+
+	public static final String TIMESTAMP_FIELD = "timestamp";
+
+	public static final String VALUE_FIELD = "value";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/*
+	 * The type of the documents exported before the other formats were added
+	 */
+	@Override
+	public String getMimeType() {
+		return "text/plain";
+	}
+
+	@Override
+	public String getFileExtension() {
+		return "txt";
+	}
+
+	/**
+	 * Decode the JSON array and append its logs to the store
+	 */
+	@Override
+	public int read(Reader reader, LogStore logStore, int chunkSize, ChunkListener listener) throws IOException {
+
+		JsonReader jsonReader = new JsonReader(reader);
+		jsonReader.setLenient(true);
+
+		long[] timestamps = new long[chunkSize];
+		double[] values = new double[chunkSize];
+		int chunkCount = 0;
+		int decodedLogs = 0;
+
+		try {
+
+			if(jsonReader.peek() != JsonToken.BEGIN_ARRAY)
+				throw new IOException("Invalid Log List ! Expected a JSON Array: " + jsonReader.peek());
+
+			jsonReader.beginArray();
+
+			while(jsonReader.hasNext()) {
+
+				long timestamp = 0;
+				double value = 0.0;
+
+				jsonReader.beginObject();
+
+				while(jsonReader.hasNext()) {
+					String name = jsonReader.nextName();
+					if(TIMESTAMP_FIELD.equals(name))
+						timestamp = jsonReader.nextLong();
+					else if(VALUE_FIELD.equals(name))
+						value = jsonReader.nextDouble();
+					else
+						jsonReader.skipValue();
+				}
+
+				jsonReader.endObject();
+
+				timestamps[chunkCount] = timestamp;
+				values[chunkCount] = value;
+				chunkCount++;
+
+				if(chunkCount == chunkSize) {
+					decodedLogs += appendChunk(logStore, timestamps, values, chunkCount);
+					chunkCount = 0;
+					if(listener != null)
+						listener.onChunk(decodedLogs);
+				}
+			}
+
+			jsonReader.endArray();
+
+			//Last partial chunk (an empty document is notified as well)
+			if(chunkCount > 0 || decodedLogs == 0) {
+				decodedLogs += appendChunk(logStore, timestamps, values, chunkCount);
+				if(listener != null)
+					listener.onChunk(decodedLogs);
+			}
+
+			return decodedLogs;
+
+		} catch (IllegalStateException e) {
+			throw new IOException("Invalid Log List !", e);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid Log List !", e);
+		} catch (JsonParseException e) {
+			throw new IOException("Invalid Log List !", e);
+		}
+	}
+
+	/**
+	 * Encode the content of the store as a JSON array of LogDescriptor objects
+	 */
+	@Override
+	public int write(Writer writer, LogSource logSource, int chunkSize, ChunkListener listener) throws IOException {
+
+		JsonWriter jsonWriter = new JsonWriter(writer);
+
+		//Allow NaN and Infinite values (accepted by the lenient reader)
+		jsonWriter.setLenient(true);
+
+		int size = logSource.size();
+
+		//The logs are read a chunk at a time (a single page lookup for paged sources)
+		long[] timestamps = new long[chunkSize];
+		double[] values = new double[chunkSize];
+
+		jsonWriter.beginArray();
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += chunkSize) {
+
+			int chunkCount = Math.min(chunkSize, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++) {
+				jsonWriter.beginObject();
+				jsonWriter.name(TIMESTAMP_FIELD).value(timestamps[i]);
+				jsonWriter.name(VALUE_FIELD).value(values[i]);
+				jsonWriter.endObject();
+			}
+
+			if(listener != null && chunkCount == chunkSize)
+				listener.onChunk(chunkStart + chunkCount);
+		}
+
+		jsonWriter.endArray();
+		jsonWriter.flush();
+
+		if(listener != null && (size % chunkSize != 0 || size == 0))
+			listener.onChunk(size);
+
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	private static int appendChunk(LogStore logStore, long[] timestamps, double[] values, int count) {
+		for(int i = 0; i < count; i++)
+			logStore.add(timestamps[i], values[i]);
+		return count;
+	}
+}
@@ -0,0 +1,240 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Base of the line-delimited codecs: each log is a line of text, so a document can be streamed,
+ * split or appended without parsing the whole content.
+ *
+ * The document is read in a reused char buffer and each line is decoded in place (the numbers are
+ * parsed with {@link LogNumberParser}), so no String is created for a line. The lines of a chunk are
+ * encoded in a reused StringBuilder and written with a single write.
+ */
+public abstract class LineLogCodec implements LogCodec {
+
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+	/*
+	 * Expected length of an encoded line, used to size the write buffer of a chunk
+	 */
+	private static final int LINE_LENGTH_HINT = 64;
+
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+	/**
+	 * Decoder of the lines of a document. A new decoder is created for each document, so it can
+	 * keep the state read from the first lines (e.g. a header).
+	 */
+	protected static abstract class LineDecoder {
+
+		/*
+		 * The decoded log
+		 */
+		protected long timestamp = 0;
+
+		protected double value = 0.0;
+
+		/**
+		 * Decode a line (not empty and without the line terminator)
+		 * @return true if a log has been decoded, false if the line does not contain a log (e.g. a header)
+		 * @throws IOException if the line is not valid
+		 */
+		protected abstract boolean decode(char[] chars, int start, int end) throws IOException;
+	}
+
+	/**
+	 * Encoder of the lines of a document, created for each document
+	 */
+	protected static abstract class LineEncoder {
+
+		/**
+		 * Append the header of the document (if any) with its line terminator
+		 */
+		protected void encodeHeader(StringBuilder builder) {
+		}
+
+		/**
+		 * Append a log without the line terminator
+		 */
+		protected abstract void encode(long timestamp, double value, StringBuilder builder);
+	}
+
+	protected abstract LineDecoder createDecoder();
+
+	protected abstract LineEncoder createEncoder();
+
+	@Override
+	public int read(Reader reader, LogStore logStore, int chunkSize, ChunkListener listener) throws IOException {
+
+		LineDecoder decoder = createDecoder();
+
+		char[] buffer = new char[READ_BUFFER_SIZE];
+		int length = 0;
+		int lineStart = 0;
+		int scanPosition = 0;
+		int lineNumber = 0;
+		boolean isEndOfDocument = false;
+
+		int chunkCount = 0;
+		int decodedLogs = 0;
+
+		while(true) {
+
+			int lineEnd = scanPosition;
+			while(lineEnd < length && buffer[lineEnd] != '\n')
+				lineEnd++;
+
+			if(lineEnd == length && !isEndOfDocument) {
+
+				//Keep the partial line at the beginning of the buffer and read more characters
+				if(lineStart > 0) {
+					System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+					length -= lineStart;
+					lineEnd -= lineStart;
+					lineStart = 0;
+				}
+
+				if(length == buffer.length) {
+					char[] largerBuffer = new char[buffer.length * 2];
+					System.arraycopy(buffer, 0, largerBuffer, 0, length);
+					buffer = largerBuffer;
+				}
+
+				int read = reader.read(buffer, length, buffer.length - length);
+
+				if(read < 0)
+					isEndOfDocument = true;
+				else
+					length += read;
+
+				scanPosition = lineEnd;
+				continue;
+			}
+
+			if(lineStart == lineEnd && isEndOfDocument && lineEnd == length)
+				break;
+
+			lineNumber++;
+
+			if(decodeLine(decoder, buffer, lineStart, lineEnd, lineNumber)) {
+
+				logStore.add(decoder.timestamp, decoder.value);
+				chunkCount++;
+
+				if(chunkCount == chunkSize) {
+					decodedLogs += chunkCount;
+					chunkCount = 0;
+					if(listener != null)
+						listener.onChunk(decodedLogs);
+				}
+			}
+
+			if(lineEnd == length)
+				break;
+
+			lineStart = lineEnd + 1;
+			scanPosition = lineStart;
+		}
+
+		//Last partial chunk (an empty document is notified as well)
+		if(chunkCount > 0 || decodedLogs == 0) {
+			decodedLogs += chunkCount;
+			if(listener != null)
+				listener.onChunk(decodedLogs);
+		}
+
+		return decodedLogs;
+	}
+
+	/*
+	 * Trim the line and decode it if it is not empty
+	 */
+	private static boolean decodeLine(LineDecoder decoder, char[] chars, int start, int end, int lineNumber) throws IOException {
+
+		if(lineNumber == 1 && start < end && chars[start] == BYTE_ORDER_MARK)
+			start++;
+
+		while(start < end && chars[start] <= ' ')
+			start++;
+
+		while(end > start && chars[end - 1] <= ' ')
+			end--;
+
+		if(start == end)
+			return false;
+
+		try {
+			return decoder.decode(chars, start, end);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid Log List ! Line: " + lineNumber, e);
+		} catch (IOException e) {
+			throw new IOException("Invalid Log List ! Line: " + lineNumber, e);
+		}
+	}
+
+	@Override
+	public int write(Writer writer, LogSource logSource, int chunkSize, ChunkListener listener) throws IOException {
+
+		LineEncoder encoder = createEncoder();
+
+		int size = logSource.size();
+
+		//The logs are read a chunk at a time (a single page lookup for paged sources)
+		long[] timestamps = new long[chunkSize];
+		double[] values = new double[chunkSize];
+
+		StringBuilder builder = new StringBuilder(chunkSize * LINE_LENGTH_HINT);
+		char[] chars = new char[builder.capacity()];
+
+		encoder.encodeHeader(builder);
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += chunkSize) {
+
+			int chunkCount = Math.min(chunkSize, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++) {
+				encoder.encode(timestamps[i], values[i], builder);
+				builder.append('\n');
+			}
+
+			chars = writeChars(writer, builder, chars);
+
+			if(listener != null && chunkCount == chunkSize)
+				listener.onChunk(chunkStart + chunkCount);
+		}
+
+		writeChars(writer, builder, chars);
+		writer.flush();
+
+		if(listener != null && (size % chunkSize != 0 || size == 0))
+			listener.onChunk(size);
+
+		return size;
+	}
+
+	/*
+	 * Write and clear the content of the builder
+	 * @return the buffer used to copy the content (it is enlarged if needed)
+	 */
+	private static char[] writeChars(Writer writer, StringBuilder builder, char[] chars) throws IOException {
+
+		int length = builder.length();
+
+		if(chars.length < length)
+			chars = new char[length];
+
+		builder.getChars(0, length, chars, 0);
+		writer.write(chars, 0, length);
+		builder.setLength(0);
+
+		return chars;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
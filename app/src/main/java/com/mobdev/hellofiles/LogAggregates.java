@@ -0,0 +1,323 @@
+package com.mobdev.hellofiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Summary statistics of the log values maintained incrementally on every add and remove.
+ *
+ * It keeps the statistics of the whole list, a quantile sketch for the percentiles and the
+ * statistics of each minute and of each hour (rollups keyed by the first timestamp of the bucket).
+ * All the queries cost O(1) or O(buckets). The only values that can not be updated in O(1) are
+ * minimum and maximum when the current extreme is removed: they are recomputed when requested,
+ * reading the logs of the affected minute and hour through the range query of the store and the
+ * whole list extremes from the hour rollups.
+ *
+ * Values that are not finite (NaN or Infinite) are not included in the aggregates.
+ */
+public class LogAggregates {
+
+	public static final long MINUTE_MS = 60 * 1000L;
+
+	public static final long HOUR_MS = 60 * MINUTE_MS;
+
+	private static final int MAGIC = 0x48464C41; // "HFLA"
+
+	private static final short VERSION = 1;
+
+	/**
+	 * Range query used to recompute the stale extremes of a rollup
+	 */
+	public interface RangeQuery {
+		LogCursor query(long fromTimestamp, long toTimestamp);
+	}
+
+	private LogStatistics statistics = new LogStatistics();
+
+	private LogQuantileSketch sketch = new LogQuantileSketch();
+
+	private TreeMap<Long, LogStatistics> minuteRollups = new TreeMap<Long, LogStatistics>();
+
+	private TreeMap<Long, LogStatistics> hourRollups = new TreeMap<Long, LogStatistics>();
+
+	private RangeQuery rangeQuery = null;
+
+	/**
+	 * Compute the aggregates of a source reading it a chunk at a time
+	 * @param logSource the logs to aggregate
+	 * @return the aggregates of the source
+	 */
+	public static LogAggregates build(LogSource logSource) {
+
+		LogAggregates aggregates = new LogAggregates();
+
+		int size = logSource.size();
+		long[] timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+		double[] values = new double[LogSnapshotFormat.BLOCK_SIZE];
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += LogSnapshotFormat.BLOCK_SIZE) {
+
+			int chunkCount = Math.min(LogSnapshotFormat.BLOCK_SIZE, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++)
+				aggregates.add(timestamps[i], values[i]);
+		}
+
+		return aggregates;
+	}
+
+	/**
+	 * @param rangeQuery the query of the aggregated store, used to recompute the stale extremes
+	 */
+	void setRangeQuery(RangeQuery rangeQuery) {
+		this.rangeQuery = rangeQuery;
+	}
+
+	void add(long timestamp, double value) {
+
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			return;
+
+		statistics.add(value);
+		sketch.add(value);
+		addToRollup(minuteRollups, getBucket(timestamp, MINUTE_MS), value);
+		addToRollup(hourRollups, getBucket(timestamp, HOUR_MS), value);
+	}
+
+	void remove(long timestamp, double value) {
+
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			return;
+
+		statistics.remove(value);
+		sketch.remove(value);
+		removeFromRollup(minuteRollups, getBucket(timestamp, MINUTE_MS), value);
+		removeFromRollup(hourRollups, getBucket(timestamp, HOUR_MS), value);
+	}
+
+	/**
+	 * Add the aggregates of another group of logs (e.g. of another segment)
+	 */
+	void merge(LogAggregates aggregates) {
+		statistics.merge(aggregates.statistics);
+		sketch.merge(aggregates.sketch);
+		mergeRollups(minuteRollups, aggregates.minuteRollups);
+		mergeRollups(hourRollups, aggregates.hourRollups);
+	}
+
+	private static void mergeRollups(TreeMap<Long, LogStatistics> rollups, TreeMap<Long, LogStatistics> mergedRollups) {
+		for(Map.Entry<Long, LogStatistics> entry : mergedRollups.entrySet()) {
+			LogStatistics bucketStatistics = rollups.get(entry.getKey());
+			if(bucketStatistics == null)
+				rollups.put(entry.getKey(), new LogStatistics(entry.getValue()));
+			else
+				bucketStatistics.merge(entry.getValue());
+		}
+	}
+
+	private static void addToRollup(TreeMap<Long, LogStatistics> rollups, long bucket, double value) {
+
+		LogStatistics bucketStatistics = rollups.get(bucket);
+
+		if(bucketStatistics == null) {
+			bucketStatistics = new LogStatistics();
+			rollups.put(bucket, bucketStatistics);
+		}
+
+		bucketStatistics.add(value);
+	}
+
+	private static void removeFromRollup(TreeMap<Long, LogStatistics> rollups, long bucket, double value) {
+
+		LogStatistics bucketStatistics = rollups.get(bucket);
+
+		if(bucketStatistics == null)
+			return;
+
+		bucketStatistics.remove(value);
+
+		if(bucketStatistics.getCount() == 0)
+			rollups.remove(bucket);
+	}
+
+	/**
+	 * @return the statistics of all the values
+	 */
+	public LogStatistics getStatistics() {
+
+		if(statistics.isExtremeStale()) {
+
+			double minimum = Double.POSITIVE_INFINITY;
+			double maximum = Double.NEGATIVE_INFINITY;
+
+			for(Map.Entry<Long, LogStatistics> entry : hourRollups.entrySet()) {
+				refreshExtremes(entry.getKey(), HOUR_MS, entry.getValue());
+				minimum = Math.min(minimum, entry.getValue().getMinimum());
+				maximum = Math.max(maximum, entry.getValue().getMaximum());
+			}
+
+			statistics.setExtremes(minimum, maximum);
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * @param quantile the quantile in [0, 1]
+	 * @return the estimated value (relative error lower than the sketch accuracy) or NaN if there are no values
+	 */
+	public double getQuantile(double quantile) {
+		return sketch.getQuantile(quantile);
+	}
+
+	public double getMedian() {
+		return sketch.getQuantile(0.5);
+	}
+
+	public double getP95() {
+		return sketch.getQuantile(0.95);
+	}
+
+	public double getP99() {
+		return sketch.getQuantile(0.99);
+	}
+
+	public LogQuantileSketch getSketch() {
+		return sketch;
+	}
+
+	/**
+	 * @param fromTimestamp the first timestamp of the range (inclusive)
+	 * @param toTimestamp the last timestamp of the range (inclusive)
+	 * @return the statistics of the minutes overlapping the range, keyed by the first timestamp of the minute
+	 */
+	public SortedMap<Long, LogStatistics> getMinuteRollups(long fromTimestamp, long toTimestamp) {
+		return getRollups(minuteRollups, MINUTE_MS, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	 * @param fromTimestamp the first timestamp of the range (inclusive)
+	 * @param toTimestamp the last timestamp of the range (inclusive)
+	 * @return the statistics of the hours overlapping the range, keyed by the first timestamp of the hour
+	 */
+	public SortedMap<Long, LogStatistics> getHourRollups(long fromTimestamp, long toTimestamp) {
+		return getRollups(hourRollups, HOUR_MS, fromTimestamp, toTimestamp);
+	}
+
+	private SortedMap<Long, LogStatistics> getRollups(TreeMap<Long, LogStatistics> rollups, long bucketMs, long fromTimestamp, long toTimestamp) {
+
+		if(fromTimestamp > toTimestamp)
+			return Collections.unmodifiableSortedMap(new TreeMap<Long, LogStatistics>());
+
+		SortedMap<Long, LogStatistics> range = rollups.subMap(getBucket(fromTimestamp, bucketMs), true, getBucket(toTimestamp, bucketMs), true);
+
+		for(Map.Entry<Long, LogStatistics> entry : range.entrySet())
+			refreshExtremes(entry.getKey(), bucketMs, entry.getValue());
+
+		return Collections.unmodifiableSortedMap(range);
+	}
+
+	/*
+	 * Recompute minimum and maximum of a bucket whose extreme has been removed
+	 */
+	private void refreshExtremes(long bucket, long bucketMs, LogStatistics bucketStatistics) {
+
+		if(!bucketStatistics.isExtremeStale() || rangeQuery == null)
+			return;
+
+		double minimum = Double.POSITIVE_INFINITY;
+		double maximum = Double.NEGATIVE_INFINITY;
+
+		LogCursor cursor = rangeQuery.query(bucket, bucket + bucketMs - 1);
+
+		while(cursor.moveToNext()) {
+			double value = cursor.getValue();
+			if(!Double.isNaN(value) && !Double.isInfinite(value)) {
+				minimum = Math.min(minimum, value);
+				maximum = Math.max(maximum, value);
+			}
+		}
+
+		bucketStatistics.setExtremes(minimum, maximum);
+	}
+
+	/*
+	 * First timestamp of the bucket (floor division, also for timestamps before the epoch)
+	 */
+	private static long getBucket(long timestamp, long bucketMs) {
+		long bucket = timestamp / bucketMs;
+		if(timestamp % bucketMs < 0)
+			bucket--;
+		return bucket * bucketMs;
+	}
+
+	/**
+	 * Write the aggregates (the extremes must not be stale, e.g. aggregates built from a snapshot)
+	 */
+	void write(DataOutput output) throws IOException {
+
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		statistics.write(output);
+		sketch.write(output);
+		writeRollups(output, minuteRollups);
+		writeRollups(output, hourRollups);
+	}
+
+	private static void writeRollups(DataOutput output, TreeMap<Long, LogStatistics> rollups) throws IOException {
+		output.writeInt(rollups.size());
+		for(Map.Entry<Long, LogStatistics> entry : rollups.entrySet()) {
+			output.writeLong(entry.getKey());
+			entry.getValue().write(output);
+		}
+	}
+
+	static LogAggregates read(DataInput input) throws IOException {
+
+		if(input.readInt() != MAGIC)
+			throw new IOException("Invalid Aggregates Header !");
+
+		short version = input.readShort();
+
+		if(version != VERSION)
+			throw new IOException("Unsupported Aggregates Version: " + version);
+
+		LogAggregates aggregates = new LogAggregates();
+		aggregates.statistics = LogStatistics.read(input);
+		aggregates.sketch = LogQuantileSketch.read(input);
+		readRollups(input, aggregates.minuteRollups);
+		readRollups(input, aggregates.hourRollups);
+		return aggregates;
+	}
+
+	private static void readRollups(DataInput input, TreeMap<Long, LogStatistics> rollups) throws IOException {
+
+		int size = input.readInt();
+
+		if(size < 0)
+			throw new IOException("Invalid Rollups Size: " + size);
+
+		for(int i = 0; i < size; i++) {
+			long bucket = input.readLong();
+			rollups.put(bucket, LogStatistics.read(input));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LogAggregates{" +
+				"statistics=" + statistics +
+				", p50=" + getMedian() +
+				", p95=" + getP95() +
+				", p99=" + getP99() +
+				", minutes=" + minuteRollups.size() +
+				", hours=" + hourRollups.size() +
+				'}';
+	}
+}
@@ -0,0 +1,58 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Streaming format of the exported and imported log documents (see {@link LogCodecs}).
+ * The logs are decoded and encoded in chunks, so the memory used does not depend on the size of
+ * the document. A codec does not keep any state between two calls and it can be shared by threads.
+ */
+public interface LogCodec {
+
+	/**
+	 * Notified every time a chunk of logs has been decoded or encoded.
+	 * The operation can be stopped by throwing a CancellationException.
+	 */
+	interface ChunkListener {
+		void onChunk(int decodedLogs);
+	}
+
+	/**
+	 * @return the short name of the format (e.g. "csv")
+	 */
+	String getName();
+
+	/**
+	 * @return the MIME type of the documents
+	 */
+	String getMimeType();
+
+	/**
+	 * @return the extension of the document files (without the dot)
+	 */
+	String getFileExtension();
+
+	/**
+	 * Decode the document and append its logs to the store
+	 * @param reader the reader of the document
+	 * @param logStore the target store
+	 * @param chunkSize the number of logs decoded between two notifications
+	 * @param listener the listener notified for each chunk (it can be null)
+	 * @return the number of decoded logs
+	 * @throws IOException if the document can not be read or it is not a valid log list
+	 */
+	int read(Reader reader, LogStore logStore, int chunkSize, ChunkListener listener) throws IOException;
+
+	/**
+	 * Encode the logs as a document
+	 * @param writer the writer of the document (it is flushed but not closed)
+	 * @param logSource the logs to encode
+	 * @param chunkSize the number of logs encoded between two notifications
+	 * @param listener the listener notified for each chunk (it can be null)
+	 * @return the number of encoded logs
+	 * @throws IOException
+	 */
+	int write(Writer writer, LogSource logSource, int chunkSize, ChunkListener listener) throws IOException;
+}
@@ -0,0 +1,73 @@
+package com.mobdev.hellofiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * The available formats of the log documents and the detection of the format of an imported one
+ */
+public final class LogCodecs {
+
+	public static final LogCodec JSON = new JsonLogCodec();
+
+	public static final LogCodec NDJSON = new NdjsonLogCodec();
+
+	public static final LogCodec CSV = new CsvLogCodec();
+
+	/*
+	 * Maximum number of characters read to find the first significant one
+	 */
+	private static final int DETECTION_LIMIT = 4096;
+
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+	private LogCodecs() {
+	}
+
+	/**
+	 * @return the codec with the target name (e.g. "csv")
+	 * @throws IllegalArgumentException if the format is unknown
+	 */
+	public static LogCodec forName(String name) {
+
+		for(LogCodec codec : new LogCodec[] {JSON, NDJSON, CSV})
+			if(codec.getName().equalsIgnoreCase(name))
+				return codec;
+
+		throw new IllegalArgumentException("Unknown Log Document Format: " + name);
+	}
+
+	/**
+	 * Detect the format of a document from its first significant character: '[' for a JSON array,
+	 * '{' for NDJSON and anything else for CSV (an empty document is passed to the JSON codec).
+	 * The reader is reset at the beginning of the document, so it can be passed to the detected codec.
+	 *
+	 * @param reader the reader of the document positioned at its beginning
+	 * @return the codec of the document
+	 * @throws IOException
+	 */
+	public static LogCodec detect(BufferedReader reader) throws IOException {
+
+		reader.mark(DETECTION_LIMIT);
+
+		try {
+			for(int i = 0; i < DETECTION_LIMIT; i++) {
+
+				int c = reader.read();
+
+				//An empty document is not a valid JSON array (it does not replace the list)
+				if(c == '[' || c == -1)
+					return JSON;
+				if(c == '{')
+					return NDJSON;
+				if(c > ' ' && c != BYTE_ORDER_MARK)
+					return CSV;
+			}
+
+			return CSV;
+
+		} finally {
+			reader.reset();
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Forward-only iteration over the logs selected by a query.
+ * The cursor reads the store lazily and it is valid until the store is modified.
+ */
+public interface LogCursor {
+
+	/**
+	 * Move to the next selected log
+	 * @return false if there are no more logs
+	 */
+	boolean moveToNext();
+
+	/**
+	 * @return the position of the current log in the store
+	 */
+	int getPosition();
+
+	long getTimestamp();
+
+	double getValue();
+}
@@ -34,6 +34,23 @@ public class LogDescriptor {
 		this.value = value;
 	}
 
+	/**
+	 * Two logs are equal when they have the same timestamp and value, the key used to find a log
+	 * in the list (see {@link LogKeyIndex})
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		LogDescriptor that = (LogDescriptor) o;
+		return timestamp == that.timestamp && Double.doubleToLongBits(value) == Double.doubleToLongBits(that.value);
+	}
+
+	@Override
+	public int hashCode() {
+		return LogKeyIndex.hash(timestamp, Double.doubleToLongBits(value));
+	}
+
 	@Override
 	public String toString() {
 		return "LogDescriptor{" +
@@ -1,132 +1,335 @@
 package com.mobdev.hellofiles;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
 
 import android.content.Context;
 import android.net.Uri;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 /**
  * Created by Marco Picone (picone.m@gmail.com) 20/03/2020
  * Singleton to handle and manage existing logs within the application.
+ *
+ * The list and its files are handled by a LogListController, which does not depend on the Android
+ * framework: the manager provides the Context, the Main Thread (Looper) and the notifications to the user.
  */
 public class LogDescriptorManager {
 
 	private static final String TAG = "LogDescriptorManager";
 
+	/*
+	 * The verbose logs are compiled only in the debug builds (the condition is a compile-time
+	 * constant, so the release builds do not even build the messages)
+	 */
+	private static final boolean VERBOSE = BuildConfig.DEBUG;
+
+	/*
+	 * Interval of the metrics dump of the debug builds
+	 */
+	private static final long DEBUG_METRICS_DUMP_INTERVAL_MS = 60 * 1000L;
+
+	/**
+	 * The imported document replaces the whole log list
+	 */
+	public static final int IMPORT_REPLACE = LogListController.IMPORT_REPLACE;
+
+	/**
+	 * The logs of the imported document that are not in the list yet are appended at the end of it,
+	 * so importing the same document again does not change the list
+	 */
+	public static final int IMPORT_MERGE = LogListController.IMPORT_MERGE;
+
 	private Context context = null;
 
 	private String outputFileName = "loglist.txt";
 
+	private String storageBaseName = "loglist";
+
 	/*
 	 * The instance is static so it is shared among all instances of the class. It is also private
-	 * so it is accessible only within the class.
+	 * so it is accessible only within the class. It is volatile so the instance created by a thread
+	 * is safely published to the other ones.
 	 */
-	private static LogDescriptorManager instance = null;
-	
-	private ArrayList<LogDescriptor> logList = null;
+	private static volatile LogDescriptorManager instance = null;
 
-	private Gson gson = null;
+	private LogListController controller = null;
+
+	private Executor mainThreadExecutor = null;
+
+	private LogListController.Host host = new LogListController.Host() {
+		@Override
+		public boolean isMainThread() {
+			return Looper.myLooper() == Looper.getMainLooper();
+		}
+
+		@Override
+		public LogListController.ListDiff calculateDiff(LogSource oldList, LogSource newList) {
+			return LogListDiff.calculate(oldList, newList);
+		}
+
+		@Override
+		public void onDebugMessage(String message) {
+			Log.d(TAG, message);
+		}
+
+		@Override
+		public void onErrorMessage(String message) {
+			Log.e(TAG, message);
+		}
+
+		@Override
+		public void onPersistenceError(Exception e) {
+			Log.e(MainActivity.TAG, "Error Saving Log List on File: " + e.getLocalizedMessage());
+			Toast.makeText(context, "Error Saving Log List on File ...", Toast.LENGTH_LONG).show();
+		}
+
+		@Override
+		public void onLoadError(Exception e, File recoveryDirectory) {
+			Log.e(MainActivity.TAG,"Error Reading Log List on File: " + e.getLocalizedMessage());
+			if(recoveryDirectory != null)
+				Log.e(MainActivity.TAG,"Log List Files Moved to: " + recoveryDirectory.getAbsolutePath());
+
+			mainThreadExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Toast.makeText(context, "Error Reading Log List on File ...", Toast.LENGTH_LONG).show();
+				}
+			});
+		}
+	};
 
 	/*
 	 * The constructor is private so it is accessible only within the class.
 	 */
 	private LogDescriptorManager(Context context){
 
-		Log.d(MainActivity.TAG,"Number Manager Created !");
+		if(VERBOSE)
+			Log.d(MainActivity.TAG,"Number Manager Created !");
 		this.context = context;
-		this.gson = new Gson();
+		this.mainThreadExecutor = new MainThreadExecutor();
+		this.controller = new LogListController(context.getFilesDir(), storageBaseName, outputFileName, mainThreadExecutor, host);
+		this.controller.setVerbose(VERBOSE);
+
+		if(VERBOSE)
+			setMetricsDumpInterval(DEBUG_METRICS_DUMP_INTERVAL_MS);
 
 		/*
-		 * Try to read an existing log list and load into the ArrayList
+		 * Try to read an existing log list and load into the LogStore
 		 */
-		try {
-			this.logList = readLogListFromFile();
-			Log.d(MainActivity.TAG,"Log File available ! List size: " + this.logList.size());
-		} catch(Exception e) {
-			//If there is not an existing file create an empty ArrayList
-			this.logList = new ArrayList<LogDescriptor>();
-			Log.e(MainActivity.TAG,"Error Reading Log List on File: " + e.getLocalizedMessage());
-		}
-
+		this.controller.load();
 	}
 
 	public static LogDescriptorManager getInstance(Context context){
 		/*
-		 * The constructor is called only if the static instance is null, so only the first time 
+		 * The constructor is called only if the static instance is null, so only the first time
 		 * that the getInstance() method is invoked.
 		 * All the other times the same instance object is returned.
+		 * The instance is checked again holding the lock, so concurrent callers never create two
+		 * instances (double-checked locking on the volatile field).
 		 */
-		if(instance == null)
-			instance = new LogDescriptorManager(context);
-		return instance;
+		LogDescriptorManager result = instance;
+
+		if(result == null) {
+			synchronized (LogDescriptorManager.class) {
+				result = instance;
+				if(result == null) {
+					result = new LogDescriptorManager(context.getApplicationContext());
+					instance = result;
+				}
+			}
+		}
+
+		return result;
 	}
-	
+
+	/**
+	 * Append a log at the end of the list. It can be called by any thread: the logs submitted by the
+	 * other threads are buffered without blocking and added to the list by the Main Thread, then
+	 * the registered LogListListener objects are notified.
+	 */
 	public void addLog(LogDescriptor log){
-		this.logList.add(log);
-		
-		try {
-			saveLogListOnAppInternalStorage();
-		} catch (Exception e) {
-			e.printStackTrace();
-			Toast.makeText(context, "Error Saving Log List on File ...", Toast.LENGTH_LONG).show();
+		controller.addLog(log.getTimestamp(), log.getValue());
+	}
+
+	/**
+	 * Append a log at the end of the list without allocating any object. It can be called by any
+	 * thread (see addLog()).
+	 */
+	public void addLog(long timestamp, double value){
+		controller.addLog(timestamp, value);
+	}
+
+	/**
+	 * Append a group of logs at the end of the list (see addLogs(long[], double[]))
+	 */
+	public void addLogs(Collection<LogDescriptor> logs){
+
+		long[] timestamps = new long[logs.size()];
+		double[] values = new double[timestamps.length];
+		int count = 0;
+
+		for(LogDescriptor log : logs) {
+			timestamps[count] = log.getTimestamp();
+			values[count] = log.getValue();
+			count++;
 		}
-		
+
+		controller.addLogs(timestamps, values);
+	}
+
+	/**
+	 * Append a group of logs at the end of the list. It can be called by any thread (see
+	 * LogListController.addLogs()).
+	 */
+	public void addLogs(long[] timestamps, double[] values){
+		controller.addLogs(timestamps, values);
 	}
-	
+
+	/**
+	 * Insert a log at the beginning of the list. It can be called by any thread (see addLog()).
+	 */
 	public void addLogToHead(LogDescriptor log){
-		this.logList.add(0,log);
-		
-		try {
-			saveLogListOnAppInternalStorage();
-		} catch (Exception e) {
-			e.printStackTrace();
-			Toast.makeText(context, "Error Saving Log List on File ...", Toast.LENGTH_LONG).show();
-		}
+		controller.addLogToHead(log.getTimestamp(), log.getValue());
 	}
-	
+
+	public void addLogListListener(LogListListener listener){
+		controller.addLogListListener(listener);
+	}
+
+	public void removeLogListListener(LogListListener listener){
+		controller.removeLogListListener(listener);
+	}
+
+	/**
+	 * Remove the log at the target position (Main Thread only, the positions are the ones shown by the UI)
+	 */
 	public void removeLog(int position){
-		this.logList.remove(position);
-		
-		try {
-			saveLogListOnAppInternalStorage();
-		} catch (Exception e) {
-			e.printStackTrace();
-			Toast.makeText(context, "Error Saving Log List on File ...", Toast.LENGTH_LONG).show();
-		}
+		controller.removeLog(position);
 	}
-	
+
+	/**
+	 * Remove the first log with the same timestamp and value of the target one. The log is found
+	 * through the time index of the list, without scanning it.
+	 */
 	public void removeLog(LogDescriptor log){
-		this.logList.remove(log);
-		
-		try {
-			saveLogListOnAppInternalStorage();
-		} catch (Exception e) {
-			e.printStackTrace();
-			Toast.makeText(context, "Error Saving Log List on File ...", Toast.LENGTH_LONG).show();
-		}
+		controller.removeLog(log.getTimestamp(), log.getValue());
 	}
-	
-	public ArrayList<LogDescriptor> getLogList(){
-		return logList;
+
+	/**
+	 * Set the rollover rules of the stored segments and the retention of the logs (Main Thread
+	 * only, see LogListController.setSegmentPolicy())
+	 */
+	public void setSegmentPolicy(LogSegmentPolicy segmentPolicy){
+		controller.setSegmentPolicy(segmentPolicy);
+	}
+
+	/**
+	 * Set the locale and the time zone of the timestamps shown by the list (Main Thread only)
+	 */
+	public void setTimestampFormat(Locale locale, TimeZone timeZone){
+		controller.setTimestampFormat(locale, timeZone);
+	}
+
+	/**
+	 * Set when the journal is forced on the storage device (see LogListController.setSyncPolicy())
+	 */
+	public void setSyncPolicy(int syncPolicy, long syncIntervalMs){
+		controller.setSyncPolicy(syncPolicy, syncIntervalMs);
+	}
+
+	/**
+	 * Set how long the mutations are collected before being written on file with a single write
+	 * @param batchWindowMs the window in milliseconds
+	 */
+	public void setPersistenceBatchWindow(long batchWindowMs){
+		controller.setPersistenceBatchWindow(batchWindowMs);
+	}
+
+	/**
+	 * @return the current values of the metrics (latencies of add, remove, save, load, import and
+	 * export, bytes written, logs written by each snapshot and journal depth)
+	 */
+	public LogMetrics.Snapshot getMetrics(){
+		return controller.getMetrics();
+	}
+
+	/**
+	 * Periodically write the metrics on a file of the internal storage (the debug builds write them
+	 * every minute)
+	 * @param intervalMs the interval between two dumps, 0 to stop them
+	 */
+	public void setMetricsDumpInterval(long intervalMs){
+		controller.setMetricsDumpInterval(intervalMs);
+	}
+
+	/**
+	 * Write the pending mutations without waiting for the end of the batch window
+	 */
+	public void flush(){
+		controller.flush();
+	}
+
+	/**
+	 * Block until all the mutations applied so far are written on file
+	 * @param timeoutMs the maximum time to wait in milliseconds
+	 * @return true if the mutations have been written before the timeout, false also after a failed
+	 * write until a new snapshot stores them
+	 */
+	public boolean awaitDurable(long timeoutMs){
+		return controller.awaitDurable(timeoutMs);
+	}
+
+	/**
+	 * @return the log list. It must be read and modified only by the Main Thread.
+	 */
+	public LogStore getLogStore(){
+		return controller.getLogStore();
+	}
+
+	/**
+	 * Consistent copy of the log list that can be read by any thread while the list keeps changing
+	 * (see LogListController.getSnapshot())
+	 */
+	public LogSource getSnapshot(){
+		return controller.getSnapshot();
+	}
+
+	/**
+	 * Summary statistics of the log values (count, sum, mean, variance, extremes, percentiles and
+	 * per minute and per hour rollups), updated by each mutation
+	 */
+	public LogAggregates getAggregates(){
+		return controller.getAggregates();
+	}
+
+	/**
+	 * Multi-resolution overview of the log values used to chart the whole list (Main Thread only,
+	 * see LogListController.getOverview())
+	 */
+	public LogOverview getOverview(){
+		return controller.getOverview();
+	}
+
+	/**
+	 * Select the logs with a timestamp in the target range without scanning the whole list
+	 * (see LogListController.query())
+	 */
+	public LogCursor query(long fromTimestamp, long toTimestamp){
+		return controller.query(fromTimestamp, toTimestamp);
 	}
 
 	/**
@@ -147,238 +350,173 @@ public class LogDescriptorManager {
 		} else {
 			mExternalStorageAvailable = mExternalStorageWriteable = false;
 		}
-		
+
 		return mExternalStorageAvailable && mExternalStorageWriteable;
 
 	}
 
 	/**
 	 * Create a new Document/File on the Public Shared Memory. Starts from the Location (URI)
-	 * selected by the user through a Picker
+	 * selected by the user through a Picker. The JSON document is written in background.
 	 * @param uri
-	 * @return a boolean value with the status of the operation
+	 * @param listener the listener notified (on the Main Thread) about progress and result
+	 * @return the handle that can be used to cancel the export
+	 */
+	public LogTransferTask exportOnSharedDocument(final Uri uri, LogTransferListener listener) {
+		return exportOnSharedDocument(uri, LogCodecs.JSON, listener);
+	}
+
+	/**
+	 * Create a new Document/File on the Public Shared Memory with the target format (see LogCodecs).
+	 * The document is written in background.
+	 * @param uri the location selected by the user
+	 * @param codec the format of the document
+	 * @param listener the listener notified (on the Main Thread) about progress and result
+	 * @return the handle that can be used to cancel the export
 	 */
-	public boolean exportOnSharedDocument(Uri uri) {
+	public LogTransferTask exportOnSharedDocument(final Uri uri, LogCodec codec, LogTransferListener listener) {
 
 		if(uri == null){
 			Log.e(TAG, "Error Exporting on Shared Storage Document ! Uri = Null !");
-			return false;
+			LogTransferTask task = new LogTransferTask(listener, mainThreadExecutor);
+			task.notifyFailed(new IOException("Uri = Null !"));
+			return task;
 		}
 
-		try {
-
-			OutputStream outputStream = context.getContentResolver().openOutputStream(uri);
-			String outputContent = getSerializedJsonContent();
-
-			if(outputStream != null && outputContent != null){
-				BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(outputStream));
-				bw.write(outputContent);
-				bw.flush();
-				bw.close();
-
-				return true;
+		return controller.startExport(new LogListController.ExportTarget() {
+			@Override
+			public OutputStream openOutputStream() throws IOException {
+				return context.getContentResolver().openOutputStream(uri);
 			}
-			else{
-				Log.e(TAG, "Error Exporting on Shared Storage Document ! OutputStream or Json Content = Null !");
-				return false;
+
+			@Override
+			public void close(boolean isCompleted) {
 			}
+		}, codec, listener);
+	}
 
-		} catch (IOException e) {
-			e.printStackTrace();
-			return false;
-		}
+	/**
+	 * Import the log list from a Document/File selected by the user, replacing the current one
+	 * (see readFromSharedDocument(Uri, int, LogTransferListener))
+	 */
+	public LogTransferTask readFromSharedDocument(final Uri uri, LogTransferListener listener) {
+		return readFromSharedDocument(uri, IMPORT_REPLACE, listener);
 	}
 
-	public boolean readFromSharedDocument(Uri uri) {
+	/**
+	 * Import the log list from a Document/File selected by the user. The document is decoded in
+	 * background and applied to the list on the Main Thread (see LogListController.startImport()).
+	 *
+	 * @param uri the location of the document
+	 * @param importMode IMPORT_REPLACE or IMPORT_MERGE
+	 * @param listener the listener notified (on the Main Thread) about progress and result
+	 * @return the handle that can be used to cancel the import
+	 */
+	public LogTransferTask readFromSharedDocument(final Uri uri, final int importMode, LogTransferListener listener) {
 
 		if(uri == null){
 			Log.e(TAG, "Error Reading From Shared Storage Document ! Uri = Null !");
-			return false;
+			LogTransferTask task = new LogTransferTask(listener, mainThreadExecutor);
+			task.notifyFailed(new IOException("Uri = Null !"));
+			return task;
 		}
 
-		try {
-
-			InputStream inputStream = context.getContentResolver().openInputStream(uri);
-
-			if(inputStream != null){
-				BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-
-				StringBuilder stringBuilder = new StringBuilder();
-				String line;
-
-				while((line = br.readLine()) != null)
-					stringBuilder.append(line);
-
-				br.close();
-
-				String result = stringBuilder.toString();
-				Log.i(TAG, "Read File frome Shared URI. Content: " + result);
-
-				Type collectionType = new TypeToken<Collection<LogDescriptor>>(){}.getType();
-				Collection<LogDescriptor> dLogList = gson.fromJson(result, collectionType);
-
-				//Save the retrieved list
-				if(dLogList != null) {
-					this.logList = new ArrayList<>(dLogList);
-					this.saveLogListOnAppInternalStorage();
-					return true;
-				}
-				else {
-					Log.e(TAG, "Error Reading from Shared Storage Document ! Log List = Null !");
-					return false;
-				}
-			}
-			else{
-				Log.e(TAG, "Error Reading from Shared Storage Document ! inputStream = Null !");
-				return false;
+		return controller.startImport(new LogListController.ImportSource() {
+			@Override
+			public InputStream openInputStream() throws IOException {
+				return context.getContentResolver().openInputStream(uri);
 			}
 
-		} catch (IOException e) {
-			e.printStackTrace();
-			return false;
-		}
+			@Override
+			public long getSize() {
+				return getDocumentSize(uri);
+			}
+		}, importMode, listener);
 	}
 
 	/**
-	 * Serialize the Log List in a JSON String
-	 * @return The Serialized JSON String of the Log List
+	 * @return the size of the document or -1 if it is not available
 	 */
-	private String getSerializedJsonContent(){
-
-		try{
-			return gson.toJson(this.logList);
-		}catch (Exception e){
-			e.printStackTrace();
-			return null;
+	private long getDocumentSize(Uri uri) {
+		try {
+			ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+			if(descriptor == null)
+				return -1;
+			long size = descriptor.getStatSize();
+			descriptor.close();
+			return size;
+		} catch (Exception e) {
+			return -1;
 		}
 	}
 
 	/**
 	 * Export the log list on file
-	 * @return a boolean value with the status of the operation
+	 * @param listener the listener notified (on the Main Thread) about progress and result
+	 * @return the handle that can be used to cancel the export
 	 */
-	public boolean exportStoredLogListAppExternalStorage()
+	public LogTransferTask exportStoredLogListAppExternalStorage(LogTransferListener listener)
 	{
 		//Check if the external memory is ready to be used
 		if(isExternalMemoryReady())
 		{
-				
-			try {
-				
-				//Get a File object associated to the root path of the external storage
-				File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
-
-				//Path associated to the root of the external storage
-				String path = dir.getAbsolutePath();
-				
-				//The filename of the new file 
-				String fileName = "mobdev_loglist.txt";
-						
+			//Get a File object associated to the root path of the external storage
+			File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+
+			//Path associated to the root of the external storage
+			String path = dir.getAbsolutePath();
+
+			//The filename of the new file
+			String fileName = "mobdev_loglist.txt";
+
+			if(VERBOSE)
 				Log.d(MainActivity.TAG,"External Storage Base Path: " + path);
-				
-				//Create a new File object representing the file that we are going to create
-				File outputFile = new File(path + File.separator + fileName);
-				
-				//Check if the file does not exist and if not create it
-				if(!outputFile.exists())
-					outputFile.createNewFile();
-				
-				//Open the Output stream to write on the target file
-				FileOutputStream fos = new FileOutputStream(outputFile);
-
-				String output = getSerializedJsonContent();
-
-				if(output != null){
-					fos.write(output.getBytes());
-					//Close the output stream
-					fos.close();
-					Log.d(MainActivity.TAG,"LogList Correctly Exported ! ("+outputFile.getAbsolutePath()+")");
-					Toast.makeText(context, "LogList Correctly Exported on External Memory!", Toast.LENGTH_LONG).show();
-				}
-				else {
-					Log.e(MainActivity.TAG,"Error Exporting LogList ! Null Json Content ! ");
-					Toast.makeText(context, "Error Exporting LogList ! !", Toast.LENGTH_LONG).show();
-				}
-				
-			} catch (Exception e) {
-				Log.e(MainActivity.TAG,"Error Exporting LogList: " + e.getLocalizedMessage());
-				e.printStackTrace();
-				return false;
-			}
-			
-			return true;
-		}
-		else
-		{	
-			Log.e(MainActivity.TAG, "Error External Storage Not Available !");	
-			return false;
-		}
-	}
-	
-	/**
-	 * Read (if available) the log list from the Internal Application Storage
-	 * 
-	 * @return
-	 * @throws FileNotFoundException
-	 * @throws IOException
-	 */
-	private ArrayList<LogDescriptor> readLogListFromFile() throws FileNotFoundException, IOException 
-	{
-		Log.d(MainActivity.TAG, "Reading Bookmark List from Internal Storage ...");
-		
-		//Create a StringBuffer used to append the chat read from the file
-		StringBuffer strContent = new StringBuffer("");
-		
-		int ch;
 
-		//Open the FileInputStream using the Context object
-		FileInputStream fis = context.openFileInput(outputFileName);
+			//Create a new File object representing the file that we are going to create
+			final File outputFile = new File(path + File.separator + fileName);
 
-		//While to read char by char the file (It is not the only way ! You can also read line by line)
-		while( (ch = fis.read()) != -1)
-			strContent.append((char)ch);
-		
-		//Close the input stream
-		fis.close();
+			//The content is written on a temporary file renamed only when the export is completed
+			final File tempFile = new File(path + File.separator + fileName + ".tmp");
 
-		Log.d(MainActivity.TAG, "Read Internal Storage Bookamark File: " + strContent);
+			return controller.startExport(new LogListController.ExportTarget() {
+				@Override
+				public OutputStream openOutputStream() throws IOException {
+					return new FileOutputStream(tempFile);
+				}
 
-		Type collectionType = new TypeToken<Collection<LogDescriptor>>(){}.getType();
+				@Override
+				public void close(boolean isCompleted) throws IOException {
+					if(isCompleted && tempFile.renameTo(outputFile)) {
+						Log.d(MainActivity.TAG,"LogList Correctly Exported ! ("+outputFile.getAbsolutePath()+")");
+						return;
+					}
 
-		//Create a Type object for the deserialization of the ArrayList of LogDescriptor
-		Collection<LogDescriptor> dLogList = gson.fromJson(strContent.toString(), collectionType);
-		
-		//Save the retrieved list
-		if(dLogList != null)
-			return new ArrayList<LogDescriptor>(dLogList);
+					tempFile.delete();
 
-		//If the list is null return an empty list
-		return new ArrayList<LogDescriptor>();
+					if(isCompleted)
+						throw new IOException("Error Renaming Exported File: " + outputFile.getAbsolutePath());
+				}
+			}, LogCodecs.JSON, listener);
+		}
+		else
+		{
+			Log.e(MainActivity.TAG, "Error External Storage Not Available !");
+			LogTransferTask task = new LogTransferTask(listener, mainThreadExecutor);
+			task.notifyFailed(new IOException("External Storage Not Available !"));
+			return task;
+		}
 	}
 
 	/**
-	 * Save the log list on file using the JSON format
-	 * 
-	 * @throws FileNotFoundException
-	 * @throws IOException
+	 * Executor running the tasks on the Main (UI) Thread
 	 */
-	private void saveLogListOnAppInternalStorage() throws FileNotFoundException, IOException
-	{
-		Log.d(MainActivity.TAG, "Saving LogDescriptor List on File ...");
-
-		//Create the Gson object to serialize the ArrayList
-		Gson gson = new Gson();
+	private static class MainThreadExecutor implements Executor {
 
-		//Create a Type object for the serialization of the ArrayList of LogDescriptor
-		Type collectionType = new TypeToken<Collection<LogDescriptor>>(){}.getType();
+		private Handler handler = new Handler(Looper.getMainLooper());
 
-		//Serialize in JSON
-		String ssidListJson = gson.toJson(this.logList, collectionType);
-
-		//Write the obtained string on file
-		FileOutputStream fos = context.openFileOutput(outputFileName, Context.MODE_PRIVATE);
-		fos.write(ssidListJson.getBytes());
-		fos.close();
+		@Override
+		public void execute(Runnable command) {
+			handler.post(command);
+		}
 	}
 }
-
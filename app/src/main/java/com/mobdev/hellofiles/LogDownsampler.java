@@ -0,0 +1,85 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Reduction of a sequence of logs to a small number of points that keep its visual shape.
+ *
+ * Largest-Triangle-Three-Buckets (Sveinn Steinarsson, 2013): the first and the last log are kept and
+ * the other ones are split in threshold - 2 buckets. From each bucket the log forming the largest
+ * triangle with the point selected in the previous bucket and the average of the next bucket is
+ * selected, so peaks and valleys survive the reduction while flat runs collapse. The cost is linear
+ * in the number of logs and nothing is allocated.
+ */
+public final class LogDownsampler {
+
+	private LogDownsampler() {
+	}
+
+	/**
+	 * @param timestamps the timestamps of the logs, in ascending order
+	 * @param values the values of the logs (finite)
+	 * @param count the number of logs
+	 * @param threshold the maximum number of selected points (at least 3 to downsample)
+	 * @param selected the destination of the selected logs (they are appended)
+	 * @return the number of selected logs
+	 */
+	public static int largestTriangleThreeBuckets(long[] timestamps, double[] values, int count, int threshold, LogStore selected) {
+
+		if(threshold >= count || threshold < 3) {
+			for(int i = 0; i < count; i++)
+				selected.add(timestamps[i], values[i]);
+			return count;
+		}
+
+		//The timestamps are made relative to the first one to keep the precision of the areas
+		long origin = timestamps[0];
+		double bucketSize = (double)(count - 2) / (threshold - 2);
+
+		int selectedIndex = 0;
+		selected.add(timestamps[0], values[0]);
+
+		for(int bucket = 0; bucket < threshold - 2; bucket++) {
+
+			int bucketStart = (int)(bucket * bucketSize) + 1;
+			int bucketEnd = (int)((bucket + 1) * bucketSize) + 1;
+
+			//Average of the next bucket (the last log for the last bucket)
+			int nextStart = bucketEnd;
+			int nextEnd = Math.min((int)((bucket + 2) * bucketSize) + 1, count);
+
+			double averageX = 0;
+			double averageY = 0;
+
+			for(int i = nextStart; i < nextEnd; i++) {
+				averageX += timestamps[i] - origin;
+				averageY += values[i];
+			}
+
+			averageX /= nextEnd - nextStart;
+			averageY /= nextEnd - nextStart;
+
+			double selectedX = timestamps[selectedIndex] - origin;
+			double selectedY = values[selectedIndex];
+
+			double maxArea = -1;
+			int maxAreaIndex = bucketStart;
+
+			for(int i = bucketStart; i < bucketEnd; i++) {
+
+				//Twice the area of the triangle, the comparison does not need the exact value
+				double area = Math.abs((selectedX - averageX) * (values[i] - selectedY) - (selectedX - (timestamps[i] - origin)) * (averageY - selectedY));
+
+				if(area > maxArea) {
+					maxArea = area;
+					maxAreaIndex = i;
+				}
+			}
+
+			selected.add(timestamps[maxAreaIndex], values[maxAreaIndex]);
+			selectedIndex = maxAreaIndex;
+		}
+
+		selected.add(timestamps[count - 1], values[count - 1]);
+
+		return threshold;
+	}
+}
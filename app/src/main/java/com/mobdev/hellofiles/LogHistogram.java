@@ -0,0 +1,179 @@
+package com.mobdev.hellofiles;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values (e.g. latencies in nanoseconds) with log-linear buckets
+ * as in HdrHistogram: each power of two is split in SUB_BUCKET_COUNT linear sub-buckets, so every
+ * value from 0 to Long.MAX_VALUE is counted with a relative error lower than 1 / SUB_BUCKET_COUNT
+ * (about 3%) in a fixed array of counters.
+ *
+ * Recording a value costs a few atomic increments and never allocates, so it can be called on the
+ * hot paths by any thread. The quantiles are computed on a {@link Snapshot}.
+ */
+public class LogHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/*
+	 * The values lower than SUB_BUCKET_COUNT have a bucket each, then SUB_BUCKET_COUNT buckets for
+	 * each of the following powers of two
+	 */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private AtomicLong sum = new AtomicLong();
+
+	private AtomicLong maximum = new AtomicLong();
+
+	/**
+	 * Immutable copy of the histogram
+	 */
+	public static class Snapshot {
+
+		private long[] counts = null;
+
+		private long count = 0;
+
+		private long sum = 0;
+
+		private long maximum = 0;
+
+		private Snapshot(long[] counts, long count, long sum, long maximum) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.maximum = maximum;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getSum() {
+			return sum;
+		}
+
+		public long getMaximum() {
+			return maximum;
+		}
+
+		public double getMean() {
+			return count > 0 ? (double)sum / count : 0.0;
+		}
+
+		/**
+		 * @param quantile the quantile in [0, 1]
+		 * @return the highest value counted by the bucket of the quantile (0 if there are no values)
+		 */
+		public long getValueAtQuantile(double quantile) {
+
+			if(count == 0)
+				return 0;
+
+			long rank = Math.max(1, (long)Math.ceil(quantile * count));
+			long seen = 0;
+
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank)
+					return Math.min(getBucketHighestValue(i), maximum);
+			}
+
+			return maximum;
+		}
+
+		public long getMedian() {
+			return getValueAtQuantile(0.5);
+		}
+
+		public long getP95() {
+			return getValueAtQuantile(0.95);
+		}
+
+		public long getP99() {
+			return getValueAtQuantile(0.99);
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + " mean=" + (long)getMean() + " p50=" + getMedian() + " p95=" + getP95()
+					+ " p99=" + getP99() + " max=" + maximum;
+		}
+	}
+
+	/**
+	 * @param value the value to count (the negative values are counted as 0)
+	 */
+	public void record(long value) {
+
+		if(value < 0)
+			value = 0;
+
+		counts.incrementAndGet(getBucket(value));
+		sum.addAndGet(value);
+
+		long currentMaximum = maximum.get();
+
+		while(value > currentMaximum && !maximum.compareAndSet(currentMaximum, value))
+			currentMaximum = maximum.get();
+	}
+
+	/**
+	 * Record the time elapsed from the target start
+	 * @param startNanos the start of the operation as returned by System.nanoTime()
+	 */
+	public void recordElapsed(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Copy the counters. The values recorded during the copy can be partially included.
+	 */
+	public Snapshot getSnapshot() {
+
+		long[] copiedCounts = new long[BUCKET_COUNT];
+		long copiedCount = 0;
+
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			copiedCounts[i] = counts.get(i);
+			copiedCount += copiedCounts[i];
+		}
+
+		return new Snapshot(copiedCounts, copiedCount, sum.get(), maximum.get());
+	}
+
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			counts.set(i, 0);
+		sum.set(0);
+		maximum.set(0);
+	}
+
+	private static int getBucket(long value) {
+
+		if(value < SUB_BUCKET_COUNT)
+			return (int)value;
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+		return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long getBucketHighestValue(int bucket) {
+
+		if(bucket < SUB_BUCKET_COUNT)
+			return bucket;
+
+		int magnitude = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKET_COUNT;
+		long lowestValue = (1L << magnitude) | (subBucket << (magnitude - SUB_BUCKET_BITS));
+
+		return lowestValue + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+	}
+}
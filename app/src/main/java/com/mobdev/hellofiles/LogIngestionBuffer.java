@@ -0,0 +1,184 @@
+package com.mobdev.hellofiles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free multi-producer single-consumer buffer of the logs submitted by any thread.
+ *
+ * The logs are stored in a linked list of fixed-size chunks of primitive arrays. A producer claims
+ * a slot of the last chunk with an atomic increment, writes the log and then publishes the slot;
+ * when the chunk is full the next one is linked with a CAS. Producers never block each other or the
+ * consumer and no object is allocated for each log. The single consumer reads the published slots
+ * in order and stops at the first slot that has been claimed but not published yet.
+ * A batch of logs takes a single slot, so it is delivered as a unit in the submission order.
+ */
+public class LogIngestionBuffer {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Receives the drained logs on the consumer thread
+	 */
+	public interface Consumer {
+
+		void onLog(byte operation, long timestamp, double value);
+
+		void onBatch(byte operation, long[] timestamps, double[] values);
+	}
+
+	private static class LogBatch {
+
+		private long[] timestamps = null;
+
+		private double[] values = null;
+
+		private LogBatch(long[] timestamps, double[] values) {
+			this.timestamps = timestamps;
+			this.values = values;
+		}
+	}
+
+	private static class Chunk {
+
+		private final byte[] operations = new byte[CHUNK_SIZE];
+
+		private final long[] timestamps = new long[CHUNK_SIZE];
+
+		private final double[] values = new double[CHUNK_SIZE];
+
+		/*
+		 * Batch stored in the slot (null for a single log)
+		 */
+		private final LogBatch[] batches = new LogBatch[CHUNK_SIZE];
+
+		/*
+		 * 1 when the slot has been written (the write of the flag publishes the slot content)
+		 */
+		private final AtomicIntegerArray published = new AtomicIntegerArray(CHUNK_SIZE);
+
+		private final AtomicInteger claimed = new AtomicInteger(0);
+
+		private final AtomicReference<Chunk> next = new AtomicReference<Chunk>(null);
+	}
+
+	/*
+	 * Chunk where the producers claim the slots
+	 */
+	private final AtomicReference<Chunk> tailChunk;
+
+	/*
+	 * Chunk and slot of the next log read by the consumer (used only by the consumer thread)
+	 */
+	private Chunk headChunk = null;
+
+	private int headIndex = 0;
+
+	public LogIngestionBuffer() {
+		Chunk chunk = new Chunk();
+		this.tailChunk = new AtomicReference<Chunk>(chunk);
+		this.headChunk = chunk;
+	}
+
+	/**
+	 * Add a log to the buffer. It can be called by any thread and it never blocks.
+	 */
+	public void offer(byte operation, long timestamp, double value) {
+		offer(operation, timestamp, value, null);
+	}
+
+	/**
+	 * Add a batch of logs that is delivered as a unit. It can be called by any thread and it never blocks.
+	 * @param operation the operation applied to all the logs
+	 * @param timestamps the timestamps of the logs (not modified anymore by the caller)
+	 * @param values the values of the logs (not modified anymore by the caller)
+	 */
+	public void offerBatch(byte operation, long[] timestamps, double[] values) {
+		offer(operation, 0, 0.0, new LogBatch(timestamps, values));
+	}
+
+	private void offer(byte operation, long timestamp, double value, LogBatch batch) {
+
+		while(true) {
+
+			Chunk chunk = tailChunk.get();
+			int index = chunk.claimed.getAndIncrement();
+
+			if(index < CHUNK_SIZE) {
+				chunk.operations[index] = operation;
+				chunk.timestamps[index] = timestamp;
+				chunk.values[index] = value;
+				chunk.batches[index] = batch;
+				chunk.published.lazySet(index, 1);
+				return;
+			}
+
+			//The chunk is full: link a new one (or help the producer that is linking it)
+			Chunk next = chunk.next.get();
+
+			if(next == null) {
+				Chunk newChunk = new Chunk();
+				next = chunk.next.compareAndSet(null, newChunk) ? newChunk : chunk.next.get();
+			}
+
+			tailChunk.compareAndSet(chunk, next);
+		}
+	}
+
+	/**
+	 * Deliver the published logs in submission order. It must be called only by the consumer thread.
+	 * @param consumer the receiver of the logs
+	 * @param maxLogs the maximum number of logs to deliver (a batch is always delivered as a whole)
+	 * @return the number of delivered logs
+	 */
+	public int drain(Consumer consumer, int maxLogs) {
+
+		int count = 0;
+
+		while(count < maxLogs) {
+
+			if(headIndex == CHUNK_SIZE) {
+
+				Chunk next = headChunk.next.get();
+
+				if(next == null)
+					break;
+
+				headChunk = next;
+				headIndex = 0;
+			}
+
+			if(headChunk.published.get(headIndex) == 0)
+				break;
+
+			LogBatch batch = headChunk.batches[headIndex];
+
+			if(batch != null) {
+				headChunk.batches[headIndex] = null;
+				consumer.onBatch(headChunk.operations[headIndex], batch.timestamps, batch.values);
+				count += batch.timestamps.length;
+			}
+			else {
+				consumer.onLog(headChunk.operations[headIndex], headChunk.timestamps[headIndex], headChunk.values[headIndex]);
+				count++;
+			}
+
+			headIndex++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return true if there is at least a published log to drain (consumer thread only)
+	 */
+	public boolean hasPublishedLogs() {
+
+		if(headIndex < CHUNK_SIZE)
+			return headChunk.published.get(headIndex) != 0;
+
+		Chunk next = headChunk.next.get();
+		return next != null && next.published.get(0) != 0;
+	}
+}
@@ -0,0 +1,251 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Append-only journal of the mutations applied to the log list.
+ * Each mutation is stored as a fixed-size record so adding or removing a log costs a single small
+ * append on file instead of the rewrite of the whole list.
+ *
+ * File: MAGIC (int) | VERSION (short) | Reserved (short) | Records
+ * Record: Operation (byte) | Position (int) | Timestamp (long) | Value (double) | CRC-32C of the previous fields (int)
+ *
+ * The checksum detects a record that has been partially written or damaged: the replay stops at
+ * the first invalid record and the journal is truncated there.
+ */
+public class LogJournal {
+
+	public static final byte OP_ADD = 1;
+
+	public static final byte OP_ADD_TO_HEAD = 2;
+
+	public static final byte OP_REMOVE = 3;
+
+	public static final int MAGIC = 0x48464C4A; // "HFLJ"
+
+	public static final short VERSION = 2;
+
+	public static final int HEADER_SIZE = 4 + 2 + 2;
+
+	/*
+	 * Operation (1 byte) + Position (4 bytes) + Timestamp (8 bytes) + Value (8 bytes)
+	 */
+	private static final int RECORD_DATA_SIZE = 1 + 4 + 8 + 8;
+
+	/*
+	 * Record data + CRC-32C (4 bytes)
+	 */
+	public static final int RECORD_SIZE = RECORD_DATA_SIZE + 4;
+
+	private FileOutputStream outputStream = null;
+
+	private FileChannel channel = null;
+
+	private ByteBuffer recordBuffer = null;
+
+	/**
+	 * Group of mutation records written on the journal with a single append
+	 */
+	public static class Batch {
+
+		private byte[] operations = null;
+		private int[] positions = null;
+		private long[] timestamps = null;
+		private double[] values = null;
+		private int size = 0;
+
+		public Batch() {
+			this(64);
+		}
+
+		public Batch(int capacity) {
+			this.operations = new byte[capacity];
+			this.positions = new int[capacity];
+			this.timestamps = new long[capacity];
+			this.values = new double[capacity];
+		}
+
+		public void add(byte operation, int position, long timestamp, double value) {
+
+			if(size == operations.length) {
+				int newCapacity = Math.max(16, size * 2);
+				operations = Arrays.copyOf(operations, newCapacity);
+				positions = Arrays.copyOf(positions, newCapacity);
+				timestamps = Arrays.copyOf(timestamps, newCapacity);
+				values = Arrays.copyOf(values, newCapacity);
+			}
+
+			operations[size] = operation;
+			positions[size] = position;
+			timestamps[size] = timestamp;
+			values[size] = value;
+			size++;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+	}
+
+	/**
+	 * Open the journal file in append mode (the file is created with its header if it does not exist)
+	 * @param file the journal file
+	 * @throws IOException
+	 */
+	public LogJournal(File file) throws IOException {
+
+		this.outputStream = new FileOutputStream(file, true);
+		this.channel = this.outputStream.getChannel();
+		this.recordBuffer = ByteBuffer.allocate(RECORD_SIZE * 64);
+
+		if(channel.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putShort(VERSION);
+			header.putShort((short)0);
+			header.flip();
+			while(header.hasRemaining())
+				channel.write(header);
+		}
+	}
+
+	/**
+	 * Append all the records of the batch at the end of the journal with a single write
+	 * @param batch the records to append
+	 * @throws IOException
+	 */
+	public void append(Batch batch) throws IOException {
+
+		if(recordBuffer.capacity() < batch.size * RECORD_SIZE)
+			recordBuffer = ByteBuffer.allocate(batch.size * RECORD_SIZE);
+
+		recordBuffer.clear();
+
+		byte[] records = recordBuffer.array();
+
+		for(int i = 0; i < batch.size; i++) {
+			int recordOffset = recordBuffer.position();
+			recordBuffer.put(batch.operations[i]);
+			recordBuffer.putInt(batch.positions[i]);
+			recordBuffer.putLong(batch.timestamps[i]);
+			recordBuffer.putDouble(batch.values[i]);
+			recordBuffer.putInt(Crc32c.compute(records, recordOffset, RECORD_DATA_SIZE));
+		}
+
+		recordBuffer.flip();
+
+		while(recordBuffer.hasRemaining())
+			channel.write(recordBuffer);
+	}
+
+	/**
+	 * Force the appended records on the storage device (fsync)
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+		channel.force(false);
+	}
+
+	public void close() throws IOException {
+		channel.close();
+		outputStream.close();
+	}
+
+	/**
+	 * Apply all the valid records stored in a journal file to the target store.
+	 * The records are read up to the first one that is incomplete or has a wrong checksum (e.g. the
+	 * application has been killed while appending it): the file is truncated there so that the
+	 * following appends start after the last valid record.
+	 *
+	 * @param file the journal file
+	 * @param logStore the store to update
+	 * @return the number of applied records
+	 * @throws IOException if the file can not be read or a valid record can not be applied
+	 */
+	public static int replay(File file, LogStore logStore) throws IOException {
+
+		long length = file.length();
+
+		if(length == 0)
+			return 0;
+
+		//Header written only in part, the journal is created again by the next append
+		if(length < HEADER_SIZE) {
+			truncate(file, 0);
+			return 0;
+		}
+
+		ByteBuffer buffer = LogStorage.mapFile(file);
+
+		if(buffer.getInt(0) != MAGIC)
+			throw new IOException("Invalid Journal Header: " + file.getName());
+
+		short version = buffer.getShort(4);
+
+		if(version != VERSION)
+			throw new IOException("Unsupported Journal Version: " + version);
+
+		buffer.position(HEADER_SIZE);
+
+		byte[] record = new byte[RECORD_SIZE];
+		ByteBuffer recordView = ByteBuffer.wrap(record);
+		int count = 0;
+
+		while(buffer.remaining() >= RECORD_SIZE) {
+
+			buffer.get(record);
+
+			if(Crc32c.compute(record, 0, RECORD_DATA_SIZE) != recordView.getInt(RECORD_DATA_SIZE))
+				break;
+
+			apply(logStore, recordView.get(0), recordView.getInt(1), recordView.getLong(5), recordView.getDouble(13));
+			count++;
+		}
+
+		//The mapped buffer is not read anymore
+		long validLength = HEADER_SIZE + (long)count * RECORD_SIZE;
+
+		if(validLength != length)
+			truncate(file, validLength);
+
+		return count;
+	}
+
+	private static void apply(LogStore logStore, byte operation, int position, long timestamp, double value) throws IOException {
+
+		switch (operation) {
+			case OP_ADD:
+				logStore.add(timestamp, value);
+				break;
+			case OP_ADD_TO_HEAD:
+				logStore.addToHead(timestamp, value);
+				break;
+			case OP_REMOVE:
+				if(position < 0 || position >= logStore.size())
+					throw new IOException("Invalid Journal Record ! Remove Position: " + position + " Store Size: " + logStore.size());
+				logStore.remove(position);
+				break;
+			default:
+				throw new IOException("Invalid Journal Record ! Unknown Operation: " + operation);
+		}
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Multiset of logs identified by their key, the pair (timestamp, value), used to find in O(1) if a
+ * log is already in a list (e.g. to merge an imported document without duplicating its logs).
+ *
+ * The keys are stored in an open-addressing hash table with linear probing made of three parallel
+ * primitive arrays (timestamps, bits of the values and number of logs with the key), so each slot
+ * costs 20 bytes without any per-object header or boxing. The values are compared by their bits
+ * as in {@link LogStore#indexOf(long, double)}. A removed key is deleted by shifting back the
+ * following keys of its probe sequence, so the lookups never have to skip deleted slots.
+ */
+public class LogKeyIndex {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private static final int SCAN_CHUNK_SIZE = 4096;
+
+	private long[] timestamps = null;
+
+	private long[] valueBits = null;
+
+	/*
+	 * Number of logs with the key of each slot (0 for a free slot)
+	 */
+	private int[] counts = null;
+
+	private int mask = 0;
+
+	private int keyCount = 0;
+
+	private int size = 0;
+
+	public LogKeyIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedKeys the number of keys that can be added without resizing the table
+	 */
+	public LogKeyIndex(int expectedKeys) {
+		allocate(getCapacity(expectedKeys));
+	}
+
+	/**
+	 * Index all the logs of a source reading it a chunk at a time
+	 * @param logSource the source to index
+	 * @return the index of the logs of the source
+	 */
+	public static LogKeyIndex build(LogSource logSource) {
+
+		int size = logSource.size();
+		LogKeyIndex index = new LogKeyIndex(size);
+		long[] timestamps = new long[Math.min(SCAN_CHUNK_SIZE, size)];
+		double[] values = new double[timestamps.length];
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += SCAN_CHUNK_SIZE) {
+
+			int chunkCount = Math.min(SCAN_CHUNK_SIZE, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++)
+				index.add(timestamps[i], values[i]);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Select the logs of the candidates that are not in the source. Each log of the source matches
+	 * a single candidate with the same key, so a log that is twice in the candidates is selected
+	 * only if it is at most once in the source, and the candidates added to the source are never
+	 * selected again (the merge is idempotent).
+	 *
+	 * @param logSource the logs already available (e.g. the log list)
+	 * @param candidates the logs to merge (e.g. the logs of an imported document)
+	 * @return the unmatched candidates, in their order
+	 */
+	public static ArrayLogStore selectMissing(LogSource logSource, LogSource candidates) {
+
+		LogKeyIndex sourceKeys = build(logSource);
+		ArrayLogStore missingLogs = new ArrayLogStore();
+
+		int size = candidates.size();
+		long[] timestamps = new long[Math.min(SCAN_CHUNK_SIZE, size)];
+		double[] values = new double[timestamps.length];
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += SCAN_CHUNK_SIZE) {
+
+			int chunkCount = Math.min(SCAN_CHUNK_SIZE, size - chunkStart);
+			candidates.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++)
+				if(!sourceKeys.remove(timestamps[i], values[i]))
+					missingLogs.add(timestamps[i], values[i]);
+		}
+
+		return missingLogs;
+	}
+
+	/**
+	 * @return the number of indexed logs (the logs with the same key are counted once each)
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of distinct keys
+	 */
+	public int getKeyCount() {
+		return keyCount;
+	}
+
+	public void add(long timestamp, double value) {
+
+		long bits = Double.doubleToLongBits(value);
+		int slot = findSlot(timestamp, bits);
+
+		if(counts[slot] == 0) {
+			timestamps[slot] = timestamp;
+			valueBits[slot] = bits;
+			keyCount++;
+		}
+
+		counts[slot]++;
+		size++;
+
+		//The table is kept at most half full, so the probe sequences stay short
+		if(keyCount * 2 > counts.length)
+			resize(counts.length * 2);
+	}
+
+	/**
+	 * @return the number of indexed logs with the target timestamp and value
+	 */
+	public int count(long timestamp, double value) {
+		return counts[findSlot(timestamp, Double.doubleToLongBits(value))];
+	}
+
+	public boolean contains(long timestamp, double value) {
+		return count(timestamp, value) > 0;
+	}
+
+	/**
+	 * Remove a single log with the target timestamp and value
+	 * @return false if the index does not contain the log
+	 */
+	public boolean remove(long timestamp, double value) {
+
+		int slot = findSlot(timestamp, Double.doubleToLongBits(value));
+
+		if(counts[slot] == 0)
+			return false;
+
+		counts[slot]--;
+		size--;
+
+		if(counts[slot] == 0) {
+			keyCount--;
+			shiftBack(slot);
+		}
+
+		return true;
+	}
+
+	public void clear() {
+		for(int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+		keyCount = 0;
+		size = 0;
+	}
+
+	/*
+	 * Slot of the key or free slot where the key has to be inserted
+	 */
+	private int findSlot(long timestamp, long bits) {
+
+		int slot = hash(timestamp, bits) & mask;
+
+		while(counts[slot] != 0 && (timestamps[slot] != timestamp || valueBits[slot] != bits))
+			slot = (slot + 1) & mask;
+
+		return slot;
+	}
+
+	/*
+	 * Fill the freed slot with the following keys of the probe sequence that can be moved there
+	 * (the ones whose home slot is not between the freed slot and their current one)
+	 */
+	private void shiftBack(int freeSlot) {
+
+		int slot = (freeSlot + 1) & mask;
+
+		while(counts[slot] != 0) {
+
+			int homeSlot = hash(timestamps[slot], valueBits[slot]) & mask;
+
+			if(((slot - homeSlot) & mask) >= ((slot - freeSlot) & mask)) {
+				timestamps[freeSlot] = timestamps[slot];
+				valueBits[freeSlot] = valueBits[slot];
+				counts[freeSlot] = counts[slot];
+				counts[slot] = 0;
+				freeSlot = slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void resize(int capacity) {
+
+		long[] oldTimestamps = timestamps;
+		long[] oldValueBits = valueBits;
+		int[] oldCounts = counts;
+
+		allocate(capacity);
+
+		for(int i = 0; i < oldCounts.length; i++) {
+			if(oldCounts[i] != 0) {
+				int slot = findSlot(oldTimestamps[i], oldValueBits[i]);
+				timestamps[slot] = oldTimestamps[i];
+				valueBits[slot] = oldValueBits[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		timestamps = new long[capacity];
+		valueBits = new long[capacity];
+		counts = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/*
+	 * Smallest power of two holding the keys at most half full
+	 */
+	private static int getCapacity(int expectedKeys) {
+		int capacity = MIN_CAPACITY;
+		while(capacity < expectedKeys * 2L && capacity < (1 << 30))
+			capacity <<= 1;
+		return capacity;
+	}
+
+	/*
+	 * Mix of the two halves of the key, so consecutive timestamps are spread over the whole table
+	 */
+	static int hash(long timestamp, long bits) {
+		long h = timestamp * 0x9E3779B97F4A7C15L ^ bits;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		h ^= h >>> 29;
+		return (int)h;
+	}
+}
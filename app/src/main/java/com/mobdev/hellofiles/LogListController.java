@@ -0,0 +1,1075 @@
+package com.mobdev.hellofiles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log list of the application with its files, without any dependency on the Android framework.
+ *
+ * It keeps the list in a PagedLogStore modified only by the Main Thread, writes the mutations on the
+ * journal and the snapshots through the PersistenceScheduler, drains the logs submitted by the other
+ * threads, applies the retention of the stored segments and imports or exports the documents on a
+ * background thread. LogDescriptorManager wires it to the Context and the Looper of the application,
+ * while the benchmarks run it on the JVM.
+ */
+public class LogListController {
+
+	/**
+	 * The imported document replaces the whole log list
+	 */
+	public static final int IMPORT_REPLACE = 0;
+
+	/**
+	 * The logs of the imported document that are not in the list yet are appended at the end of it,
+	 * so importing the same document again does not change the list
+	 */
+	public static final int IMPORT_MERGE = 1;
+
+	private static final String METRICS_FILE_NAME = "metrics.txt";
+
+	/*
+	 * Number of logs decoded or encoded between two progress notifications
+	 */
+	private static final int TRANSFER_CHUNK_SIZE = 4096;
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	/*
+	 * Maximum number of logs moved from the ingestion buffer to the list in a single Main Thread
+	 * task, so a burst of logs does not block the UI
+	 */
+	private static final int MAX_DRAINED_LOGS = 4096;
+
+	private static final LogHistogram addLatency = LogMetrics.getInstance().getHistogram(LogMetrics.ADD_LATENCY);
+
+	private static final LogHistogram removeLatency = LogMetrics.getInstance().getHistogram(LogMetrics.REMOVE_LATENCY);
+
+	private static final LogHistogram importLatency = LogMetrics.getInstance().getHistogram(LogMetrics.IMPORT_LATENCY);
+
+	private static final LogHistogram exportLatency = LogMetrics.getInstance().getHistogram(LogMetrics.EXPORT_LATENCY);
+
+	private static final AtomicLong journalDepthGauge = LogMetrics.getInstance().getCounter(LogMetrics.JOURNAL_DEPTH);
+
+	/**
+	 * Platform services used by the controller. The messages and the errors are delivered on the
+	 * calling thread.
+	 */
+	public interface Host {
+
+		/**
+		 * @return true if the calling thread is the one that modifies the list (the Main Thread)
+		 */
+		boolean isMainThread();
+
+		/**
+		 * Calculate the changes turning the list into an imported one (executed in background)
+		 * @return the changes or null to notify that the whole list has changed
+		 */
+		ListDiff calculateDiff(LogSource oldList, LogSource newList);
+
+		/**
+		 * Diagnostic message, delivered only if the controller is verbose (see setVerbose())
+		 */
+		void onDebugMessage(String message);
+
+		void onErrorMessage(String message);
+
+		/**
+		 * A mutation or a snapshot has not been written on file
+		 */
+		void onPersistenceError(Exception e);
+
+		/**
+		 * The stored list can not be read, an empty list is used instead
+		 * @param recoveryDirectory the folder where the unreadable files have been moved or null if they have not been moved
+		 */
+		void onLoadError(Exception e, File recoveryDirectory);
+	}
+
+	/**
+	 * Changes between the list and an imported one (see LogListDiff)
+	 */
+	public interface ListDiff {
+
+		void dispatchTo(LogListListener listener);
+	}
+
+	/**
+	 * Document read by an import
+	 */
+	public interface ImportSource {
+
+		InputStream openInputStream() throws IOException;
+
+		/**
+		 * @return the size of the document or -1 if it is not available
+		 */
+		long getSize();
+	}
+
+	/**
+	 * Destination of an export
+	 */
+	public interface ExportTarget {
+
+		OutputStream openOutputStream() throws IOException;
+
+		/**
+		 * Called after the output stream has been closed
+		 * @param isCompleted true if the whole list has been written
+		 */
+		void close(boolean isCompleted) throws IOException;
+	}
+
+	private File filesDir = null;
+
+	private Host host = null;
+
+	private boolean isVerbose = false;
+
+	private PagedLogStore logStore = null;
+
+	/*
+	 * Content frozen for the snapshot being written (null if there is not a pending snapshot)
+	 */
+	private LogSource pendingSnapshot = null;
+
+	private LogStorage logStorage = null;
+
+	/*
+	 * Single background writer used to append the journal and to write the snapshots
+	 */
+	private PersistenceScheduler persistenceScheduler = null;
+
+	/*
+	 * Background thread used to import and export the log list
+	 */
+	private ExecutorService transferExecutor = null;
+
+	private Executor mainThreadExecutor = null;
+
+	/*
+	 * Number of mutations submitted after the latest snapshot request
+	 */
+	private int journalDepth = 0;
+
+	/*
+	 * Logs submitted by the other threads. They are drained into the list by the Main Thread, which
+	 * is the only thread that modifies the list.
+	 */
+	private LogIngestionBuffer ingestionBuffer = new LogIngestionBuffer();
+
+	private AtomicBoolean isDrainScheduled = new AtomicBoolean(false);
+
+	private CopyOnWriteArrayList<LogListListener> logListListeners = new CopyOnWriteArrayList<LogListListener>();
+
+	/*
+	 * Logs inserted at the head and at the end of the list by the current drain (Main Thread only)
+	 */
+	private int drainedHeadLogs = 0;
+
+	private int drainedTailLogs = 0;
+
+	private int drainedTailStart = 0;
+
+	/*
+	 * Immutable copy of the list returned to the readers, created on demand and discarded by the
+	 * next mutation
+	 */
+	private volatile LogSource publishedSnapshot = null;
+
+	private Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			isDrainScheduled.set(false);
+
+			drainIngestionBuffer();
+
+			//Remaining logs are drained by the next task to keep the Main Thread responsive
+			if(ingestionBuffer.hasPublishedLogs())
+				scheduleDrain();
+		}
+	};
+
+	private LogIngestionBuffer.Consumer ingestionConsumer = new LogIngestionBuffer.Consumer() {
+		@Override
+		public void onLog(byte operation, long timestamp, double value) {
+			if(operation == LogJournal.OP_ADD_TO_HEAD) {
+				applyAddToHead(timestamp, value);
+				drainedHeadLogs++;
+			}
+			else {
+				applyAdd(timestamp, value);
+				drainedTailLogs++;
+			}
+		}
+
+		@Override
+		public void onBatch(byte operation, long[] timestamps, double[] values) {
+			applyBatch(timestamps, values, 0, timestamps.length);
+			drainedTailLogs += timestamps.length;
+		}
+	};
+
+	/**
+	 * @param filesDir the folder of the list files (e.g. the internal storage)
+	 * @param storageBaseName the base name of the snapshot and journal files
+	 * @param legacyFileName the name of the JSON file of the previous versions
+	 * @param mainThreadExecutor the executor of the Main Thread, used for the callbacks of the background threads
+	 * @param host the platform services
+	 */
+	public LogListController(File filesDir, String storageBaseName, String legacyFileName, Executor mainThreadExecutor, Host host) {
+
+		this.filesDir = filesDir;
+		this.host = host;
+		this.logStorage = new LogStorage(filesDir, storageBaseName, legacyFileName);
+		this.mainThreadExecutor = mainThreadExecutor;
+		this.transferExecutor = Executors.newSingleThreadExecutor();
+		this.persistenceScheduler = new PersistenceScheduler(logStorage, mainThreadExecutor, new PersistenceScheduler.Listener() {
+			@Override
+			public void onPersistenceError(Exception e) {
+				LogListController.this.host.onPersistenceError(e);
+
+				//The mutations are not appended anymore, a whole snapshot stores them (a failed snapshot is retried by the next mutation)
+				if(pendingSnapshot == null && persistenceScheduler.isJournalDiverged())
+					saveLogList();
+			}
+
+			@Override
+			public void onSnapshotCompleted(LogSource snapshot, LogSegmentSet storedSnapshot) {
+
+				if(snapshot == pendingSnapshot)
+					pendingSnapshot = null;
+
+				//The in-memory content of the snapshot is released and read on demand from the segments
+				if(storedSnapshot != null && logStore.rebase(snapshot, storedSnapshot)) {
+					if(isVerbose)
+						LogListController.this.host.onDebugMessage("Log List Paged on Snapshot: " + storedSnapshot);
+					applyRetention();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Deliver the diagnostic messages to the host (e.g. only in the debug builds)
+	 */
+	public void setVerbose(boolean isVerbose) {
+		this.isVerbose = isVerbose;
+	}
+
+	/**
+	 * Read (if available) the log list from the files, loading the latest snapshot and applying
+	 * the mutations stored on the journal. The unreadable files are moved aside (and not
+	 * overwritten by the next snapshot) and an empty list is used.
+	 */
+	public void load() {
+
+		try {
+			if(isVerbose)
+				host.onDebugMessage("Reading Bookmark List from Internal Storage ...");
+			this.logStore = logStorage.load();
+			this.journalDepth = logStorage.getJournalDepth();
+			journalDepthGauge.set(this.journalDepth);
+			if(isVerbose)
+				host.onDebugMessage("Log File available ! List size: " + this.logStore.size() + " Journal Records: " + this.journalDepth);
+			applyRetention();
+		} catch(Exception e) {
+			this.logStore = new PagedLogStore(new ArrayLogStore());
+
+			File recoveryDirectory = null;
+			try {
+				recoveryDirectory = logStorage.moveToRecovery();
+			} catch (IOException moveException) {
+				moveException.printStackTrace();
+			}
+
+			host.onLoadError(e, recoveryDirectory);
+		}
+	}
+
+	/**
+	 * Append a log at the end of the list without allocating any object. It can be called by any
+	 * thread: the logs submitted by the other threads are buffered without blocking and added to the
+	 * list by the Main Thread, then the registered LogListListener objects are notified.
+	 */
+	public void addLog(long timestamp, double value) {
+		if(host.isMainThread()) {
+			drainIngestionBuffer();
+			applyAdd(timestamp, value);
+			notifyLogsInserted(this.logStore.size() - 1, 1);
+		}
+		else
+			submitLog(LogJournal.OP_ADD, timestamp, value);
+	}
+
+	/**
+	 * Append a group of logs at the end of the list. It can be called by any thread. The whole
+	 * group is added at once: it is written on file with a single journal append and the registered
+	 * LogListListener objects receive a single notification for the inserted range.
+	 *
+	 * @param timestamps the timestamps of the logs
+	 * @param values the values of the logs (same length of the timestamps)
+	 */
+	public void addLogs(long[] timestamps, double[] values) {
+
+		if(timestamps.length != values.length)
+			throw new IllegalArgumentException("Timestamps: " + timestamps.length + " Values: " + values.length);
+
+		//The arrays are copied since the caller can reuse them while the batch is buffered
+		if(host.isMainThread())
+			appendBatch(timestamps, values);
+		else
+			appendBatch(timestamps.clone(), values.clone());
+	}
+
+	private void appendBatch(long[] timestamps, double[] values) {
+
+		if(timestamps.length == 0)
+			return;
+
+		if(host.isMainThread()) {
+			drainIngestionBuffer();
+			int position = this.logStore.size();
+			applyBatch(timestamps, values, 0, timestamps.length);
+			notifyLogsInserted(position, timestamps.length);
+		}
+		else {
+			ingestionBuffer.offerBatch(LogJournal.OP_ADD, timestamps, values);
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * Insert a log at the beginning of the list. It can be called by any thread (see addLog()).
+	 */
+	public void addLogToHead(long timestamp, double value) {
+		if(host.isMainThread()) {
+			drainIngestionBuffer();
+			applyAddToHead(timestamp, value);
+			notifyLogsInserted(0, 1);
+		}
+		else
+			submitLog(LogJournal.OP_ADD_TO_HEAD, timestamp, value);
+	}
+
+	private void applyAdd(long timestamp, double value) {
+		long startNanos = System.nanoTime();
+		this.logStore.add(timestamp, value);
+		persistMutation(LogJournal.OP_ADD, this.logStore.size() - 1, timestamp, value);
+		addLatency.recordElapsed(startNanos);
+	}
+
+	private void applyAddToHead(long timestamp, double value) {
+		long startNanos = System.nanoTime();
+		this.logStore.addToHead(timestamp, value);
+		persistMutation(LogJournal.OP_ADD_TO_HEAD, 0, timestamp, value);
+		addLatency.recordElapsed(startNanos);
+	}
+
+	/*
+	 * The latency of a batch is recorded once, as a single add
+	 */
+	private void applyBatch(long[] timestamps, double[] values, int offset, int count) {
+
+		long startNanos = System.nanoTime();
+		LogJournal.Batch batch = new LogJournal.Batch(count);
+
+		for(int i = offset; i < offset + count; i++) {
+			this.logStore.add(timestamps[i], values[i]);
+			batch.add(LogJournal.OP_ADD, this.logStore.size() - 1, timestamps[i], values[i]);
+		}
+
+		persistBatch(batch);
+		addLatency.recordElapsed(startNanos);
+	}
+
+	private void submitLog(byte operation, long timestamp, double value) {
+		ingestionBuffer.offer(operation, timestamp, value);
+		scheduleDrain();
+	}
+
+	private void scheduleDrain() {
+		if(isDrainScheduled.compareAndSet(false, true))
+			mainThreadExecutor.execute(drainTask);
+	}
+
+	/*
+	 * Move the buffered logs into the list and notify the listeners once (Main Thread only)
+	 */
+	private int drainIngestionBuffer() {
+
+		drainedHeadLogs = 0;
+		drainedTailLogs = 0;
+		drainedTailStart = this.logStore.size();
+
+		int drainedLogs = ingestionBuffer.drain(ingestionConsumer, MAX_DRAINED_LOGS);
+
+		//The logs added at the end are shifted by the ones inserted at the head in the meantime
+		if(drainedHeadLogs > 0)
+			notifyLogsInserted(0, drainedHeadLogs);
+		if(drainedTailLogs > 0)
+			notifyLogsInserted(drainedHeadLogs + drainedTailStart, drainedTailLogs);
+
+		return drainedLogs;
+	}
+
+	private void notifyLogsInserted(int position, int count) {
+		for(LogListListener listener : logListListeners)
+			listener.onLogsInserted(position, count);
+	}
+
+	private void notifyLogsRemoved(int position, int count) {
+		for(LogListListener listener : logListListeners)
+			listener.onLogsRemoved(position, count);
+	}
+
+	private void notifyLogListDiff(ListDiff diff) {
+		for(LogListListener listener : logListListeners)
+			diff.dispatchTo(listener);
+	}
+
+	private void notifyLogListChanged() {
+		for(LogListListener listener : logListListeners)
+			listener.onLogListChanged();
+	}
+
+	public void addLogListListener(LogListListener listener) {
+		logListListeners.addIfAbsent(listener);
+	}
+
+	public void removeLogListListener(LogListListener listener) {
+		logListListeners.remove(listener);
+	}
+
+	private void checkMainThread() {
+		if(!host.isMainThread())
+			throw new IllegalStateException("The log list can be modified only by the Main Thread !");
+	}
+
+	/**
+	 * Remove the log at the target position (Main Thread only, the positions are the ones shown by the UI)
+	 */
+	public void removeLog(int position) {
+		checkMainThread();
+		long startNanos = System.nanoTime();
+		long timestamp = this.logStore.getTimestamp(position);
+		double value = this.logStore.getValue(position);
+		this.logStore.remove(position);
+		persistMutation(LogJournal.OP_REMOVE, position, timestamp, value);
+		removeLatency.recordElapsed(startNanos);
+		notifyLogsRemoved(position, 1);
+	}
+
+	/**
+	 * Remove the first log with the target timestamp and value. The log is found through the time
+	 * index of the list, without scanning it.
+	 */
+	public void removeLog(long timestamp, double value) {
+		checkMainThread();
+		int position = this.logStore.indexOf(timestamp, value);
+
+		if(position >= 0)
+			removeLog(position);
+	}
+
+	/**
+	 * Submit a mutation of the log list to the persistence scheduler and, when the journal is long
+	 * enough, request a new snapshot. The file operations are executed on the background writer.
+	 */
+	private void persistMutation(byte operation, int position, long timestamp, double value) {
+
+		persistenceScheduler.submit(operation, position, timestamp, value);
+		onMutationsPersisted(1);
+	}
+
+	/**
+	 * Submit a group of mutations that is written with a single journal append
+	 */
+	private void persistBatch(LogJournal.Batch batch) {
+
+		persistenceScheduler.submitBatch(batch);
+		onMutationsPersisted(batch.size());
+	}
+
+	private void onMutationsPersisted(int count) {
+
+		journalDepth += count;
+		journalDepthGauge.set(journalDepth);
+		publishedSnapshot = null;
+
+		//A single snapshot at a time, the mutations applied in the meantime stay on the journal
+		if(pendingSnapshot == null && (persistenceScheduler.isJournalDiverged() || logStorage.isCompactionRequired(journalDepth)))
+			saveLogList();
+	}
+
+	/**
+	 * Set the rollover rules of the stored segments and the retention of the logs (e.g. keep the
+	 * last days or cap the stored size). The expired segments are dropped immediately.
+	 * It must be called by the Main Thread.
+	 */
+	public void setSegmentPolicy(LogSegmentPolicy segmentPolicy) {
+		checkMainThread();
+		logStorage.setSegmentPolicy(segmentPolicy);
+		applyRetention();
+	}
+
+	/*
+	 * Drop the stored segments expired by the retention rules. Only the segments of the latest
+	 * snapshot can be dropped, so nothing is done while a snapshot is pending. The new snapshot
+	 * reuses the other segments and deletes the dropped files. The removed ranges are notified
+	 * from the last one, so each position is still valid when it is notified.
+	 */
+	private void applyRetention() {
+
+		if(pendingSnapshot != null || !(logStore.getBase() instanceof LogSegmentSet))
+			return;
+
+		LogSegmentSet segmentSet = (LogSegmentSet)logStore.getBase();
+		List<LogSegment> expiredSegments = logStorage.getSegmentPolicy().selectExpiredSegments(segmentSet.getSegments(), System.currentTimeMillis());
+
+		if(expiredSegments.isEmpty())
+			return;
+
+		//Positions in the list of the logs of the expired segments, computed before dropping them
+		List<LogSegment> segments = segmentSet.getSegments();
+		int[] droppedPositions = new int[expiredSegments.size()];
+		int[] droppedCounts = new int[expiredSegments.size()];
+		int droppedRanges = 0;
+
+		for(int i = segments.size() - 1; i >= 0; i--) {
+			if(expiredSegments.contains(segments.get(i))) {
+				int segmentStart = segmentSet.getSegmentStart(i);
+				int segmentEnd = segmentSet.getSegmentStart(i + 1);
+				droppedPositions[droppedRanges] = logStore.getHeadSize() + segmentStart - logStore.countRemoved(0, segmentStart);
+				droppedCounts[droppedRanges] = segmentEnd - segmentStart - logStore.countRemoved(segmentStart, segmentEnd);
+				droppedRanges++;
+			}
+		}
+
+		int droppedLogs = logStore.dropSegments(expiredSegments);
+
+		if(isVerbose)
+			host.onDebugMessage("Retention: Dropped " + expiredSegments.size() + " Segments (" + droppedLogs + " Logs)");
+
+		publishedSnapshot = null;
+		saveLogList(true);
+
+		for(int i = 0; i < droppedRanges; i++)
+			if(droppedCounts[i] > 0)
+				notifyLogsRemoved(droppedPositions[i], droppedCounts[i]);
+	}
+
+	/**
+	 * Set the locale and the time zone of the timestamps shown by the list (Main Thread only).
+	 * The rows are formatted again, so the listeners are notified that the whole list has changed.
+	 */
+	public void setTimestampFormat(Locale locale, TimeZone timeZone) {
+		checkMainThread();
+		LogTimestampFormatter.setDisplaySettings(locale, timeZone);
+		notifyLogListChanged();
+	}
+
+	/**
+	 * Set when the journal is forced on the storage device (fsync). With LogStorage.SYNC_INTERVAL
+	 * the mutations of the last interval can be lost by a power failure, while a crash of the
+	 * application loses only the mutations not written yet (see setPersistenceBatchWindow()).
+	 *
+	 * @param syncPolicy LogStorage.SYNC_NONE, LogStorage.SYNC_INTERVAL or LogStorage.SYNC_ALWAYS
+	 * @param syncIntervalMs the minimum time between two syncs (SYNC_INTERVAL only)
+	 */
+	public void setSyncPolicy(int syncPolicy, long syncIntervalMs) {
+		logStorage.setSyncPolicy(syncPolicy, syncIntervalMs);
+	}
+
+	/**
+	 * Set how long the mutations are collected before being written on file with a single write
+	 * @param batchWindowMs the window in milliseconds
+	 */
+	public void setPersistenceBatchWindow(long batchWindowMs) {
+		persistenceScheduler.setBatchWindow(batchWindowMs);
+	}
+
+	/**
+	 * @return the current values of the metrics (latencies of add, remove, save, load, import and
+	 * export, bytes written, logs written by each snapshot and journal depth)
+	 */
+	public LogMetrics.Snapshot getMetrics() {
+		return LogMetrics.getInstance().getSnapshot();
+	}
+
+	/**
+	 * Periodically write the metrics on a file of the folder of the list
+	 * @param intervalMs the interval between two dumps, 0 to stop them
+	 */
+	public void setMetricsDumpInterval(long intervalMs) {
+		LogMetrics.getInstance().setPeriodicDump(new File(filesDir, METRICS_FILE_NAME), intervalMs);
+	}
+
+	/**
+	 * Write the pending mutations without waiting for the end of the batch window
+	 */
+	public void flush() {
+		persistenceScheduler.flush();
+	}
+
+	/**
+	 * Block until all the mutations applied so far are written on file
+	 * @param timeoutMs the maximum time to wait in milliseconds
+	 * @return true if the mutations have been written before the timeout, false also after a failed
+	 * write until a new snapshot stores them
+	 */
+	public boolean awaitDurable(long timeoutMs) {
+		try {
+			return persistenceScheduler.awaitDurable(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Write the pending mutations, close the files and stop the transfer thread. The controller
+	 * can not be used anymore.
+	 * @param timeoutMs the maximum time to wait for the pending mutations in milliseconds
+	 * @return true if the mutations have been written before the timeout
+	 * @throws IOException
+	 */
+	public boolean close(long timeoutMs) throws IOException {
+		boolean isDurable = awaitDurable(timeoutMs);
+		transferExecutor.shutdownNow();
+		logStorage.close();
+		return isDurable;
+	}
+
+	/**
+	 * @return the log list. It must be read and modified only by the Main Thread.
+	 */
+	public LogStore getLogStore() {
+		return logStore;
+	}
+
+	/**
+	 * Consistent copy of the log list that can be read by any thread while the list keeps changing.
+	 * The copy shares the stored snapshot with the list and it is reused until the next mutation.
+	 * A thread different from the Main Thread waits for the copy to be taken by the Main Thread,
+	 * but the producers of new logs are never blocked.
+	 *
+	 * @return the immutable copy of the list
+	 */
+	public LogSource getSnapshot() {
+
+		LogSource snapshot = publishedSnapshot;
+
+		if(snapshot != null)
+			return snapshot;
+
+		if(host.isMainThread())
+			return createSnapshot();
+
+		FutureTask<LogSource> snapshotTask = new FutureTask<LogSource>(new Callable<LogSource>() {
+			@Override
+			public LogSource call() {
+				return createSnapshot();
+			}
+		});
+
+		mainThreadExecutor.execute(snapshotTask);
+
+		try {
+			return snapshotTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while Taking the Log List Snapshot !", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error Taking the Log List Snapshot !", e.getCause());
+		}
+	}
+
+	private LogSource createSnapshot() {
+		if(publishedSnapshot == null)
+			publishedSnapshot = logStore.copy();
+		return publishedSnapshot;
+	}
+
+	/**
+	 * Summary statistics of the log values (count, sum, mean, variance, extremes, percentiles and
+	 * per minute and per hour rollups). They are loaded on the first call and then updated by each
+	 * mutation, so a query does not iterate the log list.
+	 */
+	public LogAggregates getAggregates() {
+		return logStore.getAggregates();
+	}
+
+	/**
+	 * Multi-resolution overview of the log values used to chart the whole list (Main Thread only).
+	 * It is loaded on the first call from the overview files of the stored segments (without
+	 * reading the logs) and then updated by each mutation, so neither the first chart nor the
+	 * charts of the zoomed-out windows depend on the size of the list.
+	 */
+	public LogOverview getOverview() {
+		return logStore.getOverview();
+	}
+
+	/**
+	 * Select the logs with a timestamp in the target range without scanning the whole list.
+	 * The result follows the order of the list (e.g. newest first for the logs added to the head).
+	 *
+	 * @param fromTimestamp the first timestamp of the range (inclusive)
+	 * @param toTimestamp the last timestamp of the range (inclusive)
+	 * @return the cursor over the selected logs. It is valid until the log list is modified.
+	 */
+	public LogCursor query(long fromTimestamp, long toTimestamp) {
+		return logStore.query(fromTimestamp, toTimestamp);
+	}
+
+	/**
+	 * Import the log list from a document. The format of the document (JSON array, NDJSON or CSV)
+	 * is detected from its content. The document is decoded in background in chunks and, when
+	 * completed, it is applied to the current log list on the Main Thread.
+	 *
+	 * With IMPORT_REPLACE the document replaces the list. The differences with the current list are
+	 * calculated in background too (see Host.calculateDiff()), so the registered LogListListener
+	 * objects are notified only about the changed ranges.
+	 *
+	 * With IMPORT_MERGE each log of the list matches a single log of the document with the same
+	 * timestamp and value (through a {@link LogKeyIndex} of the list built in background) and only
+	 * the unmatched logs are appended, with a single journal append and a single notification.
+	 *
+	 * @param source the document
+	 * @param importMode IMPORT_REPLACE or IMPORT_MERGE
+	 * @param listener the listener notified (on the Main Thread) about progress and result (the
+	 * completed logs are the imported ones with IMPORT_REPLACE and the appended ones with IMPORT_MERGE)
+	 * @return the handle that can be used to cancel the import
+	 */
+	public LogTransferTask startImport(final ImportSource source, final int importMode, LogTransferListener listener) {
+
+		final LogTransferTask task = new LogTransferTask(listener, mainThreadExecutor);
+		final long startNanos = System.nanoTime();
+
+		transferExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+
+					final LogStore importedStore = readLogStore(source, task);
+
+					if(importMode == IMPORT_MERGE) {
+						mergeImportedStore(importedStore, task, startNanos);
+						return;
+					}
+
+					//Each mutation discards the published snapshot, so the diff is still valid if the snapshot is the same
+					final LogSource currentList = getSnapshot();
+					final ListDiff diff = host.calculateDiff(currentList, importedStore);
+
+					//The overview of the imported list is built here, so the Main Thread does not read the whole list
+					final LogOverview importedOverview = LogOverview.build(importedStore);
+
+					if(isVerbose)
+						host.onDebugMessage("Imported Log List Diff: " + diff);
+
+					mainThreadExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							if(task.isCancelled()) {
+								task.notifyCancelled();
+								return;
+							}
+
+							boolean isDiffValid = diff != null && publishedSnapshot == currentList;
+
+							//Save the retrieved list
+							logStore.reset(importedStore, importedOverview);
+							publishedSnapshot = null;
+							saveLogList(true);
+
+							if(isDiffValid)
+								notifyLogListDiff(diff);
+							else
+								notifyLogListChanged();
+
+							importLatency.recordElapsed(startNanos);
+							task.notifyCompleted(importedStore.size());
+						}
+					});
+
+				} catch (CancellationException e) {
+					if(isVerbose)
+						host.onDebugMessage("Reading from Shared Storage Document Cancelled !");
+					task.notifyCancelled();
+				} catch (Exception e) {
+					host.onErrorMessage("Error Reading from Shared Storage Document: " + e.getLocalizedMessage());
+					task.notifyFailed(e);
+				}
+			}
+		});
+
+		return task;
+	}
+
+	/*
+	 * Select the imported logs that are not in the list (executed in background) and append them on
+	 * the Main Thread (see LogKeyIndex.selectMissing())
+	 */
+	private void mergeImportedStore(LogStore importedStore, final LogTransferTask task, final long startNanos) {
+
+		ArrayLogStore newLogs = LogKeyIndex.selectMissing(getSnapshot(), importedStore);
+
+		if(task.isCancelled())
+			throw new CancellationException();
+
+		if(isVerbose)
+			host.onDebugMessage("Imported Logs: " + importedStore.size() + " New Logs: " + newLogs.size());
+
+		final long[] timestamps = new long[newLogs.size()];
+		final double[] values = new double[timestamps.length];
+		newLogs.getRange(0, timestamps.length, timestamps, values, 0);
+
+		mainThreadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(task.isCancelled()) {
+					task.notifyCancelled();
+					return;
+				}
+
+				appendBatch(timestamps, values);
+
+				importLatency.recordElapsed(startNanos);
+				task.notifyCompleted(timestamps.length);
+			}
+		});
+	}
+
+	/**
+	 * Decode the document in a new LogStore (executed in background)
+	 */
+	private LogStore readLogStore(ImportSource source, final LogTransferTask task) throws IOException {
+
+		InputStream inputStream = source.openInputStream();
+
+		if(inputStream == null)
+			throw new IOException("Error Reading from Shared Storage Document ! inputStream = Null !");
+
+		final long totalBytes = source.getSize();
+		final CountingInputStream countingStream = new CountingInputStream(inputStream);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(countingStream, "UTF-8"));
+
+		try {
+
+			ArrayLogStore importedStore = new ArrayLogStore();
+
+			LogCodec codec = LogCodecs.detect(reader);
+			if(isVerbose)
+				host.onDebugMessage("Reading Log Document Format: " + codec.getName());
+
+			codec.read(reader, importedStore, TRANSFER_CHUNK_SIZE, new LogCodec.ChunkListener() {
+				@Override
+				public void onChunk(int decodedLogs) {
+					if(task.isCancelled())
+						throw new CancellationException();
+					task.notifyProgress(decodedLogs, countingStream.getCount(), totalBytes);
+				}
+			});
+
+			return importedStore;
+
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Write the log list as a document on a background thread. The document is streamed on the
+	 * target without building the serialized content in memory. It must be called by the Main Thread.
+	 *
+	 * @param target the destination of the document
+	 * @param codec the format of the document (see LogCodecs)
+	 * @param listener the listener notified (on the Main Thread) about progress and result
+	 * @return the handle that can be used to cancel the export
+	 */
+	public LogTransferTask startExport(final ExportTarget target, final LogCodec codec, LogTransferListener listener) {
+
+		final LogTransferTask task = new LogTransferTask(listener, mainThreadExecutor);
+
+		//Copy of the list taken on the Main Thread: only the mutations applied after the latest snapshot are copied
+		final LogStore exportedStore = this.logStore.copy();
+
+		transferExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+
+				boolean isCompleted = false;
+
+				try {
+					long startNanos = System.nanoTime();
+					int exportedLogs = writeLogStore(target.openOutputStream(), exportedStore, codec, task);
+					isCompleted = true;
+					target.close(true);
+					exportLatency.recordElapsed(startNanos);
+					task.notifyCompleted(exportedLogs);
+				} catch (CancellationException e) {
+					if(isVerbose)
+						host.onDebugMessage("Export Cancelled !");
+					task.notifyCancelled();
+				} catch (Exception e) {
+					host.onErrorMessage("Error Exporting LogList: " + e.getLocalizedMessage());
+					task.notifyFailed(e);
+				} finally {
+					if(!isCompleted) {
+						try {
+							target.close(false);
+						} catch (IOException e) {
+							host.onErrorMessage("Error Closing Export Target: " + e.getLocalizedMessage());
+						}
+					}
+				}
+			}
+		});
+
+		return task;
+	}
+
+	/**
+	 * Stream the store as a document on the output stream (executed in background)
+	 */
+	private int writeLogStore(OutputStream outputStream, LogStore logStore, LogCodec codec, final LogTransferTask task) throws IOException {
+
+		if(outputStream == null)
+			throw new IOException("Error Exporting LogList ! OutputStream = Null !");
+
+		final CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(countingStream, "UTF-8"), WRITE_BUFFER_SIZE);
+
+		try {
+			return codec.write(writer, logStore, TRANSFER_CHUNK_SIZE, new LogCodec.ChunkListener() {
+				@Override
+				public void onChunk(int encodedLogs) {
+					if(task.isCancelled())
+						throw new CancellationException();
+					task.notifyProgress(encodedLogs, countingStream.getCount(), -1);
+				}
+			});
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Save the whole log list on file as a new snapshot. The content of the list is frozen now while
+	 * the file is written by the background writer, then the written file replaces it.
+	 */
+	private void saveLogList() {
+		saveLogList(false);
+	}
+
+	/**
+	 * @param isReset true if the list has been changed without journal records (replaced by an import
+	 * or with segments dropped by the retention): the following mutations are not appended on the
+	 * journal of the previous content until the snapshot is written
+	 */
+	private void saveLogList(boolean isReset) {
+
+		if(isVerbose)
+			host.onDebugMessage("Saving LogDescriptor List on File ...");
+
+		pendingSnapshot = this.logStore.freeze();
+		if(isReset)
+			persistenceScheduler.scheduleReset(pendingSnapshot);
+		else
+			persistenceScheduler.scheduleSnapshot(pendingSnapshot);
+		journalDepth = 0;
+		journalDepthGauge.set(0);
+	}
+
+	/**
+	 * InputStream counting the bytes read from the wrapped stream
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private volatile long count = 0;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if(b != -1)
+				count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read > 0)
+				count += read;
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+
+	/**
+	 * OutputStream counting the bytes written on the wrapped stream
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		private volatile long count = 0;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+			count += length;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package com.mobdev.hellofiles;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+/**
+ * Changes turning a log list into a new one. The diff is calculated on a background thread and then
+ * notified to the LogListListener objects on the Main Thread as the minimal insert, remove and change
+ * ranges, so the UI rebinds only the rows that are really different.
+ *
+ * The logs at the beginning and at the end of the lists that are equal are skipped comparing them
+ * in chunks (the lists are not copied). The remaining middle region is compared with DiffUtil when
+ * it is small enough, otherwise its rows are notified as changed in place plus the inserted or
+ * removed remainder: the diff of two large and different regions takes O(N*D) time and it would be
+ * slower than rebinding the few visible rows.
+ */
+public class LogListDiff implements LogListController.ListDiff {
+
+	/*
+	 * Maximum number of logs of each middle region compared with DiffUtil
+	 */
+	public static final int MAX_DIFFED_LOGS = 2048;
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private int prefixLength = 0;
+
+	private int oldMiddleLength = 0;
+
+	private int newMiddleLength = 0;
+
+	/*
+	 * Diff of the middle regions (null if they are too large)
+	 */
+	private DiffUtil.DiffResult middleDiff = null;
+
+	private LogListDiff() {
+	}
+
+	/**
+	 * Calculate the changes (it can be executed in background, the lists must not be modified in the meantime)
+	 * @param oldList the current content of the list
+	 * @param newList the new content of the list
+	 * @return the changes turning the old list into the new one
+	 */
+	public static LogListDiff calculate(LogSource oldList, LogSource newList) {
+
+		LogListDiff diff = new LogListDiff();
+
+		int oldSize = oldList.size();
+		int newSize = newList.size();
+
+		diff.prefixLength = countCommonPrefix(oldList, newList);
+		int suffixLength = countCommonSuffix(oldList, newList, Math.min(oldSize, newSize) - diff.prefixLength);
+
+		diff.oldMiddleLength = oldSize - diff.prefixLength - suffixLength;
+		diff.newMiddleLength = newSize - diff.prefixLength - suffixLength;
+
+		if(diff.oldMiddleLength > 0 && diff.newMiddleLength > 0
+				&& diff.oldMiddleLength <= MAX_DIFFED_LOGS && diff.newMiddleLength <= MAX_DIFFED_LOGS)
+			diff.middleDiff = DiffUtil.calculateDiff(new MiddleCallback(oldList, newList, diff.prefixLength,
+					diff.oldMiddleLength, diff.newMiddleLength), false);
+
+		return diff;
+	}
+
+	/**
+	 * @return true if the lists have the same content
+	 */
+	public boolean isEmpty() {
+		return oldMiddleLength == 0 && newMiddleLength == 0;
+	}
+
+	/**
+	 * Notify the changes to the listener (Main Thread only). It can be called for more than one listener.
+	 */
+	@Override
+	public void dispatchTo(final LogListListener listener) {
+
+		if(middleDiff != null) {
+			middleDiff.dispatchUpdatesTo(new ListUpdateCallback() {
+				@Override
+				public void onInserted(int position, int count) {
+					listener.onLogsInserted(prefixLength + position, count);
+				}
+
+				@Override
+				public void onRemoved(int position, int count) {
+					listener.onLogsRemoved(prefixLength + position, count);
+				}
+
+				@Override
+				public void onMoved(int fromPosition, int toPosition) {
+					//The moves are not detected
+					listener.onLogsRemoved(prefixLength + fromPosition, 1);
+					listener.onLogsInserted(prefixLength + toPosition, 1);
+				}
+
+				@Override
+				public void onChanged(int position, int count, Object payload) {
+					listener.onLogsChanged(prefixLength + position, count);
+				}
+			});
+			return;
+		}
+
+		int changedLength = Math.min(oldMiddleLength, newMiddleLength);
+
+		if(changedLength > 0)
+			listener.onLogsChanged(prefixLength, changedLength);
+
+		if(newMiddleLength > changedLength)
+			listener.onLogsInserted(prefixLength + changedLength, newMiddleLength - changedLength);
+		else if(oldMiddleLength > changedLength)
+			listener.onLogsRemoved(prefixLength + changedLength, oldMiddleLength - changedLength);
+	}
+
+	private static int countCommonPrefix(LogSource oldList, LogSource newList) {
+
+		int maxLength = Math.min(oldList.size(), newList.size());
+		Chunks chunks = new Chunks(Math.min(CHUNK_SIZE, maxLength));
+		int length = 0;
+
+		while(length < maxLength) {
+
+			int count = Math.min(chunks.capacity(), maxLength - length);
+			int equalLogs = chunks.compare(oldList, length, newList, length, count, false);
+			length += equalLogs;
+
+			if(equalLogs < count)
+				break;
+		}
+
+		return length;
+	}
+
+	private static int countCommonSuffix(LogSource oldList, LogSource newList, int maxLength) {
+
+		int oldSize = oldList.size();
+		int newSize = newList.size();
+		Chunks chunks = new Chunks(Math.min(CHUNK_SIZE, maxLength));
+		int length = 0;
+
+		while(length < maxLength) {
+
+			int count = Math.min(chunks.capacity(), maxLength - length);
+			int equalLogs = chunks.compare(oldList, oldSize - length - count, newList, newSize - length - count, count, true);
+			length += equalLogs;
+
+			if(equalLogs < count)
+				break;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Buffers reading the same range of the two lists
+	 */
+	private static class Chunks {
+
+		private long[] oldTimestamps = null;
+
+		private double[] oldValues = null;
+
+		private long[] newTimestamps = null;
+
+		private double[] newValues = null;
+
+		private Chunks(int capacity) {
+			this.oldTimestamps = new long[capacity];
+			this.oldValues = new double[capacity];
+			this.newTimestamps = new long[capacity];
+			this.newValues = new double[capacity];
+		}
+
+		private int capacity() {
+			return oldTimestamps.length;
+		}
+
+		/*
+		 * Number of equal logs from the first (or the last if backward) log of the ranges
+		 */
+		private int compare(LogSource oldList, int oldPosition, LogSource newList, int newPosition, int count, boolean backward) {
+
+			oldList.getRange(oldPosition, count, oldTimestamps, oldValues, 0);
+			newList.getRange(newPosition, count, newTimestamps, newValues, 0);
+
+			for(int i = 0; i < count; i++) {
+				int index = backward ? count - 1 - i : i;
+				if(!isSameLog(oldTimestamps[index], oldValues[index], newTimestamps[index], newValues[index]))
+					return i;
+			}
+
+			return count;
+		}
+	}
+
+	private static boolean isSameLog(long firstTimestamp, double firstValue, long secondTimestamp, double secondValue) {
+		return firstTimestamp == secondTimestamp
+				&& Double.doubleToLongBits(firstValue) == Double.doubleToLongBits(secondValue);
+	}
+
+	/**
+	 * DiffUtil callback comparing the middle regions (copied in memory, they are small)
+	 */
+	private static class MiddleCallback extends DiffUtil.Callback {
+
+		private long[] oldTimestamps = null;
+
+		private double[] oldValues = null;
+
+		private long[] newTimestamps = null;
+
+		private double[] newValues = null;
+
+		private MiddleCallback(LogSource oldList, LogSource newList, int position, int oldLength, int newLength) {
+
+			this.oldTimestamps = new long[oldLength];
+			this.oldValues = new double[oldLength];
+			this.newTimestamps = new long[newLength];
+			this.newValues = new double[newLength];
+
+			oldList.getRange(position, oldLength, oldTimestamps, oldValues, 0);
+			newList.getRange(position, newLength, newTimestamps, newValues, 0);
+		}
+
+		@Override
+		public int getOldListSize() {
+			return oldTimestamps.length;
+		}
+
+		@Override
+		public int getNewListSize() {
+			return newTimestamps.length;
+		}
+
+		@Override
+		public boolean areItemsTheSame(int oldPosition, int newPosition) {
+			return isSameLog(oldTimestamps[oldPosition], oldValues[oldPosition], newTimestamps[newPosition], newValues[newPosition]);
+		}
+
+		@Override
+		public boolean areContentsTheSame(int oldPosition, int newPosition) {
+			//A log is identified by its whole content
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LogListDiff{" +
+				"prefixLength=" + prefixLength +
+				", oldMiddleLength=" + oldMiddleLength +
+				", newMiddleLength=" + newMiddleLength +
+				", isDiffed=" + (middleDiff != null) +
+				'}';
+	}
+}
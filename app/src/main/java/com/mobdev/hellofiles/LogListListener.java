@@ -0,0 +1,32 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Listener notified (on the Main Thread) after each change of the log list, including the logs
+ * submitted from the other threads. The changes are notified as consecutive ranges that can be
+ * applied in the notified order (e.g. with the notifyItemRange methods of a RecyclerView adapter).
+ */
+public interface LogListListener {
+
+	/**
+	 * @param position the position of the first inserted log
+	 * @param count the number of consecutive inserted logs
+	 */
+	void onLogsInserted(int position, int count);
+
+	/**
+	 * @param position the position of the first removed log (before the removal)
+	 * @param count the number of consecutive removed logs
+	 */
+	void onLogsRemoved(int position, int count);
+
+	/**
+	 * @param position the position of the first replaced log
+	 * @param count the number of consecutive logs replaced by different ones
+	 */
+	void onLogsChanged(int position, int count);
+
+	/**
+	 * The whole list has changed and it cannot be described by ranges
+	 */
+	void onLogListChanged();
+}
@@ -0,0 +1,259 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the metrics of the log list: counters and gauges (AtomicLong) and latency
+ * histograms ({@link LogHistogram}), identified by name.
+ *
+ * The metrics are created on the first request and never removed, so the hot paths keep the
+ * returned objects in static fields and update them without any lookup or lock. A snapshot of all
+ * the metrics can be read by any thread and periodically written on a text file.
+ */
+public class LogMetrics {
+
+	/*
+	 * Latencies in nanoseconds
+	 */
+	public static final String ADD_LATENCY = "log.add.ns";
+
+	public static final String REMOVE_LATENCY = "log.remove.ns";
+
+	public static final String SAVE_LATENCY = "storage.save.ns";
+
+	public static final String LOAD_LATENCY = "storage.load.ns";
+
+	public static final String IMPORT_LATENCY = "transfer.import.ns";
+
+	public static final String EXPORT_LATENCY = "transfer.export.ns";
+
+	/*
+	 * Number of logs written by each snapshot
+	 */
+	public static final String SAVE_RECORDS = "storage.save.records";
+
+	/*
+	 * Bytes written on the internal storage (journal records and snapshot segments)
+	 */
+	public static final String BYTES_WRITTEN = "storage.bytes.written";
+
+	/*
+	 * Gauge of the journal records applied after the latest snapshot
+	 */
+	public static final String JOURNAL_DEPTH = "storage.journal.depth";
+
+	private static final LogMetrics instance = new LogMetrics();
+
+	private ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+	private ConcurrentHashMap<String, LogHistogram> histograms = new ConcurrentHashMap<String, LogHistogram>();
+
+	private ScheduledExecutorService dumpExecutor = null;
+
+	private ScheduledFuture<?> dumpTask = null;
+
+	/**
+	 * Values of all the metrics at the moment of the request
+	 */
+	public static class Snapshot {
+
+		private long timestamp = 0;
+
+		private Map<String, Long> counters = null;
+
+		private Map<String, LogHistogram.Snapshot> histograms = null;
+
+		private Snapshot(long timestamp, Map<String, Long> counters, Map<String, LogHistogram.Snapshot> histograms) {
+			this.timestamp = timestamp;
+			this.counters = Collections.unmodifiableMap(counters);
+			this.histograms = Collections.unmodifiableMap(histograms);
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return the counters and the gauges sorted by name
+		 */
+		public Map<String, Long> getCounters() {
+			return counters;
+		}
+
+		/**
+		 * @return the histograms sorted by name
+		 */
+		public Map<String, LogHistogram.Snapshot> getHistograms() {
+			return histograms;
+		}
+
+		/**
+		 * @return the value of the counter (0 if it does not exist)
+		 */
+		public long getCounter(String name) {
+			Long value = counters.get(name);
+			return value != null ? value : 0;
+		}
+
+		/**
+		 * @return the histogram or null if it does not exist
+		 */
+		public LogHistogram.Snapshot getHistogram(String name) {
+			return histograms.get(name);
+		}
+
+		/**
+		 * @return a line for each metric (name = value or histogram summary)
+		 */
+		@Override
+		public String toString() {
+
+			StringBuilder builder = new StringBuilder();
+			builder.append("timestamp = ").append(timestamp).append('\n');
+
+			for(Map.Entry<String, Long> entry : counters.entrySet())
+				builder.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+
+			for(Map.Entry<String, LogHistogram.Snapshot> entry : histograms.entrySet())
+				builder.append(entry.getKey()).append(" : ").append(entry.getValue()).append('\n');
+
+			return builder.toString();
+		}
+	}
+
+	public static LogMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return the counter with the target name (created if it does not exist)
+	 */
+	public AtomicLong getCounter(String name) {
+
+		AtomicLong counter = counters.get(name);
+
+		if(counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(name, newCounter);
+			if(counter == null)
+				counter = newCounter;
+		}
+
+		return counter;
+	}
+
+	/**
+	 * @return the histogram with the target name (created if it does not exist)
+	 */
+	public LogHistogram getHistogram(String name) {
+
+		LogHistogram histogram = histograms.get(name);
+
+		if(histogram == null) {
+			LogHistogram newHistogram = new LogHistogram();
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if(histogram == null)
+				histogram = newHistogram;
+		}
+
+		return histogram;
+	}
+
+	public Snapshot getSnapshot() {
+
+		TreeMap<String, Long> counterValues = new TreeMap<String, Long>();
+		TreeMap<String, LogHistogram.Snapshot> histogramSnapshots = new TreeMap<String, LogHistogram.Snapshot>();
+
+		for(Map.Entry<String, AtomicLong> entry : counters.entrySet())
+			counterValues.put(entry.getKey(), entry.getValue().get());
+
+		for(Map.Entry<String, LogHistogram> entry : histograms.entrySet())
+			histogramSnapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+
+		return new Snapshot(System.currentTimeMillis(), counterValues, histogramSnapshots);
+	}
+
+	/**
+	 * Set all the metrics to 0 (the gauges are set again by the next update)
+	 */
+	public void reset() {
+
+		for(AtomicLong counter : counters.values())
+			counter.set(0);
+
+		for(LogHistogram histogram : histograms.values())
+			histogram.reset();
+	}
+
+	/**
+	 * Write a snapshot of the metrics on the target file every interval, on a background thread.
+	 * The file is replaced atomically, so it always contains a whole snapshot.
+	 *
+	 * @param file the destination file (e.g. in the internal storage)
+	 * @param intervalMs the interval between two dumps, 0 to stop the dumps
+	 */
+	public synchronized void setPeriodicDump(final File file, long intervalMs) {
+
+		if(dumpTask != null) {
+			dumpTask.cancel(false);
+			dumpTask = null;
+		}
+
+		if(intervalMs <= 0)
+			return;
+
+		if(dumpExecutor == null)
+			dumpExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "LogMetricsDump");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+		dumpTask = dumpExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					dump(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Write a snapshot of the metrics on the target file
+	 * @throws IOException
+	 */
+	public synchronized void dump(File file) throws IOException {
+
+		File tempFile = new File(file.getPath() + ".tmp");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+
+		try {
+			writer.write(getSnapshot().toString());
+		} finally {
+			writer.close();
+		}
+
+		if(!tempFile.renameTo(file))
+			throw new IOException("Error Renaming Metrics File: " + tempFile.getName());
+	}
+}
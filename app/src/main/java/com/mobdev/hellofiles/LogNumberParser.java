@@ -0,0 +1,151 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Parsing of the numeric fields of the text documents directly from the read buffer, without
+ * creating a String for each field.
+ *
+ * A double is parsed exactly with the fast path of Clinger's algorithm when its significant digits
+ * fit the 53 bit mantissa and the power of ten is at most 22: both the digits and the power are
+ * then exact doubles and a single multiplication or division is correctly rounded. This covers
+ * the values written by Double.toString() with few decimals (e.g. sensor readings). The other
+ * values (long mantissas, large exponents, NaN and Infinity) are parsed by Double.parseDouble().
+ */
+public final class LogNumberParser {
+
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/*
+	 * Digits accumulated in the mantissa (a long holds any 18 digits number)
+	 */
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	private LogNumberParser() {
+	}
+
+	/**
+	 * @return the long written in chars[start, end)
+	 * @throws NumberFormatException if the characters are not a valid long
+	 */
+	public static long parseLong(char[] chars, int start, int end) {
+
+		int i = start;
+		boolean isNegative = false;
+
+		if(i < end && (chars[i] == '-' || chars[i] == '+')) {
+			isNegative = chars[i] == '-';
+			i++;
+		}
+
+		if(i == end)
+			throw new NumberFormatException("Invalid Long: " + new String(chars, start, end - start));
+
+		//Accumulated as a negative number, so Long.MIN_VALUE does not overflow
+		long limit = isNegative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long result = 0;
+
+		for(; i < end; i++) {
+
+			int digit = chars[i] - '0';
+
+			if(digit < 0 || digit > 9 || result < limit / 10)
+				throw new NumberFormatException("Invalid Long: " + new String(chars, start, end - start));
+
+			result = result * 10;
+
+			if(result < limit + digit)
+				throw new NumberFormatException("Invalid Long: " + new String(chars, start, end - start));
+
+			result -= digit;
+		}
+
+		return isNegative ? result : -result;
+	}
+
+	/**
+	 * @return the double written in chars[start, end) (same syntax of Double.parseDouble())
+	 * @throws NumberFormatException if the characters are not a valid double
+	 */
+	public static double parseDouble(char[] chars, int start, int end) {
+
+		int i = start;
+		boolean isNegative = false;
+
+		if(i < end && (chars[i] == '-' || chars[i] == '+')) {
+			isNegative = chars[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int mantissaDigits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		boolean isTruncated = false;
+
+		for(; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+			hasDigits = true;
+			if(mantissaDigits < MAX_MANTISSA_DIGITS) {
+				mantissa = mantissa * 10 + (chars[i] - '0');
+				if(mantissa != 0)
+					mantissaDigits++;
+			}
+			else {
+				exponent++;
+				isTruncated |= chars[i] != '0';
+			}
+		}
+
+		if(i < end && chars[i] == '.') {
+			for(i++; i < end && chars[i] >= '0' && chars[i] <= '9'; i++) {
+				hasDigits = true;
+				if(mantissaDigits < MAX_MANTISSA_DIGITS) {
+					mantissa = mantissa * 10 + (chars[i] - '0');
+					exponent--;
+					if(mantissa != 0)
+						mantissaDigits++;
+				}
+				else
+					isTruncated |= chars[i] != '0';
+			}
+		}
+
+		if(hasDigits && i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+
+			i++;
+			boolean isExponentNegative = false;
+
+			if(i < end && (chars[i] == '-' || chars[i] == '+')) {
+				isExponentNegative = chars[i] == '-';
+				i++;
+			}
+
+			int exponentStart = i;
+			int explicitExponent = 0;
+
+			for(; i < end && chars[i] >= '0' && chars[i] <= '9'; i++)
+				if(explicitExponent < 100000)
+					explicitExponent = explicitExponent * 10 + (chars[i] - '0');
+
+			if(i == exponentStart)
+				return parseDoubleSlow(chars, start, end);
+
+			exponent += isExponentNegative ? -explicitExponent : explicitExponent;
+		}
+
+		if(!hasDigits || i != end || isTruncated || mantissa > MAX_EXACT_MANTISSA
+				|| exponent < -22 || exponent > 22)
+			return parseDoubleSlow(chars, start, end);
+
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+
+		return isNegative ? -value : value;
+	}
+
+	private static double parseDoubleSlow(char[] chars, int start, int end) {
+		return Double.parseDouble(new String(chars, start, end - start));
+	}
+}
@@ -0,0 +1,569 @@
+package com.mobdev.hellofiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multi-resolution summary of the log values used to chart the whole history.
+ *
+ * The logs are grouped in LEVEL_COUNT levels of time buckets: the buckets of the first level last a
+ * minute and each level merges LEVEL_FACTOR buckets of the previous one (from 1 minute to about 45
+ * days). Each bucket keeps count, first and last timestamp and the logs with the minimum and
+ * maximum value, and it is updated by every add and remove as the rollups of {@link LogAggregates}.
+ * When an extreme is removed the bucket is recomputed when requested, from the buckets of the
+ * previous level or, for the first level, reading its logs through the range query of the store.
+ *
+ * A time window is rendered from the coarsest level whose buckets are not wider than a point, so
+ * the cost depends on the number of requested points and not on the number of logs. Only the
+ * windows shorter than a minute per point are read from the store.
+ *
+ * The overview of each stored segment is written with it (see {@link #write(DataOutput)}), so the
+ * overview of the stored list is loaded merging the buckets of its segments without reading the logs.
+ *
+ * It must be read and modified by a single thread (the Main Thread, as the log list), once it has
+ * been built or loaded.
+ * Values that are not finite (NaN or Infinite) are not included in the overview.
+ */
+public class LogOverview {
+
+	public static final long BASE_BUCKET_MS = LogAggregates.MINUTE_MS;
+
+	public static final int LEVEL_FACTOR = 4;
+
+	public static final int LEVEL_COUNT = 9;
+
+	private static final int MAGIC = 0x48464C4F; // "HFLO"
+
+	private static final short VERSION = 1;
+
+	private static class Bucket {
+
+		private int count = 0;
+
+		private long firstTimestamp = Long.MAX_VALUE;
+
+		private long lastTimestamp = Long.MIN_VALUE;
+
+		private double minimum = Double.POSITIVE_INFINITY;
+
+		private long minimumTimestamp = 0;
+
+		private double maximum = Double.NEGATIVE_INFINITY;
+
+		private long maximumTimestamp = 0;
+
+		/*
+		 * An extreme (value or timestamp) has been removed and it must be recomputed
+		 */
+		private boolean isStale = false;
+
+		private void addExtremes(long timestamp, double value) {
+
+			if(timestamp < firstTimestamp)
+				firstTimestamp = timestamp;
+			if(timestamp > lastTimestamp)
+				lastTimestamp = timestamp;
+
+			if(value < minimum) {
+				minimum = value;
+				minimumTimestamp = timestamp;
+			}
+			if(value > maximum) {
+				maximum = value;
+				maximumTimestamp = timestamp;
+			}
+		}
+
+		private void mergeExtremes(Bucket bucket) {
+
+			firstTimestamp = Math.min(firstTimestamp, bucket.firstTimestamp);
+			lastTimestamp = Math.max(lastTimestamp, bucket.lastTimestamp);
+
+			if(bucket.minimum < minimum) {
+				minimum = bucket.minimum;
+				minimumTimestamp = bucket.minimumTimestamp;
+			}
+			if(bucket.maximum > maximum) {
+				maximum = bucket.maximum;
+				maximumTimestamp = bucket.maximumTimestamp;
+			}
+		}
+
+		private void merge(Bucket bucket) {
+			count += bucket.count;
+			mergeExtremes(bucket);
+			isStale |= bucket.isStale;
+		}
+
+		private void resetExtremes() {
+			firstTimestamp = Long.MAX_VALUE;
+			lastTimestamp = Long.MIN_VALUE;
+			minimum = Double.POSITIVE_INFINITY;
+			maximum = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	private ArrayList<TreeMap<Long, Bucket>> levels = new ArrayList<TreeMap<Long, Bucket>>(LEVEL_COUNT);
+
+	private long[] levelBucketMs = new long[LEVEL_COUNT];
+
+	/*
+	 * Last updated bucket of each level: consecutive logs (e.g. of a sensor) fall in the same
+	 * buckets, so most of the adds do not search the levels
+	 */
+	private Bucket[] lastBuckets = new Bucket[LEVEL_COUNT];
+
+	private long[] lastBucketKeys = new long[LEVEL_COUNT];
+
+	private int count = 0;
+
+	private LogAggregates.RangeQuery rangeQuery = null;
+
+	/*
+	 * Minimum and maximum of each slice of the window being rendered, reused by the next windows
+	 */
+	private int[] sliceCounts = new int[0];
+
+	private double[] sliceMinimums = new double[0];
+
+	private long[] sliceMinimumTimestamps = new long[0];
+
+	private double[] sliceMaximums = new double[0];
+
+	private long[] sliceMaximumTimestamps = new long[0];
+
+	private long[] envelopeTimestamps = new long[0];
+
+	private double[] envelopeValues = new double[0];
+
+	public LogOverview() {
+
+		long bucketMs = BASE_BUCKET_MS;
+
+		for(int level = 0; level < LEVEL_COUNT; level++) {
+			levels.add(new TreeMap<Long, Bucket>());
+			levelBucketMs[level] = bucketMs;
+			bucketMs *= LEVEL_FACTOR;
+		}
+	}
+
+	/**
+	 * Compute the overview of a source reading it a chunk at a time
+	 * @param logSource the logs to summarize
+	 * @return the overview of the source
+	 */
+	public static LogOverview build(LogSource logSource) {
+
+		LogOverview overview = new LogOverview();
+
+		int size = logSource.size();
+		long[] timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+		double[] values = new double[LogSnapshotFormat.BLOCK_SIZE];
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += LogSnapshotFormat.BLOCK_SIZE) {
+
+			int chunkCount = Math.min(LogSnapshotFormat.BLOCK_SIZE, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+
+			for(int i = 0; i < chunkCount; i++)
+				overview.add(timestamps[i], values[i]);
+		}
+
+		return overview;
+	}
+
+	/**
+	 * @param rangeQuery the query of the summarized store, used to recompute the stale buckets and
+	 * to render the shortest windows
+	 */
+	void setRangeQuery(LogAggregates.RangeQuery rangeQuery) {
+		this.rangeQuery = rangeQuery;
+	}
+
+	void add(long timestamp, double value) {
+
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			return;
+
+		for(int level = 0; level < LEVEL_COUNT; level++) {
+
+			long key = getBucket(timestamp, levelBucketMs[level]);
+			Bucket bucket = lastBuckets[level];
+
+			if(bucket == null || lastBucketKeys[level] != key) {
+
+				TreeMap<Long, Bucket> buckets = levels.get(level);
+				bucket = buckets.get(key);
+
+				if(bucket == null) {
+					bucket = new Bucket();
+					buckets.put(key, bucket);
+				}
+
+				lastBuckets[level] = bucket;
+				lastBucketKeys[level] = key;
+			}
+
+			bucket.count++;
+			bucket.addExtremes(timestamp, value);
+		}
+
+		count++;
+	}
+
+	void remove(long timestamp, double value) {
+
+		if(Double.isNaN(value) || Double.isInfinite(value))
+			return;
+
+		for(int level = 0; level < LEVEL_COUNT; level++) {
+
+			long key = getBucket(timestamp, levelBucketMs[level]);
+			TreeMap<Long, Bucket> buckets = levels.get(level);
+			Bucket bucket = buckets.get(key);
+
+			if(bucket == null)
+				continue;
+
+			bucket.count--;
+
+			if(bucket.count == 0) {
+				buckets.remove(key);
+				if(lastBuckets[level] == bucket)
+					lastBuckets[level] = null;
+			}
+			else if(value <= bucket.minimum || value >= bucket.maximum || timestamp <= bucket.firstTimestamp || timestamp >= bucket.lastTimestamp)
+				bucket.isStale = true;
+		}
+
+		count--;
+	}
+
+	/**
+	 * Add the buckets of another group of logs (e.g. of another segment)
+	 */
+	void merge(LogOverview overview) {
+
+		for(int level = 0; level < LEVEL_COUNT; level++) {
+
+			TreeMap<Long, Bucket> buckets = levels.get(level);
+
+			for(Map.Entry<Long, Bucket> entry : overview.levels.get(level).entrySet()) {
+
+				Bucket bucket = buckets.get(entry.getKey());
+
+				if(bucket == null) {
+					bucket = new Bucket();
+					buckets.put(entry.getKey(), bucket);
+				}
+
+				bucket.merge(entry.getValue());
+			}
+		}
+
+		count += overview.count;
+	}
+
+	/**
+	 * @return the number of summarized logs
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the first timestamp of the summarized logs (Long.MAX_VALUE if there are no logs)
+	 */
+	public long getFirstTimestamp() {
+
+		Map.Entry<Long, Bucket> entry = levels.get(LEVEL_COUNT - 1).firstEntry();
+
+		if(entry == null)
+			return Long.MAX_VALUE;
+
+		refresh(LEVEL_COUNT - 1, entry.getKey(), entry.getValue());
+		return entry.getValue().firstTimestamp;
+	}
+
+	/**
+	 * @return the last timestamp of the summarized logs (Long.MIN_VALUE if there are no logs)
+	 */
+	public long getLastTimestamp() {
+
+		Map.Entry<Long, Bucket> entry = levels.get(LEVEL_COUNT - 1).lastEntry();
+
+		if(entry == null)
+			return Long.MIN_VALUE;
+
+		refresh(LEVEL_COUNT - 1, entry.getKey(), entry.getValue());
+		return entry.getValue().lastTimestamp;
+	}
+
+	/**
+	 * Min/max downsampling: the window is split in sliceCount slices of the same duration and the
+	 * logs with the minimum and the maximum value of each slice are selected (in timestamp order).
+	 * A chart drawing a vertical line per slice shows all the peaks of the window.
+	 *
+	 * @param fromTimestamp the first timestamp of the window (inclusive)
+	 * @param toTimestamp the last timestamp of the window (inclusive)
+	 * @param sliceCount the number of slices (e.g. the width of the chart in pixels)
+	 * @param envelope the destination of the selected logs (they are appended)
+	 * @return the number of selected logs (at most 2 * sliceCount)
+	 */
+	public int getEnvelope(long fromTimestamp, long toTimestamp, int sliceCount, LogStore envelope) {
+
+		int envelopeCount = computeEnvelope(fromTimestamp, toTimestamp, sliceCount);
+
+		for(int i = 0; i < envelopeCount; i++)
+			envelope.add(envelopeTimestamps[i], envelopeValues[i]);
+
+		return envelopeCount;
+	}
+
+	/**
+	 * Select at most pointCount representative logs of the window for a line chart: the min/max
+	 * envelope with pointCount slices is reduced with {@link LogDownsampler#largestTriangleThreeBuckets}.
+	 *
+	 * @param fromTimestamp the first timestamp of the window (inclusive)
+	 * @param toTimestamp the last timestamp of the window (inclusive)
+	 * @param pointCount the maximum number of points
+	 * @param points the destination of the selected logs (they are appended)
+	 * @return the number of selected logs
+	 */
+	public int getPoints(long fromTimestamp, long toTimestamp, int pointCount, LogStore points) {
+		int envelopeCount = computeEnvelope(fromTimestamp, toTimestamp, pointCount);
+		return LogDownsampler.largestTriangleThreeBuckets(envelopeTimestamps, envelopeValues, envelopeCount, pointCount, points);
+	}
+
+	/*
+	 * Fill the envelope arrays and return the number of selected logs
+	 */
+	private int computeEnvelope(long fromTimestamp, long toTimestamp, int sliceCount) {
+
+		if(sliceCount <= 0 || fromTimestamp > toTimestamp)
+			return 0;
+
+		ensureSliceCapacity(sliceCount);
+
+		for(int i = 0; i < sliceCount; i++)
+			sliceCounts[i] = 0;
+
+		//Rounded up so the slices cover the whole window
+		long windowMs = toTimestamp - fromTimestamp + 1;
+		long sliceMs = Math.max(1, windowMs / sliceCount + (windowMs % sliceCount != 0 ? 1 : 0));
+
+		int level = -1;
+
+		while(level + 1 < LEVEL_COUNT && levelBucketMs[level + 1] <= sliceMs)
+			level++;
+
+		if(level >= 0) {
+
+			TreeMap<Long, Bucket> buckets = levels.get(level);
+
+			for(Map.Entry<Long, Bucket> entry : buckets.subMap(getBucket(fromTimestamp, levelBucketMs[level]), true, toTimestamp, true).entrySet()) {
+
+				Bucket bucket = entry.getValue();
+				refresh(level, entry.getKey(), bucket);
+
+				//The logs of the buckets crossing the bounds of the window can be outside of it
+				if(bucket.minimumTimestamp >= fromTimestamp && bucket.minimumTimestamp <= toTimestamp)
+					addToSlice((int)((bucket.minimumTimestamp - fromTimestamp) / sliceMs), bucket.minimumTimestamp, bucket.minimum);
+				if(bucket.maximumTimestamp >= fromTimestamp && bucket.maximumTimestamp <= toTimestamp)
+					addToSlice((int)((bucket.maximumTimestamp - fromTimestamp) / sliceMs), bucket.maximumTimestamp, bucket.maximum);
+			}
+		}
+		else if(rangeQuery != null) {
+
+			LogCursor cursor = rangeQuery.query(fromTimestamp, toTimestamp);
+
+			while(cursor.moveToNext()) {
+				double value = cursor.getValue();
+				if(!Double.isNaN(value) && !Double.isInfinite(value))
+					addToSlice((int)((cursor.getTimestamp() - fromTimestamp) / sliceMs), cursor.getTimestamp(), value);
+			}
+		}
+
+		int envelopeCount = 0;
+
+		for(int i = 0; i < sliceCount; i++) {
+
+			if(sliceCounts[i] == 0)
+				continue;
+
+			boolean isMinimumFirst = sliceMinimumTimestamps[i] <= sliceMaximumTimestamps[i];
+
+			envelopeTimestamps[envelopeCount] = isMinimumFirst ? sliceMinimumTimestamps[i] : sliceMaximumTimestamps[i];
+			envelopeValues[envelopeCount] = isMinimumFirst ? sliceMinimums[i] : sliceMaximums[i];
+			envelopeCount++;
+
+			if(sliceMinimumTimestamps[i] != sliceMaximumTimestamps[i] || sliceMinimums[i] != sliceMaximums[i]) {
+				envelopeTimestamps[envelopeCount] = isMinimumFirst ? sliceMaximumTimestamps[i] : sliceMinimumTimestamps[i];
+				envelopeValues[envelopeCount] = isMinimumFirst ? sliceMaximums[i] : sliceMinimums[i];
+				envelopeCount++;
+			}
+		}
+
+		return envelopeCount;
+	}
+
+	private void addToSlice(int slice, long timestamp, double value) {
+
+		if(sliceCounts[slice]++ == 0) {
+			sliceMinimums[slice] = value;
+			sliceMinimumTimestamps[slice] = timestamp;
+			sliceMaximums[slice] = value;
+			sliceMaximumTimestamps[slice] = timestamp;
+			return;
+		}
+
+		if(value < sliceMinimums[slice]) {
+			sliceMinimums[slice] = value;
+			sliceMinimumTimestamps[slice] = timestamp;
+		}
+
+		if(value > sliceMaximums[slice]) {
+			sliceMaximums[slice] = value;
+			sliceMaximumTimestamps[slice] = timestamp;
+		}
+	}
+
+	private void ensureSliceCapacity(int sliceCount) {
+
+		if(sliceCounts.length >= sliceCount)
+			return;
+
+		sliceCounts = new int[sliceCount];
+		sliceMinimums = new double[sliceCount];
+		sliceMinimumTimestamps = new long[sliceCount];
+		sliceMaximums = new double[sliceCount];
+		sliceMaximumTimestamps = new long[sliceCount];
+		envelopeTimestamps = new long[sliceCount * 2];
+		envelopeValues = new double[sliceCount * 2];
+	}
+
+	/*
+	 * Recompute the extremes of a bucket from the buckets of the previous level or, for the first
+	 * level, from its logs
+	 */
+	private void refresh(int level, long key, Bucket bucket) {
+
+		if(!bucket.isStale)
+			return;
+
+		if(level == 0) {
+
+			if(rangeQuery == null)
+				return;
+
+			bucket.resetExtremes();
+
+			LogCursor cursor = rangeQuery.query(key, key + levelBucketMs[0] - 1);
+
+			while(cursor.moveToNext()) {
+				double value = cursor.getValue();
+				if(!Double.isNaN(value) && !Double.isInfinite(value))
+					bucket.addExtremes(cursor.getTimestamp(), value);
+			}
+		}
+		else {
+
+			TreeMap<Long, Bucket> previousLevel = levels.get(level - 1);
+			long previousBucketMs = levelBucketMs[level - 1];
+
+			bucket.resetExtremes();
+
+			for(int i = 0; i < LEVEL_FACTOR; i++) {
+
+				long previousKey = key + i * previousBucketMs;
+				Bucket previousBucket = previousLevel.get(previousKey);
+
+				if(previousBucket != null) {
+					refresh(level - 1, previousKey, previousBucket);
+					bucket.mergeExtremes(previousBucket);
+				}
+			}
+		}
+
+		bucket.isStale = false;
+	}
+
+	/**
+	 * Write the buckets of all the levels (they must not be stale, e.g. an overview built from a segment)
+	 */
+	void write(DataOutput output) throws IOException {
+
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeInt(count);
+		output.writeInt(LEVEL_COUNT);
+
+		for(TreeMap<Long, Bucket> buckets : levels) {
+			output.writeInt(buckets.size());
+			for(Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+				Bucket bucket = entry.getValue();
+				output.writeLong(entry.getKey());
+				output.writeInt(bucket.count);
+				output.writeLong(bucket.firstTimestamp);
+				output.writeLong(bucket.lastTimestamp);
+				output.writeDouble(bucket.minimum);
+				output.writeLong(bucket.minimumTimestamp);
+				output.writeDouble(bucket.maximum);
+				output.writeLong(bucket.maximumTimestamp);
+			}
+		}
+	}
+
+	static LogOverview read(DataInput input) throws IOException {
+
+		if(input.readInt() != MAGIC)
+			throw new IOException("Invalid Overview Header !");
+
+		short version = input.readShort();
+
+		if(version != VERSION)
+			throw new IOException("Unsupported Overview Version: " + version);
+
+		LogOverview overview = new LogOverview();
+		overview.count = input.readInt();
+
+		int levelCount = input.readInt();
+
+		if(overview.count < 0 || levelCount != LEVEL_COUNT)
+			throw new IOException("Invalid Overview Size: " + overview.count + " Levels: " + levelCount);
+
+		for(TreeMap<Long, Bucket> buckets : overview.levels) {
+
+			int size = input.readInt();
+
+			if(size < 0)
+				throw new IOException("Invalid Overview Buckets: " + size);
+
+			for(int i = 0; i < size; i++) {
+				long key = input.readLong();
+				Bucket bucket = new Bucket();
+				bucket.count = input.readInt();
+				bucket.firstTimestamp = input.readLong();
+				bucket.lastTimestamp = input.readLong();
+				bucket.minimum = input.readDouble();
+				bucket.minimumTimestamp = input.readLong();
+				bucket.maximum = input.readDouble();
+				bucket.maximumTimestamp = input.readLong();
+				buckets.put(key, bucket);
+			}
+		}
+
+		return overview;
+	}
+
+	private static long getBucket(long timestamp, long bucketMs) {
+		long bucket = timestamp / bucketMs;
+		if(timestamp % bucketMs < 0)
+			bucket--;
+		return bucket * bucketMs;
+	}
+}
@@ -0,0 +1,129 @@
+package com.mobdev.hellofiles;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Chart of the values of the whole log list, drawn from the {@link LogOverview}: the min/max envelope
+ * with a slice per pixel (so every peak is visible) and a Largest-Triangle-Three-Buckets line on top.
+ * The cost of a draw depends on the width of the view and not on the size of the list, so it can
+ * be refreshed on every change of the list.
+ */
+public class LogOverviewView extends View {
+
+	/*
+	 * Pixels between two points of the LTTB line
+	 */
+	private static final int PIXELS_PER_POINT = 4;
+
+	private LogOverview overview = null;
+
+	private Paint envelopePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	private Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+	/*
+	 * Buffers reused by each draw
+	 */
+	private ArrayLogStore envelope = new ArrayLogStore();
+
+	private ArrayLogStore points = new ArrayLogStore();
+
+	private Path envelopePath = new Path();
+
+	private Path linePath = new Path();
+
+	public LogOverviewView(Context context) {
+		super(context);
+		init(context);
+	}
+
+	public LogOverviewView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		init(context);
+	}
+
+	private void init(Context context) {
+
+		float density = getResources().getDisplayMetrics().density;
+
+		envelopePaint.setStyle(Paint.Style.STROKE);
+		envelopePaint.setStrokeWidth(density);
+		envelopePaint.setColor(ContextCompat.getColor(context, R.color.indigo_100));
+
+		linePaint.setStyle(Paint.Style.STROKE);
+		linePaint.setStrokeWidth(2 * density);
+		linePaint.setColor(ContextCompat.getColor(context, R.color.primary));
+	}
+
+	/**
+	 * @param overview the overview to draw (null to clear the chart)
+	 */
+	public void setOverview(LogOverview overview) {
+		this.overview = overview;
+		invalidate();
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+
+		int chartWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+		int chartHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+
+		if(overview == null || overview.size() == 0 || chartWidth <= 0 || chartHeight <= 0)
+			return;
+
+		long fromTimestamp = overview.getFirstTimestamp();
+		long toTimestamp = overview.getLastTimestamp();
+
+		envelope.clear();
+		points.clear();
+
+		overview.getEnvelope(fromTimestamp, toTimestamp, chartWidth, envelope);
+		overview.getPoints(fromTimestamp, toTimestamp, Math.max(3, chartWidth / PIXELS_PER_POINT), points);
+
+		if(envelope.size() == 0)
+			return;
+
+		double minimum = Double.POSITIVE_INFINITY;
+		double maximum = Double.NEGATIVE_INFINITY;
+
+		for(int i = 0; i < envelope.size(); i++) {
+			minimum = Math.min(minimum, envelope.getValue(i));
+			maximum = Math.max(maximum, envelope.getValue(i));
+		}
+
+		buildPath(envelopePath, envelope, fromTimestamp, toTimestamp, minimum, maximum, chartWidth, chartHeight);
+		buildPath(linePath, points, fromTimestamp, toTimestamp, minimum, maximum, chartWidth, chartHeight);
+
+		canvas.drawPath(envelopePath, envelopePaint);
+		canvas.drawPath(linePath, linePaint);
+	}
+
+	private void buildPath(Path path, ArrayLogStore logs, long fromTimestamp, long toTimestamp, double minimum, double maximum, int chartWidth, int chartHeight) {
+
+		path.reset();
+
+		//A single timestamp or value is drawn in the middle of the chart
+		double timeRange = toTimestamp - fromTimestamp;
+		double valueRange = maximum - minimum;
+
+		for(int i = 0; i < logs.size(); i++) {
+
+			float x = getPaddingLeft() + (float)(timeRange > 0 ? (logs.getTimestamp(i) - fromTimestamp) / timeRange * chartWidth : chartWidth / 2.0);
+			float y = getPaddingTop() + (float)(valueRange > 0 ? (maximum - logs.getValue(i)) / valueRange * chartHeight : chartHeight / 2.0);
+
+			if(i == 0)
+				path.moveTo(x, y);
+			else
+				path.lineTo(x, y);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package com.mobdev.hellofiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mergeable quantile sketch with relative accuracy guarantees (DDSketch, Masson et al.).
+ *
+ * Each value v is counted in the bucket ceil(log(|v|) / log(gamma)) with gamma = (1 + a) / (1 - a),
+ * so every quantile is estimated with a relative error lower than a. The buckets are plain
+ * counters: a value can be removed by decrementing its bucket and two sketches are merged by
+ * adding their counters. The memory used depends on the range of the values and not on their number.
+ */
+public class LogQuantileSketch {
+
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+	/*
+	 * Values with a smaller magnitude are counted as zero
+	 */
+	private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+	private double relativeAccuracy = DEFAULT_RELATIVE_ACCURACY;
+
+	private double gamma = 0.0;
+
+	private double logGamma = 0.0;
+
+	private BucketStore positiveBuckets = new BucketStore();
+
+	private BucketStore negativeBuckets = new BucketStore();
+
+	private long zeroCount = 0;
+
+	private long count = 0;
+
+	/**
+	 * Contiguous range of bucket counters starting from the key of the first element
+	 */
+	private static class BucketStore {
+
+		private long[] counts = null;
+
+		private int offset = 0;
+
+		private void add(int key, long delta) {
+
+			if(counts == null) {
+				counts = new long[32];
+				offset = key - 16;
+			}
+			else if(key < offset || key >= offset + counts.length) {
+
+				int newOffset = Math.min(offset, key);
+				int newEnd = Math.max(offset + counts.length, key + 1);
+				int newLength = newEnd - newOffset;
+
+				//Grow with some margin on the side of the new key
+				newLength += newLength >> 1;
+				if(key < offset)
+					newOffset = newEnd - newLength;
+
+				long[] newCounts = new long[newLength];
+				System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+				counts = newCounts;
+				offset = newOffset;
+			}
+
+			counts[key - offset] += delta;
+		}
+	}
+
+	public LogQuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * @param relativeAccuracy the maximum relative error of the estimated quantiles (e.g. 0.01)
+	 */
+	public LogQuantileSketch(double relativeAccuracy) {
+
+		if(relativeAccuracy <= 0.0 || relativeAccuracy >= 1.0)
+			throw new IllegalArgumentException("Relative Accuracy: " + relativeAccuracy);
+
+		this.relativeAccuracy = relativeAccuracy;
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.logGamma = Math.log(gamma);
+	}
+
+	void add(double value) {
+		update(value, 1);
+	}
+
+	void remove(double value) {
+		update(value, -1);
+	}
+
+	private void update(double value, long delta) {
+
+		if(value >= MIN_INDEXABLE_VALUE)
+			positiveBuckets.add(getKey(value), delta);
+		else if(value <= -MIN_INDEXABLE_VALUE)
+			negativeBuckets.add(getKey(-value), delta);
+		else
+			zeroCount += delta;
+
+		count += delta;
+	}
+
+	/**
+	 * Add the counters of another sketch with the same accuracy
+	 */
+	public void merge(LogQuantileSketch sketch) {
+
+		if(sketch.relativeAccuracy != relativeAccuracy)
+			throw new IllegalArgumentException("Incompatible Sketch Accuracy: " + sketch.relativeAccuracy);
+
+		mergeBuckets(positiveBuckets, sketch.positiveBuckets);
+		mergeBuckets(negativeBuckets, sketch.negativeBuckets);
+		zeroCount += sketch.zeroCount;
+		count += sketch.count;
+	}
+
+	private static void mergeBuckets(BucketStore target, BucketStore source) {
+		if(source.counts != null)
+			for(int i = 0; i < source.counts.length; i++)
+				if(source.counts[i] != 0)
+					target.add(source.offset + i, source.counts[i]);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	/**
+	 * @param quantile the quantile in [0, 1] (e.g. 0.95)
+	 * @return the estimated value of the quantile or NaN if the sketch is empty
+	 */
+	public double getQuantile(double quantile) {
+
+		if(quantile < 0.0 || quantile > 1.0)
+			throw new IllegalArgumentException("Quantile: " + quantile);
+
+		if(count <= 0)
+			return Double.NaN;
+
+		long rank = (long)(quantile * (count - 1));
+		long accumulated = 0;
+
+		//Negative values, from the largest magnitude
+		if(negativeBuckets.counts != null) {
+			for(int i = negativeBuckets.counts.length - 1; i >= 0; i--) {
+				accumulated += negativeBuckets.counts[i];
+				if(accumulated > rank)
+					return -getValue(negativeBuckets.offset + i);
+			}
+		}
+
+		accumulated += zeroCount;
+		if(accumulated > rank)
+			return 0.0;
+
+		if(positiveBuckets.counts != null) {
+			for(int i = 0; i < positiveBuckets.counts.length; i++) {
+				accumulated += positiveBuckets.counts[i];
+				if(accumulated > rank)
+					return getValue(positiveBuckets.offset + i);
+			}
+		}
+
+		return Double.NaN;
+	}
+
+	private int getKey(double magnitude) {
+		return (int)Math.ceil(Math.log(magnitude) / logGamma);
+	}
+
+	/*
+	 * Value of a bucket with the same relative distance from both the bucket bounds
+	 */
+	private double getValue(int key) {
+		return 2 * Math.pow(gamma, key) / (gamma + 1);
+	}
+
+	void write(DataOutput output) throws IOException {
+		output.writeDouble(relativeAccuracy);
+		output.writeLong(zeroCount);
+		output.writeLong(count);
+		writeBuckets(output, positiveBuckets);
+		writeBuckets(output, negativeBuckets);
+	}
+
+	private static void writeBuckets(DataOutput output, BucketStore buckets) throws IOException {
+
+		if(buckets.counts == null) {
+			output.writeInt(0);
+			return;
+		}
+
+		output.writeInt(buckets.counts.length);
+		output.writeInt(buckets.offset);
+		for(long bucketCount : buckets.counts)
+			output.writeLong(bucketCount);
+	}
+
+	static LogQuantileSketch read(DataInput input) throws IOException {
+
+		double relativeAccuracy = input.readDouble();
+
+		if(!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0))
+			throw new IOException("Invalid Sketch Accuracy: " + relativeAccuracy);
+
+		LogQuantileSketch sketch = new LogQuantileSketch(relativeAccuracy);
+		sketch.zeroCount = input.readLong();
+		sketch.count = input.readLong();
+		readBuckets(input, sketch.positiveBuckets);
+		readBuckets(input, sketch.negativeBuckets);
+		return sketch;
+	}
+
+	private static void readBuckets(DataInput input, BucketStore buckets) throws IOException {
+
+		int length = input.readInt();
+
+		if(length < 0)
+			throw new IOException("Invalid Sketch Buckets: " + length);
+
+		if(length == 0)
+			return;
+
+		buckets.offset = input.readInt();
+		buckets.counts = new long[length];
+		for(int i = 0; i < length; i++)
+			buckets.counts[i] = input.readLong();
+	}
+
+	@Override
+	public String toString() {
+		return "LogQuantileSketch{" +
+				"relativeAccuracy=" + relativeAccuracy +
+				", count=" + count +
+				", positiveBuckets=" + (positiveBuckets.counts != null ? positiveBuckets.counts.length : 0) +
+				", negativeBuckets=" + (negativeBuckets.counts != null ? negativeBuckets.counts.length : 0) +
+				'}';
+	}
+}
@@ -0,0 +1,183 @@
+package com.mobdev.hellofiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Immutable file holding a contiguous run of the log list (a snapshot file with its index,
+ * aggregates and overview files). The stored logs are read on demand through a {@link LogSnapshotReader}.
+ *
+ * Besides the reader the segment keeps the metadata stored in the manifest of the generation, used
+ * to decide the rollover of the segment and its retention without reading its pages, and the
+ * tombstones of the logs removed after the segment has been written. A removed log is not
+ * deleted from the file: its position is listed in the manifest until the tombstones are enough
+ * to rewrite the segment ({@link LogSegmentPolicy#isCompactionRequired(LogSegment, int)}).
+ */
+public class LogSegment {
+
+	private static final int[] NO_TOMBSTONES = new int[0];
+
+	private long id = 0;
+
+	private LogSnapshotReader reader = null;
+
+	private long minimumTimestamp = 0;
+
+	private long maximumTimestamp = 0;
+
+	private long byteSize = 0;
+
+	private long creationTime = 0;
+
+	/*
+	 * Sorted positions (inside the segment) of the removed logs
+	 */
+	private int[] tombstones = NO_TOMBSTONES;
+
+	/**
+	 * @param id the unique id of the segment (part of the file names)
+	 * @param reader the reader of the segment file
+	 * @param minimumTimestamp the lowest stored timestamp
+	 * @param maximumTimestamp the highest stored timestamp
+	 * @param byteSize the size of the segment files in bytes
+	 * @param creationTime the time (ms) when the first logs of the segment have been written
+	 */
+	public LogSegment(long id, LogSnapshotReader reader, long minimumTimestamp, long maximumTimestamp, long byteSize, long creationTime) {
+		this.id = id;
+		this.reader = reader;
+		this.minimumTimestamp = minimumTimestamp;
+		this.maximumTimestamp = maximumTimestamp;
+		this.byteSize = byteSize;
+		this.creationTime = creationTime;
+	}
+
+	/**
+	 * @param tombstones the sorted positions (inside the segment) of the removed logs
+	 * @return a segment sharing the file of this one with the target removed logs
+	 */
+	public LogSegment withTombstones(int[] tombstones) {
+		LogSegment segment = new LogSegment(id, reader, minimumTimestamp, maximumTimestamp, byteSize, creationTime);
+		segment.tombstones = tombstones.length > 0 ? tombstones : NO_TOMBSTONES;
+		return segment;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public LogSnapshotReader getReader() {
+		return reader;
+	}
+
+	public int size() {
+		return reader.size();
+	}
+
+	/**
+	 * @return the sorted positions (inside the segment) of the removed logs. The array must not be modified.
+	 */
+	public int[] getTombstones() {
+		return tombstones;
+	}
+
+	/**
+	 * @return the number of logs of the segment that have not been removed
+	 */
+	public int getVisibleSize() {
+		return size() - tombstones.length;
+	}
+
+	public long getMinimumTimestamp() {
+		return minimumTimestamp;
+	}
+
+	public long getMaximumTimestamp() {
+		return maximumTimestamp;
+	}
+
+	public long getByteSize() {
+		return byteSize;
+	}
+
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	public File getFile() {
+		return reader.getFile();
+	}
+
+	/**
+	 * Write the metadata of the segment in the manifest
+	 */
+	void write(DataOutput output) throws IOException {
+		output.writeLong(id);
+		output.writeInt(size());
+		output.writeLong(minimumTimestamp);
+		output.writeLong(maximumTimestamp);
+		output.writeLong(byteSize);
+		output.writeLong(creationTime);
+		output.writeInt(tombstones.length);
+		for(int tombstone : tombstones)
+			output.writeInt(tombstone);
+	}
+
+	/**
+	 * Metadata of a segment read from the manifest
+	 */
+	static class Entry {
+
+		long id = 0;
+
+		int size = 0;
+
+		long minimumTimestamp = 0;
+
+		long maximumTimestamp = 0;
+
+		long byteSize = 0;
+
+		long creationTime = 0;
+
+		int[] tombstones = NO_TOMBSTONES;
+
+		static Entry read(DataInput input) throws IOException {
+			Entry entry = new Entry();
+			entry.id = input.readLong();
+			entry.size = input.readInt();
+			entry.minimumTimestamp = input.readLong();
+			entry.maximumTimestamp = input.readLong();
+			entry.byteSize = input.readLong();
+			entry.creationTime = input.readLong();
+
+			int tombstoneCount = input.readInt();
+
+			if(tombstoneCount < 0 || tombstoneCount > entry.size)
+				throw new IOException("Invalid Segment Tombstones: " + tombstoneCount);
+
+			entry.tombstones = new int[tombstoneCount];
+
+			for(int i = 0; i < tombstoneCount; i++) {
+				entry.tombstones[i] = input.readInt();
+				if(entry.tombstones[i] < 0 || entry.tombstones[i] >= entry.size || (i > 0 && entry.tombstones[i] <= entry.tombstones[i - 1]))
+					throw new IOException("Invalid Segment Tombstone: " + entry.tombstones[i]);
+			}
+
+			return entry;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LogSegment{" +
+				"id=" + id +
+				", size=" + size() +
+				", tombstones=" + tombstones.length +
+				", minimumTimestamp=" + minimumTimestamp +
+				", maximumTimestamp=" + maximumTimestamp +
+				", byteSize=" + byteSize +
+				'}';
+	}
+}
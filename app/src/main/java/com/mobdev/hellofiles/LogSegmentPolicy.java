@@ -0,0 +1,209 @@
+package com.mobdev.hellofiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rollover and retention rules of the segments of the log list.
+ *
+ * A segment accepts new logs (it is rewritten together with them) until it is sealed, i.e. when it
+ * reaches the maximum number of records or the maximum size or when it is older than the rollover
+ * window. The retention drops whole segments: the ones whose newest log is older than the maximum
+ * age and then the oldest ones until the total size fits the maximum one.
+ *
+ * The logs removed from a sealed segment are recorded as tombstones and the segment is rewritten
+ * (compacted) only when the tombstones exceed the maximum ratio of its records, so removing a log
+ * does not rewrite the whole segment.
+ *
+ * A limit equal to {@link #UNLIMITED} is not applied. The object is immutable so it can be shared
+ * between the Main Thread and the background writer.
+ */
+public class LogSegmentPolicy {
+
+	public static final long UNLIMITED = 0;
+
+	public static final int DEFAULT_MAX_SEGMENT_RECORDS = 64 * 1024;
+
+	public static final long DEFAULT_MAX_SEGMENT_BYTES = 1024 * 1024;
+
+	public static final long DEFAULT_ROLLOVER_WINDOW_MS = 24 * 60 * 60 * 1000L;
+
+	public static final float DEFAULT_MAX_TOMBSTONE_RATIO = 0.25f;
+
+	public static final LogSegmentPolicy DEFAULT = new LogSegmentPolicy(DEFAULT_MAX_SEGMENT_RECORDS, DEFAULT_MAX_SEGMENT_BYTES,
+			DEFAULT_ROLLOVER_WINDOW_MS, UNLIMITED, UNLIMITED);
+
+	private int maxSegmentRecords = DEFAULT_MAX_SEGMENT_RECORDS;
+
+	private long maxSegmentBytes = DEFAULT_MAX_SEGMENT_BYTES;
+
+	private long rolloverWindowMs = DEFAULT_ROLLOVER_WINDOW_MS;
+
+	private long retentionMs = UNLIMITED;
+
+	private long maxTotalBytes = UNLIMITED;
+
+	private float maxTombstoneRatio = DEFAULT_MAX_TOMBSTONE_RATIO;
+
+	/**
+	 * @param maxSegmentRecords the maximum number of logs of a segment
+	 * @param maxSegmentBytes the size (bytes) that seals a segment
+	 * @param rolloverWindowMs the age (ms) that seals a segment
+	 * @param retentionMs the age (ms) of the newest log of a segment after which the segment is dropped
+	 * @param maxTotalBytes the maximum size (bytes) of all the segments
+	 */
+	public LogSegmentPolicy(int maxSegmentRecords, long maxSegmentBytes, long rolloverWindowMs, long retentionMs, long maxTotalBytes) {
+		this(maxSegmentRecords, maxSegmentBytes, rolloverWindowMs, retentionMs, maxTotalBytes, DEFAULT_MAX_TOMBSTONE_RATIO);
+	}
+
+	/**
+	 * @param maxSegmentRecords the maximum number of logs of a segment
+	 * @param maxSegmentBytes the size (bytes) that seals a segment
+	 * @param rolloverWindowMs the age (ms) that seals a segment
+	 * @param retentionMs the age (ms) of the newest log of a segment after which the segment is dropped
+	 * @param maxTotalBytes the maximum size (bytes) of all the segments
+	 * @param maxTombstoneRatio the fraction of removed logs of a segment that requires to rewrite it
+	 * (0 rewrites a segment on each removal)
+	 */
+	public LogSegmentPolicy(int maxSegmentRecords, long maxSegmentBytes, long rolloverWindowMs, long retentionMs, long maxTotalBytes, float maxTombstoneRatio) {
+
+		if(maxSegmentRecords <= 0)
+			throw new IllegalArgumentException("Max Segment Records: " + maxSegmentRecords);
+
+		if(maxTombstoneRatio < 0 || maxTombstoneRatio > 1)
+			throw new IllegalArgumentException("Max Tombstone Ratio: " + maxTombstoneRatio);
+
+		this.maxSegmentRecords = maxSegmentRecords;
+		this.maxSegmentBytes = maxSegmentBytes;
+		this.rolloverWindowMs = rolloverWindowMs;
+		this.retentionMs = retentionMs;
+		this.maxTotalBytes = maxTotalBytes;
+		this.maxTombstoneRatio = maxTombstoneRatio;
+	}
+
+	/**
+	 * @param days the number of days of logs to keep (UNLIMITED to keep all of them)
+	 * @return a copy of the policy keeping the logs of the last days
+	 */
+	public LogSegmentPolicy withRetentionDays(int days) {
+		return new LogSegmentPolicy(maxSegmentRecords, maxSegmentBytes, rolloverWindowMs, days * 24 * 60 * 60 * 1000L, maxTotalBytes, maxTombstoneRatio);
+	}
+
+	/**
+	 * @param megabytes the maximum size of the stored logs (UNLIMITED to keep all of them)
+	 * @return a copy of the policy capping the size of the stored logs
+	 */
+	public LogSegmentPolicy withMaxTotalMegabytes(int megabytes) {
+		return new LogSegmentPolicy(maxSegmentRecords, maxSegmentBytes, rolloverWindowMs, retentionMs, megabytes * 1024L * 1024L, maxTombstoneRatio);
+	}
+
+	/**
+	 * @param ratio the fraction of removed logs of a segment that requires to rewrite it
+	 * @return a copy of the policy with the target compaction threshold
+	 */
+	public LogSegmentPolicy withMaxTombstoneRatio(float ratio) {
+		return new LogSegmentPolicy(maxSegmentRecords, maxSegmentBytes, rolloverWindowMs, retentionMs, maxTotalBytes, ratio);
+	}
+
+	public int getMaxSegmentRecords() {
+		return maxSegmentRecords;
+	}
+
+	public long getMaxSegmentBytes() {
+		return maxSegmentBytes;
+	}
+
+	public long getRolloverWindowMs() {
+		return rolloverWindowMs;
+	}
+
+	public long getRetentionMs() {
+		return retentionMs;
+	}
+
+	public long getMaxTotalBytes() {
+		return maxTotalBytes;
+	}
+
+	public float getMaxTombstoneRatio() {
+		return maxTombstoneRatio;
+	}
+
+	/**
+	 * @param segment the segment to check
+	 * @param now the current time in milliseconds
+	 * @return true if the segment does not accept new logs anymore
+	 */
+	public boolean isSealed(LogSegment segment, long now) {
+		return segment.size() >= maxSegmentRecords
+				|| (maxSegmentBytes != UNLIMITED && segment.getByteSize() >= maxSegmentBytes)
+				|| (rolloverWindowMs != UNLIMITED && now - segment.getCreationTime() >= rolloverWindowMs);
+	}
+
+	/**
+	 * @param segment the segment to check
+	 * @param tombstoneCount the number of removed logs of the segment
+	 * @return true if the segment has to be rewritten without the removed logs
+	 */
+	public boolean isCompactionRequired(LogSegment segment, int tombstoneCount) {
+		return tombstoneCount > 0 && tombstoneCount >= segment.size() * maxTombstoneRatio;
+	}
+
+	/**
+	 * Select the segments dropped by the retention rules. The segment with the newest log is never dropped.
+	 * @param segments the stored segments
+	 * @param now the current time in milliseconds
+	 * @return the segments to drop
+	 */
+	public List<LogSegment> selectExpiredSegments(List<LogSegment> segments, long now) {
+
+		ArrayList<LogSegment> expiredSegments = new ArrayList<LogSegment>();
+
+		if(segments.size() <= 1 || (retentionMs == UNLIMITED && maxTotalBytes == UNLIMITED))
+			return expiredSegments;
+
+		//Oldest segments first
+		ArrayList<LogSegment> sortedSegments = new ArrayList<LogSegment>(segments);
+		Collections.sort(sortedSegments, new Comparator<LogSegment>() {
+			@Override
+			public int compare(LogSegment first, LogSegment second) {
+				return first.getMaximumTimestamp() < second.getMaximumTimestamp() ? -1 :
+						(first.getMaximumTimestamp() == second.getMaximumTimestamp() ? 0 : 1);
+			}
+		});
+
+		long totalBytes = 0;
+		for(LogSegment segment : sortedSegments)
+			totalBytes += segment.getByteSize();
+
+		for(int i = 0; i < sortedSegments.size() - 1; i++) {
+
+			LogSegment segment = sortedSegments.get(i);
+
+			boolean isExpired = retentionMs != UNLIMITED && segment.getMaximumTimestamp() < now - retentionMs;
+			boolean isOverCapacity = maxTotalBytes != UNLIMITED && totalBytes > maxTotalBytes;
+
+			if(!isExpired && !isOverCapacity)
+				break;
+
+			expiredSegments.add(segment);
+			totalBytes -= segment.getByteSize();
+		}
+
+		return expiredSegments;
+	}
+
+	@Override
+	public String toString() {
+		return "LogSegmentPolicy{" +
+				"maxSegmentRecords=" + maxSegmentRecords +
+				", maxSegmentBytes=" + maxSegmentBytes +
+				", rolloverWindowMs=" + rolloverWindowMs +
+				", retentionMs=" + retentionMs +
+				", maxTotalBytes=" + maxTotalBytes +
+				", maxTombstoneRatio=" + maxTombstoneRatio +
+				'}';
+	}
+}
@@ -0,0 +1,262 @@
+package com.mobdev.hellofiles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable LogSource made of an ordered list of segments: the logical sequence is the content of
+ * the first segment followed by the content of the second one and so on.
+ *
+ * A position is mapped on its segment with a binary search over the first positions of the
+ * segments. Time-range queries skip the segments whose timestamps do not overlap the range and use
+ * the time index of the other ones.
+ *
+ * The positions are the ones of the stored records, including the logs removed by the tombstones
+ * of the segments: the tombstones are applied by the {@link PagedLogStore} based on the set.
+ */
+public class LogSegmentSet implements LogSource {
+
+	private List<LogSegment> segments = null;
+
+	/*
+	 * Position of the first log of each segment (plus the total size as last element)
+	 */
+	private int[] segmentStarts = null;
+
+	public LogSegmentSet(List<LogSegment> segments) {
+
+		this.segments = Collections.unmodifiableList(new ArrayList<LogSegment>(segments));
+		this.segmentStarts = new int[segments.size() + 1];
+
+		for(int i = 0; i < segments.size(); i++)
+			segmentStarts[i + 1] = segmentStarts[i] + segments.get(i).size();
+	}
+
+	public List<LogSegment> getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return the position of the first log of the segment with the target index
+	 */
+	public int getSegmentStart(int segmentIndex) {
+		return segmentStarts[segmentIndex];
+	}
+
+	/**
+	 * @return the number of removed logs of all the segments
+	 */
+	public int getTombstoneCount() {
+		int tombstoneCount = 0;
+		for(LogSegment segment : segments)
+			tombstoneCount += segment.getTombstones().length;
+		return tombstoneCount;
+	}
+
+	/**
+	 * @return the sorted positions in the set of the logs removed by the tombstones of the segments
+	 */
+	public int[] getTombstones() {
+
+		int[] tombstones = new int[getTombstoneCount()];
+		int count = 0;
+
+		for(int i = 0; i < segments.size(); i++)
+			for(int tombstone : segments.get(i).getTombstones())
+				tombstones[count++] = segmentStarts[i] + tombstone;
+
+		return tombstones;
+	}
+
+	/**
+	 * @return the total size in bytes of the segment files
+	 */
+	public long getByteSize() {
+		long byteSize = 0;
+		for(LogSegment segment : segments)
+			byteSize += segment.getByteSize();
+		return byteSize;
+	}
+
+	/**
+	 * @param droppedSegments the segments to exclude
+	 * @return a new set with the other segments (they are shared, no log is copied)
+	 */
+	public LogSegmentSet without(Collection<LogSegment> droppedSegments) {
+
+		ArrayList<LogSegment> keptSegments = new ArrayList<LogSegment>(segments.size());
+
+		for(LogSegment segment : segments)
+			if(!droppedSegments.contains(segment))
+				keptSegments.add(segment);
+
+		return new LogSegmentSet(keptSegments);
+	}
+
+	@Override
+	public int size() {
+		return segmentStarts[segments.size()];
+	}
+
+	@Override
+	public long getTimestamp(int position) {
+		int segmentIndex = getSegmentIndex(position);
+		return segments.get(segmentIndex).getReader().getTimestamp(position - segmentStarts[segmentIndex]);
+	}
+
+	@Override
+	public double getValue(int position) {
+		int segmentIndex = getSegmentIndex(position);
+		return segments.get(segmentIndex).getReader().getValue(position - segmentStarts[segmentIndex]);
+	}
+
+	@Override
+	public void getRange(int position, int count, long[] timestamps, double[] values, int offset) {
+
+		if(position < 0 || count < 0 || position + count > size())
+			throw new IndexOutOfBoundsException("Range: " + position + "+" + count + " Size: " + size());
+
+		if(count == 0)
+			return;
+
+		int segmentIndex = getSegmentIndex(position);
+
+		while(count > 0) {
+
+			int segmentPosition = position - segmentStarts[segmentIndex];
+			int segmentCount = Math.min(count, segmentStarts[segmentIndex + 1] - position);
+
+			segments.get(segmentIndex).getReader().getRange(segmentPosition, segmentCount, timestamps, values, offset);
+
+			position += segmentCount;
+			offset += segmentCount;
+			count -= segmentCount;
+			segmentIndex++;
+		}
+	}
+
+	/**
+	 * Select the logs with fromTimestamp <= timestamp <= toTimestamp
+	 * @return the cursor over the selected logs, sorted by position
+	 */
+	public LogCursor query(long fromTimestamp, long toTimestamp) {
+		return new SegmentCursor(fromTimestamp, toTimestamp);
+	}
+
+	/**
+	 * Merge the aggregates of the segments (read from their aggregates files)
+	 * @return new aggregates of the whole content that can be updated by the caller
+	 */
+	public LogAggregates loadAggregates() {
+
+		LogAggregates aggregates = new LogAggregates();
+
+		for(LogSegment segment : segments)
+			aggregates.merge(segment.getReader().loadAggregates());
+
+		return aggregates;
+	}
+
+	/**
+	 * Merge the overviews of the segments (read from their overview files)
+	 * @return new overview of the whole content that can be updated by the caller
+	 */
+	public LogOverview loadOverview() {
+
+		LogOverview overview = new LogOverview();
+
+		for(LogSegment segment : segments)
+			overview.merge(segment.getReader().loadOverview());
+
+		return overview;
+	}
+
+	/*
+	 * Index of the segment containing the target position (the last one with start <= position)
+	 */
+	private int getSegmentIndex(int position) {
+
+		if(position < 0 || position >= size())
+			throw new IndexOutOfBoundsException("Position: " + position + " Size: " + size());
+
+		int low = 0;
+		int high = segments.size() - 1;
+
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(segmentStarts[middle] <= position)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Cursor chaining the queries of the segments overlapping the range
+	 */
+	private class SegmentCursor implements LogCursor {
+
+		private long fromTimestamp = 0;
+
+		private long toTimestamp = 0;
+
+		private int segmentIndex = -1;
+
+		private LogCursor segmentCursor = null;
+
+		private SegmentCursor(long fromTimestamp, long toTimestamp) {
+			this.fromTimestamp = fromTimestamp;
+			this.toTimestamp = toTimestamp;
+		}
+
+		@Override
+		public boolean moveToNext() {
+
+			while(true) {
+
+				if(segmentCursor != null && segmentCursor.moveToNext())
+					return true;
+
+				segmentCursor = null;
+				segmentIndex++;
+
+				if(segmentIndex >= segments.size())
+					return false;
+
+				LogSegment segment = segments.get(segmentIndex);
+
+				if(segment.getMaximumTimestamp() >= fromTimestamp && segment.getMinimumTimestamp() <= toTimestamp)
+					segmentCursor = segment.getReader().getTimeIndex().query(segment.getReader(), fromTimestamp, toTimestamp);
+			}
+		}
+
+		@Override
+		public int getPosition() {
+			return segmentStarts[segmentIndex] + segmentCursor.getPosition();
+		}
+
+		@Override
+		public long getTimestamp() {
+			return segmentCursor.getTimestamp();
+		}
+
+		@Override
+		public double getValue() {
+			return segmentCursor.getValue();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LogSegmentSet{" +
+				"segments=" + segments.size() +
+				", size=" + size() +
+				", tombstones=" + getTombstoneCount() +
+				", byteSize=" + getByteSize() +
+				'}';
+	}
+}
@@ -0,0 +1,440 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary columnar format used to store the snapshots of the log list.
+ *
+ * The file starts with a fixed header followed by a sequence of blocks of at most BLOCK_SIZE
+ * records. Each block stores the timestamps as a column of zig-zag varint deltas or of Gorilla
+ * delta of deltas ({@link GorillaCodec}) and the values as a column of raw doubles, of XOR-compressed
+ * doubles or of Gorilla XOR-compressed doubles. The smallest columns are used for every block: the
+ * regular timestamps and slowly changing values of the sensors take 1 to 3 bytes per record.
+ *
+ * Header: MAGIC (int) | VERSION (short) | FLAGS (short) | Record Count (int) | Block Size (int)
+ * Block: Record Count (int) | Encoding (byte) | First Timestamp (long) | Timestamps Length (int) |
+ *        Values Length (int) | Timestamp Column | Value Column
+ * Encoding: value encoding (low nibble) | ENCODING_GORILLA_TIMESTAMPS flag
+ */
+public class LogSnapshotFormat {
+
+	public static final int MAGIC = 0x48464C47; // "HFLG"
+
+	public static final short VERSION = 2;
+
+	public static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4;
+
+	public static final int BLOCK_HEADER_SIZE = 4 + 1 + 8 + 4 + 4;
+
+	public static final int BLOCK_SIZE = 4096;
+
+	public static final byte ENCODING_RAW_VALUES = 0;
+
+	public static final byte ENCODING_XOR_VALUES = 1;
+
+	public static final byte ENCODING_GORILLA_VALUES = 2;
+
+	public static final byte ENCODING_GORILLA_TIMESTAMPS = 0x10;
+
+	private static final int VALUE_ENCODING_MASK = 0x0F;
+
+	/*
+	 * Worst case size of the columns of a full block: a 10 bytes varint for each timestamp and
+	 * 9 bytes (control byte + 8 bytes) for each XOR-compressed value
+	 */
+	private static final int MAX_TIMESTAMP_COLUMN_SIZE = BLOCK_SIZE * 10;
+
+	private static final int MAX_VALUE_COLUMN_SIZE = BLOCK_SIZE * 9;
+
+	private LogSnapshotFormat() {
+	}
+
+	/**
+	 * Check if the buffer starts with the header of the binary format
+	 * @param buffer the buffer positioned at the beginning of the file
+	 * @return true if the content is stored with the binary format
+	 */
+	public static boolean isBinaryFormat(ByteBuffer buffer) {
+		return buffer.remaining() >= HEADER_SIZE && buffer.getInt(buffer.position()) == MAGIC;
+	}
+
+	/**
+	 * Write the logs of the source on the channel
+	 * @param channel the output channel positioned at the beginning of the file
+	 * @param logSource the logs to write
+	 * @param aggregates the aggregates updated with the written logs (it can be null)
+	 * @return the time index of the written blocks
+	 * @throws IOException
+	 */
+	public static LogTimeIndex write(FileChannel channel, LogSource logSource, LogAggregates aggregates) throws IOException {
+		return write(channel, logSource, aggregates, null);
+	}
+
+	/**
+	 * Write the logs of the source on the channel
+	 * @param channel the output channel positioned at the beginning of the file
+	 * @param logSource the logs to write
+	 * @param aggregates the aggregates updated with the written logs (it can be null)
+	 * @param overview the overview updated with the written logs (it can be null)
+	 * @return the time index of the written blocks
+	 * @throws IOException
+	 */
+	public static LogTimeIndex write(FileChannel channel, LogSource logSource, LogAggregates aggregates, LogOverview overview) throws IOException {
+
+		int size = logSource.size();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short)0);
+		header.putInt(size);
+		header.putInt(BLOCK_SIZE);
+		header.flip();
+		writeFully(channel, header);
+
+		ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		ByteBuffer timestampColumn = ByteBuffer.allocate(MAX_TIMESTAMP_COLUMN_SIZE);
+		ByteBuffer rawValueColumn = ByteBuffer.allocate(BLOCK_SIZE * 8);
+		ByteBuffer xorValueColumn = ByteBuffer.allocate(MAX_VALUE_COLUMN_SIZE);
+		BitWriter gorillaTimestampWriter = new BitWriter(BLOCK_SIZE);
+		BitWriter gorillaValueWriter = new BitWriter(BLOCK_SIZE * 2);
+
+		long[] timestamps = new long[BLOCK_SIZE];
+		double[] values = new double[BLOCK_SIZE];
+
+		LogTimeIndex timeIndex = new LogTimeIndex(BLOCK_SIZE);
+
+		for(int blockStart = 0; blockStart < size; blockStart += BLOCK_SIZE) {
+
+			int blockRecords = Math.min(BLOCK_SIZE, size - blockStart);
+
+			logSource.getRange(blockStart, blockRecords, timestamps, values, 0);
+			timeIndex.addBlock(timestamps, blockRecords);
+
+			timestampColumn.clear();
+			rawValueColumn.clear();
+			xorValueColumn.clear();
+
+			long previousTimestamp = timestamps[0];
+			long previousValueBits = 0;
+
+			for(int i = 0; i < blockRecords; i++) {
+
+				if(i > 0)
+					putVarLong(timestampColumn, zigZagEncode(timestamps[i] - previousTimestamp));
+
+				previousTimestamp = timestamps[i];
+
+				if(aggregates != null)
+					aggregates.add(timestamps[i], values[i]);
+
+				if(overview != null)
+					overview.add(timestamps[i], values[i]);
+
+				long valueBits = Double.doubleToRawLongBits(values[i]);
+				rawValueColumn.putLong(valueBits);
+				putXorValue(xorValueColumn, valueBits ^ previousValueBits);
+				previousValueBits = valueBits;
+			}
+
+			timestampColumn.flip();
+			rawValueColumn.flip();
+			xorValueColumn.flip();
+
+			gorillaTimestampWriter.reset();
+			GorillaCodec.encodeTimestamps(timestamps, blockRecords, gorillaTimestampWriter);
+			gorillaValueWriter.reset();
+			GorillaCodec.encodeValues(values, blockRecords, gorillaValueWriter);
+
+			int encoding = ENCODING_RAW_VALUES;
+			ByteBuffer blockTimestampColumn = timestampColumn;
+			ByteBuffer valueColumn = rawValueColumn;
+
+			if(xorValueColumn.remaining() < valueColumn.remaining()) {
+				encoding = ENCODING_XOR_VALUES;
+				valueColumn = xorValueColumn;
+			}
+
+			if(gorillaValueWriter.getByteLength() < valueColumn.remaining()) {
+				encoding = ENCODING_GORILLA_VALUES;
+				valueColumn = ByteBuffer.wrap(gorillaValueWriter.finish(), 0, gorillaValueWriter.getByteLength());
+			}
+
+			if(gorillaTimestampWriter.getByteLength() < timestampColumn.remaining()) {
+				encoding |= ENCODING_GORILLA_TIMESTAMPS;
+				blockTimestampColumn = ByteBuffer.wrap(gorillaTimestampWriter.finish(), 0, gorillaTimestampWriter.getByteLength());
+			}
+
+			blockHeader.clear();
+			blockHeader.putInt(blockRecords);
+			blockHeader.put((byte)encoding);
+			blockHeader.putLong(timestamps[0]);
+			blockHeader.putInt(blockTimestampColumn.remaining());
+			blockHeader.putInt(valueColumn.remaining());
+			blockHeader.flip();
+
+			writeFully(channel, blockHeader);
+			writeFully(channel, blockTimestampColumn);
+			writeFully(channel, valueColumn);
+		}
+
+		return timeIndex;
+	}
+
+	/**
+	 * Validate the header of a snapshot
+	 * @param buffer the buffer of the whole file
+	 * @return the number of records stored in the snapshot
+	 * @throws IOException if the header is not valid
+	 */
+	public static int readHeader(ByteBuffer buffer) throws IOException {
+
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Invalid Snapshot Header !");
+
+		short version = buffer.getShort(4);
+
+		if(version != VERSION)
+			throw new IOException("Unsupported Snapshot Version: " + version);
+
+		int blockSize = buffer.getInt(12);
+
+		if(blockSize != BLOCK_SIZE)
+			throw new IOException("Unsupported Snapshot Block Size: " + blockSize);
+
+		return buffer.getInt(8);
+	}
+
+	/**
+	 * @param buffer the buffer of the whole file
+	 * @param blockOffset the offset of a block
+	 * @return the offset of the following block
+	 */
+	public static int nextBlockOffset(ByteBuffer buffer, int blockOffset) {
+		int timestampColumnLength = buffer.getInt(blockOffset + 13);
+		int valueColumnLength = buffer.getInt(blockOffset + 17);
+		return blockOffset + BLOCK_HEADER_SIZE + timestampColumnLength + valueColumnLength;
+	}
+
+	/**
+	 * Decode a single block
+	 * @param buffer the buffer of the whole file
+	 * @param blockOffset the offset of the block
+	 * @param timestamps the destination of the timestamps (at least BLOCK_SIZE elements)
+	 * @param values the destination of the values (at least BLOCK_SIZE elements)
+	 * @return the number of decoded records
+	 * @throws IOException if the block is not valid
+	 */
+	public static int readBlock(ByteBuffer buffer, int blockOffset, long[] timestamps, double[] values) throws IOException {
+
+		BlockCursor cursor = openBlock(buffer, blockOffset);
+
+		try {
+
+			while(cursor.moveToNext()) {
+				timestamps[cursor.position] = cursor.timestamp;
+				values[cursor.position] = Double.longBitsToDouble(cursor.valueBits);
+			}
+
+			return cursor.count;
+
+		} catch (RuntimeException e) {
+			//BufferUnderflowException or IllegalArgumentException for truncated or corrupted content
+			throw new IOException("Invalid Snapshot Block at Offset: " + blockOffset, e);
+		}
+	}
+
+	/**
+	 * Iterate over the records of a single block decoding them one at a time (e.g. to scan a block
+	 * without decoding it in a page). The positions of the cursor are relative to the block.
+	 * A truncated or corrupted block makes the cursor throw a BufferUnderflowException or an
+	 * IllegalArgumentException.
+	 *
+	 * @param buffer the buffer of the whole file
+	 * @param blockOffset the offset of the block
+	 * @return the cursor positioned before the first record of the block
+	 * @throws IOException if the block header is not valid
+	 */
+	public static BlockCursor openBlock(ByteBuffer buffer, int blockOffset) throws IOException {
+		try {
+			return new BlockCursor(buffer, blockOffset);
+		} catch (RuntimeException e) {
+			throw new IOException("Invalid Snapshot Block at Offset: " + blockOffset, e);
+		}
+	}
+
+	/**
+	 * Cursor decoding the columns of a block on demand
+	 */
+	public static class BlockCursor implements LogCursor {
+
+		private int count = 0;
+
+		private int position = -1;
+
+		private int valueEncoding = ENCODING_RAW_VALUES;
+
+		private ByteBuffer timestampColumn = null;
+
+		private ByteBuffer valueColumn = null;
+
+		private GorillaCodec.TimestampDecoder timestampDecoder = null;
+
+		private GorillaCodec.ValueDecoder valueDecoder = null;
+
+		private long timestamp = 0;
+
+		private long valueBits = 0;
+
+		private BlockCursor(ByteBuffer buffer, int blockOffset) {
+
+			ByteBuffer block = buffer.duplicate();
+			block.position(blockOffset);
+
+			this.count = block.getInt();
+			int encoding = block.get();
+			this.timestamp = block.getLong();
+			int timestampColumnLength = block.getInt();
+			int valueColumnLength = block.getInt();
+
+			if(count < 0 || count > BLOCK_SIZE)
+				throw new IllegalArgumentException("Invalid Block Record Count: " + count);
+
+			this.valueEncoding = encoding & VALUE_ENCODING_MASK;
+			this.timestampColumn = slice(block, timestampColumnLength);
+			this.valueColumn = slice(block, valueColumnLength);
+
+			if((encoding & ENCODING_GORILLA_TIMESTAMPS) != 0)
+				this.timestampDecoder = new GorillaCodec.TimestampDecoder(timestamp, timestampColumn);
+
+			if(valueEncoding == ENCODING_GORILLA_VALUES)
+				this.valueDecoder = new GorillaCodec.ValueDecoder(valueColumn);
+			else if(valueEncoding != ENCODING_RAW_VALUES && valueEncoding != ENCODING_XOR_VALUES)
+				throw new IllegalArgumentException("Unknown Block Encoding: " + encoding);
+		}
+
+		@Override
+		public boolean moveToNext() {
+
+			if(position + 1 >= count)
+				return false;
+
+			position++;
+
+			if(position > 0) {
+				if(timestampDecoder != null)
+					timestamp = timestampDecoder.next();
+				else
+					timestamp += zigZagDecode(getVarLong(timestampColumn));
+			}
+
+			if(valueDecoder != null)
+				valueBits = valueDecoder.nextBits();
+			else if(valueEncoding == ENCODING_XOR_VALUES)
+				valueBits ^= getXorValue(valueColumn);
+			else
+				valueBits = valueColumn.getLong();
+
+			return true;
+		}
+
+		@Override
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public double getValue() {
+			return Double.longBitsToDouble(valueBits);
+		}
+
+		/**
+		 * @return the number of records of the block
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+		ByteBuffer column = buffer.slice();
+		column.limit(length);
+		buffer.position(buffer.position() + length);
+		return column;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private static long zigZagEncode(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long zigZagDecode(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void putVarLong(ByteBuffer buffer, long value) {
+		while((value & ~0x7FL) != 0) {
+			buffer.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	private static long getVarLong(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	/*
+	 * The XOR with the previous value is stored as a control byte with the number of leading
+	 * (high nibble) and trailing (low nibble) zero bytes, followed by the remaining meaningful bytes.
+	 * Slowly changing values share sign, exponent and most of the mantissa so only a few bytes are kept.
+	 */
+	private static void putXorValue(ByteBuffer buffer, long xor) {
+
+		if(xor == 0) {
+			buffer.put((byte)0x80);
+			return;
+		}
+
+		int leadingBytes = Long.numberOfLeadingZeros(xor) / 8;
+		int trailingBytes = Long.numberOfTrailingZeros(xor) / 8;
+
+		buffer.put((byte)((leadingBytes << 4) | trailingBytes));
+
+		for(int shift = (7 - leadingBytes) * 8; shift >= trailingBytes * 8; shift -= 8)
+			buffer.put((byte)(xor >>> shift));
+	}
+
+	private static long getXorValue(ByteBuffer buffer) {
+
+		int control = buffer.get() & 0xFF;
+		int leadingBytes = control >>> 4;
+		int trailingBytes = control & 0x0F;
+
+		long xor = 0;
+
+		for(int i = leadingBytes + trailingBytes; i < 8; i++)
+			xor = (xor << 8) | (buffer.get() & 0xFF);
+
+		return trailingBytes == 0 ? xor : xor << (trailingBytes * 8);
+	}
+}
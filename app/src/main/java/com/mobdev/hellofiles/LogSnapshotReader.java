@@ -0,0 +1,345 @@
+package com.mobdev.hellofiles;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Paged read-only access to a snapshot file ({@link LogSnapshotFormat}).
+ *
+ * The file is memory mapped and only the block offsets are computed when it is opened. Each block
+ * (page) is decoded on demand and kept in a LRU cache with a bounded number of pages, so the
+ * memory used does not depend on the size of the snapshot. When a page is loaded the adjacent
+ * ones are decoded in background to follow a sequential scroll.
+ */
+public class LogSnapshotReader implements LogSource {
+
+	public static final int DEFAULT_CACHED_PAGES = 16;
+
+	/*
+	 * Shared background thread used to prefetch the pages of all the readers
+	 */
+	private static ExecutorService prefetchExecutor = null;
+
+	private File file = null;
+
+	private ByteBuffer buffer = null;
+
+	private int size = 0;
+
+	private int[] blockOffsets = null;
+
+	private int maxCachedPages = DEFAULT_CACHED_PAGES;
+
+	private volatile LogTimeIndex timeIndex = null;
+
+	private File aggregatesFile = null;
+
+	private File overviewFile = null;
+
+	private LinkedHashMap<Integer, Page> pageCache = null;
+
+	/*
+	 * Last accessed page, to avoid a cache lookup when consecutive fields of the same page are read
+	 */
+	private volatile Page lastPage = null;
+
+	private static class Page {
+
+		private int index = 0;
+
+		private long[] timestamps = null;
+
+		private double[] values = null;
+
+		private Page(int index) {
+			this.index = index;
+			this.timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+			this.values = new double[LogSnapshotFormat.BLOCK_SIZE];
+		}
+	}
+
+	public LogSnapshotReader(File file) throws IOException {
+		this(file, DEFAULT_CACHED_PAGES);
+	}
+
+	/**
+	 * Map the snapshot file and read its block offsets
+	 * @param file the snapshot file
+	 * @param maxCachedPages the maximum number of decoded pages kept in memory
+	 * @throws IOException if the file is not a valid snapshot
+	 */
+	public LogSnapshotReader(File file, int maxCachedPages) throws IOException {
+
+		this.file = file;
+		this.buffer = LogStorage.mapFile(file);
+		this.size = LogSnapshotFormat.readHeader(buffer);
+		this.maxCachedPages = Math.max(2, maxCachedPages);
+
+		int blockCount = (size + LogSnapshotFormat.BLOCK_SIZE - 1) / LogSnapshotFormat.BLOCK_SIZE;
+		this.blockOffsets = new int[blockCount];
+
+		int offset = LogSnapshotFormat.HEADER_SIZE;
+
+		for(int i = 0; i < blockCount; i++) {
+
+			if(offset + LogSnapshotFormat.BLOCK_HEADER_SIZE > buffer.limit())
+				throw new IOException("Truncated Snapshot File: " + file.getName());
+
+			blockOffsets[i] = offset;
+			offset = LogSnapshotFormat.nextBlockOffset(buffer, offset);
+		}
+
+		if(offset > buffer.limit())
+			throw new IOException("Truncated Snapshot File: " + file.getName());
+
+		this.pageCache = new LinkedHashMap<Integer, Page>(this.maxCachedPages * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+				return size() > LogSnapshotReader.this.maxCachedPages;
+			}
+		};
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @param timeIndex the index of the snapshot (e.g. read from the index file)
+	 */
+	public void setTimeIndex(LogTimeIndex timeIndex) {
+		if(timeIndex.size() != size || timeIndex.getBlockSize() != LogSnapshotFormat.BLOCK_SIZE)
+			throw new IllegalArgumentException("Time Index Size: " + timeIndex.size() + " Snapshot Size: " + size);
+		this.timeIndex = timeIndex;
+	}
+
+	/**
+	 * @param aggregatesFile the file with the aggregates written with the snapshot
+	 */
+	public void setAggregatesFile(File aggregatesFile) {
+		this.aggregatesFile = aggregatesFile;
+	}
+
+	/**
+	 * Read the aggregates of the snapshot. If the aggregates file is not available or valid they are
+	 * computed reading all the pages.
+	 *
+	 * @return new aggregates of the snapshot content that can be updated by the caller
+	 */
+	public LogAggregates loadAggregates() {
+
+		if(aggregatesFile != null) {
+
+			try {
+				DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(aggregatesFile)));
+				try {
+					LogAggregates aggregates = LogAggregates.read(dis);
+					if(aggregates.getStatistics().getCount() <= size)
+						return aggregates;
+				} finally {
+					dis.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		return LogAggregates.build(this);
+	}
+
+	/**
+	 * @param overviewFile the file with the overview written with the snapshot
+	 */
+	public void setOverviewFile(File overviewFile) {
+		this.overviewFile = overviewFile;
+	}
+
+	/**
+	 * Read the overview of the snapshot. If the overview file is not available or valid it is
+	 * computed reading all the pages.
+	 *
+	 * @return new overview of the snapshot content that can be updated by the caller
+	 */
+	public LogOverview loadOverview() {
+
+		if(overviewFile != null) {
+
+			try {
+				DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(overviewFile)));
+				try {
+					LogOverview overview = LogOverview.read(dis);
+					if(overview.size() <= size)
+						return overview;
+				} finally {
+					dis.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		return LogOverview.build(this);
+	}
+
+	/**
+	 * @return the time index of the snapshot. If it has not been loaded it is built reading the pages.
+	 */
+	public LogTimeIndex getTimeIndex() {
+		if(timeIndex == null)
+			timeIndex = LogTimeIndex.build(this);
+		return timeIndex;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long getTimestamp(int position) {
+		checkPosition(position);
+		return getPage(position / LogSnapshotFormat.BLOCK_SIZE).timestamps[position % LogSnapshotFormat.BLOCK_SIZE];
+	}
+
+	@Override
+	public double getValue(int position) {
+		checkPosition(position);
+		return getPage(position / LogSnapshotFormat.BLOCK_SIZE).values[position % LogSnapshotFormat.BLOCK_SIZE];
+	}
+
+	/**
+	 * Bulk read used by sequential scans (e.g. snapshots and exports). The pages that are not cached
+	 * are decoded without being added to the cache, so a full scan does not evict the pages in use.
+	 */
+	@Override
+	public void getRange(int position, int count, long[] timestamps, double[] values, int offset) {
+
+		if(position < 0 || count < 0 || position + count > size)
+			throw new IndexOutOfBoundsException("Range: " + position + "+" + count + " Size: " + size);
+
+		Page scanPage = null;
+
+		while(count > 0) {
+
+			int pageIndex = position / LogSnapshotFormat.BLOCK_SIZE;
+			int pageOffset = position % LogSnapshotFormat.BLOCK_SIZE;
+			int copied = Math.min(count, LogSnapshotFormat.BLOCK_SIZE - pageOffset);
+
+			Page page = getCachedPage(pageIndex);
+
+			if(page == null) {
+				if(scanPage == null)
+					scanPage = new Page(pageIndex);
+				scanPage.index = pageIndex;
+				decodePage(scanPage);
+				page = scanPage;
+			}
+
+			System.arraycopy(page.timestamps, pageOffset, timestamps, offset, copied);
+			System.arraycopy(page.values, pageOffset, values, offset, copied);
+
+			position += copied;
+			offset += copied;
+			count -= copied;
+		}
+	}
+
+	private Page getPage(int pageIndex) {
+
+		Page page = lastPage;
+
+		if(page != null && page.index == pageIndex)
+			return page;
+
+		page = getCachedPage(pageIndex);
+
+		if(page == null) {
+			page = loadPage(pageIndex);
+			prefetch(pageIndex - 1);
+			prefetch(pageIndex + 1);
+		}
+
+		lastPage = page;
+		return page;
+	}
+
+	private Page getCachedPage(int pageIndex) {
+		synchronized (pageCache) {
+			return pageCache.get(pageIndex);
+		}
+	}
+
+	private Page loadPage(int pageIndex) {
+
+		Page page = new Page(pageIndex);
+		decodePage(page);
+
+		synchronized (pageCache) {
+			Page cachedPage = pageCache.get(pageIndex);
+			if(cachedPage != null)
+				return cachedPage;
+			pageCache.put(pageIndex, page);
+		}
+
+		return page;
+	}
+
+	private void decodePage(Page page) {
+		try {
+			LogSnapshotFormat.readBlock(buffer, blockOffsets[page.index], page.timestamps, page.values);
+		} catch (IOException e) {
+			//The block offsets have been validated when the file has been opened
+			throw new IllegalStateException("Error Reading Snapshot Page: " + page.index + " File: " + file.getName(), e);
+		}
+	}
+
+	private void prefetch(final int pageIndex) {
+
+		if(pageIndex < 0 || pageIndex >= blockOffsets.length || getCachedPage(pageIndex) != null)
+			return;
+
+		getPrefetchExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				if(getCachedPage(pageIndex) == null)
+					loadPage(pageIndex);
+			}
+		});
+	}
+
+	private static synchronized ExecutorService getPrefetchExecutor() {
+		if(prefetchExecutor == null)
+			prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "LogPagePrefetch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return prefetchExecutor;
+	}
+
+	private void checkPosition(int position) {
+		if(position < 0 || position >= size)
+			throw new IndexOutOfBoundsException("Position: " + position + " Size: " + size);
+	}
+
+	@Override
+	public String toString() {
+		return "LogSnapshotReader{" +
+				"file=" + file.getName() +
+				", size=" + size +
+				", pages=" + blockOffsets.length +
+				'}';
+	}
+}
@@ -0,0 +1,23 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Read-only positional access to a sequence of logs
+ */
+public interface LogSource {
+
+	int size();
+
+	long getTimestamp(int position);
+
+	double getValue(int position);
+
+	/**
+	 * Copy a range of logs in the target arrays
+	 * @param position the position of the first log to copy
+	 * @param count the number of logs to copy
+	 * @param timestamps the destination of the timestamps
+	 * @param values the destination of the values
+	 * @param offset the first index used in the destination arrays
+	 */
+	void getRange(int position, int count, long[] timestamps, double[] values, int offset);
+}
@@ -0,0 +1,194 @@
+package com.mobdev.hellofiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Running statistics (count, sum, mean, variance, minimum and maximum) of a group of log values.
+ *
+ * Mean and variance are updated with the Welford algorithm, which can also be reverted when a
+ * value is removed, and two groups are merged with the parallel formula of Chan et al.
+ * Minimum and maximum can not be updated when the current extreme is removed: in that case they
+ * are marked as stale and recomputed by the owner ({@link LogAggregates}).
+ */
+public class LogStatistics {
+
+	private long count = 0;
+
+	private double sum = 0.0;
+
+	private double mean = 0.0;
+
+	/*
+	 * Sum of the squared differences from the mean
+	 */
+	private double m2 = 0.0;
+
+	private double minimum = Double.POSITIVE_INFINITY;
+
+	private double maximum = Double.NEGATIVE_INFINITY;
+
+	private boolean isExtremeStale = false;
+
+	public LogStatistics() {
+	}
+
+	public LogStatistics(LogStatistics statistics) {
+		merge(statistics);
+		this.isExtremeStale = statistics.isExtremeStale;
+	}
+
+	void add(double value) {
+
+		count++;
+		sum += value;
+
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+
+		if(value < minimum)
+			minimum = value;
+		if(value > maximum)
+			maximum = value;
+	}
+
+	void remove(double value) {
+
+		if(count <= 1) {
+			clear();
+			return;
+		}
+
+		double newMean = (count * mean - value) / (count - 1);
+		m2 = Math.max(0.0, m2 - (value - newMean) * (value - mean));
+		mean = newMean;
+		sum -= value;
+		count--;
+
+		if(value <= minimum || value >= maximum)
+			isExtremeStale = true;
+	}
+
+	/**
+	 * Add all the values of another group
+	 */
+	void merge(LogStatistics statistics) {
+
+		if(statistics.count == 0)
+			return;
+
+		if(count == 0) {
+			count = statistics.count;
+			sum = statistics.sum;
+			mean = statistics.mean;
+			m2 = statistics.m2;
+			minimum = statistics.minimum;
+			maximum = statistics.maximum;
+			return;
+		}
+
+		long mergedCount = count + statistics.count;
+		double delta = statistics.mean - mean;
+
+		m2 += statistics.m2 + delta * delta * ((double)count * statistics.count / mergedCount);
+		mean += delta * statistics.count / mergedCount;
+		sum += statistics.sum;
+		count = mergedCount;
+		minimum = Math.min(minimum, statistics.minimum);
+		maximum = Math.max(maximum, statistics.maximum);
+	}
+
+	void clear() {
+		count = 0;
+		sum = 0.0;
+		mean = 0.0;
+		m2 = 0.0;
+		minimum = Double.POSITIVE_INFINITY;
+		maximum = Double.NEGATIVE_INFINITY;
+		isExtremeStale = false;
+	}
+
+	boolean isExtremeStale() {
+		return isExtremeStale;
+	}
+
+	void setExtremes(double minimum, double maximum) {
+		this.minimum = minimum;
+		this.maximum = maximum;
+		this.isExtremeStale = false;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the mean of the values or NaN if the group is empty
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return the population variance of the values or NaN if the group is empty
+	 */
+	public double getVariance() {
+		return count > 0 ? m2 / count : Double.NaN;
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the minimum value or NaN if the group is empty
+	 */
+	public double getMinimum() {
+		return count > 0 ? minimum : Double.NaN;
+	}
+
+	/**
+	 * @return the maximum value or NaN if the group is empty
+	 */
+	public double getMaximum() {
+		return count > 0 ? maximum : Double.NaN;
+	}
+
+	void write(DataOutput output) throws IOException {
+		output.writeLong(count);
+		output.writeDouble(sum);
+		output.writeDouble(mean);
+		output.writeDouble(m2);
+		output.writeDouble(minimum);
+		output.writeDouble(maximum);
+	}
+
+	static LogStatistics read(DataInput input) throws IOException {
+		LogStatistics statistics = new LogStatistics();
+		statistics.count = input.readLong();
+		statistics.sum = input.readDouble();
+		statistics.mean = input.readDouble();
+		statistics.m2 = input.readDouble();
+		statistics.minimum = input.readDouble();
+		statistics.maximum = input.readDouble();
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return "LogStatistics{" +
+				"count=" + count +
+				", sum=" + sum +
+				", mean=" + getMean() +
+				", variance=" + getVariance() +
+				", minimum=" + getMinimum() +
+				", maximum=" + getMaximum() +
+				'}';
+	}
+}
@@ -0,0 +1,882 @@
+package com.mobdev.hellofiles;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Handle the files used to persist the log list on the Internal Application Storage.
+ *
+ * The list is stored as a binary snapshot followed by the journals ({@link LogJournal}) of the mutations
+ * applied after it. Snapshots and journals are tagged with a generation number: the snapshot of
+ * generation G contains all the mutations stored in the journals with a generation lower than G.
+ * In this way a new snapshot can be written in background while the application keeps appending
+ * on a new journal, and the stale files can be removed without the risk of applying a mutation twice.
+ *
+ * The snapshot of a generation is a manifest listing the segments ({@link LogSegment}) of the list
+ * in order. Each segment is an immutable file ({@link LogSnapshotFormat}) shared by all the
+ * manifests that contain it, so a snapshot rewrites only the segments that have been changed: the
+ * segment at the head (or at the tail) that receives the new logs until it is sealed by the
+ * rollover rules ({@link LogSegmentPolicy}) and the segments with too many removed logs. The logs
+ * removed from the other segments are listed as tombstones in the manifest, so a removal costs a
+ * journal record and then a few bytes of the manifest instead of a new copy of its segment. A
+ * segment dropped by the retention rules, or rewritten, is removed with a single file deletion.
+ *
+ * Manifest file: MAGIC (int) | VERSION (short) | Segment Count (int) | Segment metadata and tombstones
+ * for each segment | CRC-32C of the previous bytes (int)
+ *
+ * Every file is written on a temporary file, forced on the storage device and then renamed, so a
+ * crash never leaves a partially written snapshot. The journal records are appended without
+ * waiting for the device: the sync policy decides when they are forced (after each batch, at most
+ * once in a time interval or never), trading durability of the latest mutations for write latency.
+ */
+public class LogStorage {
+
+	private static final int MANIFEST_MAGIC = 0x48464C4D; // "HFLM"
+
+	private static final short MANIFEST_VERSION = 3;
+
+	/**
+	 * The data is written on the storage device by the operating system
+	 */
+	public static final int SYNC_NONE = 0;
+
+	/**
+	 * The journal is forced at most once in the sync interval (and when durability is requested)
+	 */
+	public static final int SYNC_INTERVAL = 1;
+
+	/**
+	 * The journal is forced after each appended batch
+	 */
+	public static final int SYNC_ALWAYS = 2;
+
+	public static final long DEFAULT_SYNC_INTERVAL_MS = 1000;
+
+	private static final String MANIFEST_EXTENSION = ".manifest";
+
+	private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+	private static final String JOURNAL_EXTENSION = ".journal";
+
+	private static final String INDEX_EXTENSION = ".index";
+
+	private static final String AGGREGATES_EXTENSION = ".stats";
+
+	private static final String OVERVIEW_EXTENSION = ".overview";
+
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	/*
+	 * Minimum number of journal records before a compaction is requested
+	 */
+	private static final int MIN_COMPACTION_RECORDS = 1024;
+
+	/*
+	 * A compaction is requested when the journal holds more records than this fraction of the
+	 * snapshot size, so the cost of the compactions stays proportional to the number of mutations
+	 */
+	private static final float COMPACTION_RATIO = 0.5f;
+
+	/*
+	 * Decoded pages cached by the reader of each segment
+	 */
+	private static final int SEGMENT_CACHED_PAGES = 4;
+
+	private static final LogHistogram loadLatency = LogMetrics.getInstance().getHistogram(LogMetrics.LOAD_LATENCY);
+
+	private static final LogHistogram saveLatency = LogMetrics.getInstance().getHistogram(LogMetrics.SAVE_LATENCY);
+
+	private static final LogHistogram saveRecords = LogMetrics.getInstance().getHistogram(LogMetrics.SAVE_RECORDS);
+
+	private static final AtomicLong bytesWritten = LogMetrics.getInstance().getCounter(LogMetrics.BYTES_WRITTEN);
+
+	private File directory = null;
+
+	private String baseName = null;
+
+	private String legacyFileName = null;
+
+	private Gson gson = null;
+
+	private LogJournal journal = null;
+
+	private long generation = 0;
+
+	private int journalDepth = 0;
+
+	private volatile int snapshotSize = 0;
+
+	private volatile LogSegmentPolicy segmentPolicy = LogSegmentPolicy.DEFAULT;
+
+	private volatile int syncPolicy = SYNC_INTERVAL;
+
+	private volatile long syncIntervalMs = DEFAULT_SYNC_INTERVAL_MS;
+
+	/*
+	 * Time of the latest journal sync and presence of appended records not synced yet
+	 */
+	private long lastSyncTime = 0;
+
+	private boolean isSyncPending = false;
+
+	/*
+	 * Id of the next written segment, found on the first write (used only by the writer)
+	 */
+	private long nextSegmentId = -1;
+
+	/**
+	 * @param directory the directory containing the files (e.g. Context.getFilesDir())
+	 * @param baseName the prefix used for snapshot and journal file names
+	 * @param legacyFileName the single JSON file used by the previous versions of the application.
+	 *                       It is loaded (if available) when there is not any snapshot.
+	 */
+	public LogStorage(File directory, String baseName, String legacyFileName) {
+		this.directory = directory;
+		this.baseName = baseName;
+		this.legacyFileName = legacyFileName;
+		this.gson = new Gson();
+	}
+
+	/**
+	 * @param segmentPolicy the rollover and retention rules applied by the next snapshots
+	 */
+	public void setSegmentPolicy(LogSegmentPolicy segmentPolicy) {
+		this.segmentPolicy = segmentPolicy;
+	}
+
+	public LogSegmentPolicy getSegmentPolicy() {
+		return segmentPolicy;
+	}
+
+	/**
+	 * @param syncPolicy SYNC_NONE, SYNC_INTERVAL or SYNC_ALWAYS
+	 * @param syncIntervalMs the minimum time between two syncs of the journal (SYNC_INTERVAL only)
+	 */
+	public void setSyncPolicy(int syncPolicy, long syncIntervalMs) {
+
+		if(syncPolicy != SYNC_NONE && syncPolicy != SYNC_INTERVAL && syncPolicy != SYNC_ALWAYS)
+			throw new IllegalArgumentException("Sync Policy: " + syncPolicy);
+
+		this.syncPolicy = syncPolicy;
+		this.syncIntervalMs = Math.max(0, syncIntervalMs);
+	}
+
+	public int getSyncPolicy() {
+		return syncPolicy;
+	}
+
+	public long getSyncIntervalMs() {
+		return syncIntervalMs;
+	}
+
+	/**
+	 * Load the latest snapshot and apply the journals written after it. The current journal is then
+	 * opened to append the next mutations.
+	 *
+	 * The segments are not decoded: their pages are read on demand by a {@link LogSnapshotReader}, so
+	 * the loading time and the memory used depend only on the number of journal records.
+	 *
+	 * @return the loaded store
+	 * @throws IOException
+	 */
+	public synchronized PagedLogStore load() throws IOException {
+
+		long startNanos = System.nanoTime();
+
+		long[] manifestGenerations = listGenerations(MANIFEST_EXTENSION);
+
+		LogSource snapshot = null;
+		long snapshotGeneration = 0;
+
+		if(manifestGenerations.length > 0) {
+			snapshotGeneration = manifestGenerations[manifestGenerations.length - 1];
+			snapshot = readManifest(getManifestFile(snapshotGeneration));
+		}
+		else {
+			//JSON file written by the previous versions of the application
+			File legacyFile = new File(directory, legacyFileName);
+			snapshot = legacyFile.exists() ? readJsonSnapshot(legacyFile) : new ArrayLogStore();
+		}
+
+		PagedLogStore logStore = new PagedLogStore(snapshot);
+
+		this.snapshotSize = logStore.size();
+		this.generation = snapshotGeneration;
+		this.journalDepth = 0;
+
+		for(long journalGeneration : listGenerations(JOURNAL_EXTENSION)) {
+			if(journalGeneration >= snapshotGeneration) {
+				journalDepth += LogJournal.replay(getJournalFile(journalGeneration), logStore);
+				generation = journalGeneration;
+			}
+		}
+
+		this.journal = new LogJournal(getJournalFile(generation));
+
+		loadLatency.recordElapsed(startNanos);
+
+		return logStore;
+	}
+
+	/**
+	 * Move all the files of the storage in a new recovery directory, e.g. after they can not be loaded.
+	 * The storage starts again empty without deleting the files, which can be inspected or restored.
+	 *
+	 * @return the recovery directory
+	 * @throws IOException
+	 */
+	public synchronized File moveToRecovery() throws IOException {
+
+		if(journal != null) {
+			journal.close();
+			journal = null;
+		}
+
+		File recoveryDirectory = new File(directory, baseName + ".recovery." + System.currentTimeMillis());
+
+		if(!recoveryDirectory.mkdir())
+			throw new IOException("Error Creating Recovery Directory: " + recoveryDirectory.getName());
+
+		String[] fileNames = directory.list();
+
+		if(fileNames != null)
+			for(String fileName : fileNames) {
+				File file = new File(directory, fileName);
+				boolean isStorageFile = fileName.startsWith(baseName + ".") || fileName.startsWith(baseName + "-") || fileName.equals(legacyFileName);
+				if(isStorageFile && file.isFile() && !file.renameTo(new File(recoveryDirectory, fileName)))
+					throw new IOException("Error Moving File to Recovery: " + fileName);
+			}
+
+		this.generation = 0;
+		this.journalDepth = 0;
+		this.snapshotSize = 0;
+		this.nextSegmentId = -1;
+
+		return recoveryDirectory;
+	}
+
+	/**
+	 * Append a batch of mutations on the current journal
+	 * @throws IOException
+	 */
+	public synchronized void append(LogJournal.Batch batch) throws IOException {
+
+		//The journal is not available if the loading has failed
+		if(journal == null)
+			journal = new LogJournal(getJournalFile(generation));
+
+		journal.append(batch);
+		journalDepth += batch.size();
+		bytesWritten.addAndGet((long)batch.size() * LogJournal.RECORD_SIZE);
+		isSyncPending = true;
+
+		long now = System.currentTimeMillis();
+
+		if(syncPolicy == SYNC_ALWAYS || (syncPolicy == SYNC_INTERVAL && now - lastSyncTime >= syncIntervalMs))
+			sync();
+	}
+
+	/**
+	 * Force the journal records appended so far on the storage device
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException {
+		if(isSyncPending && journal != null && syncPolicy != SYNC_NONE) {
+			journal.sync();
+			lastSyncTime = System.currentTimeMillis();
+		}
+		isSyncPending = false;
+	}
+
+	/**
+	 * @return true if there are appended records that the sync policy has not forced yet
+	 */
+	public synchronized boolean isSyncPending() {
+		return isSyncPending && syncPolicy != SYNC_NONE;
+	}
+
+	/**
+	 * Close the current journal (it is opened again by the next append)
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		sync();
+		if(journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	/**
+	 * @param journalDepth the number of records appended after the latest snapshot
+	 * @return true if the journal is long enough to be folded into a new snapshot
+	 */
+	public boolean isCompactionRequired(int journalDepth) {
+		return journalDepth >= Math.max(MIN_COMPACTION_RECORDS, (int)(snapshotSize * COMPACTION_RATIO));
+	}
+
+	/**
+	 * Close the current journal and start a new generation. The returned generation has to be
+	 * used to write the snapshot of the list as it is at the moment of this call.
+	 *
+	 * @return the generation of the new journal
+	 * @throws IOException
+	 */
+	public synchronized long startNewGeneration() throws IOException {
+
+		sync();
+
+		//The current journal is kept if the new one can not be opened, so the next appends do not fail
+		LogJournal newJournal = new LogJournal(getJournalFile(generation + 1));
+
+		if(journal != null)
+			journal.close();
+
+		journal = newJournal;
+		generation++;
+		journalDepth = 0;
+		return generation;
+	}
+
+	/**
+	 * Write the snapshot of a generation and remove the files that are no longer needed.
+	 * The changed segments are written first and then the manifest listing all of them: each file is
+	 * written on a temporary file and then renamed, so that a partially written snapshot is never
+	 * loaded. It can be called from a background thread.
+	 *
+	 * @param snapshotGeneration the generation returned by {@link #startNewGeneration()}
+	 * @param logSource the content of the store when the generation has been started
+	 * @return the stored content, read on demand from the segments
+	 * @throws IOException
+	 */
+	public LogSegmentSet writeSnapshot(long snapshotGeneration, LogSource logSource) throws IOException {
+
+		long startNanos = System.nanoTime();
+
+		List<LogSegment> segments = writeSegments(logSource, segmentPolicy, System.currentTimeMillis());
+
+		File manifestFile = getManifestFile(snapshotGeneration);
+		File tempManifestFile = new File(directory, manifestFile.getName() + TEMP_EXTENSION);
+
+		ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+		DataOutputStream manifestOutput = new DataOutputStream(manifest);
+		manifestOutput.writeInt(MANIFEST_MAGIC);
+		manifestOutput.writeShort(MANIFEST_VERSION);
+		manifestOutput.writeInt(segments.size());
+		for(LogSegment segment : segments)
+			segment.write(manifestOutput);
+		manifestOutput.writeInt(Crc32c.compute(manifest.toByteArray(), 0, manifest.size()));
+
+		FileOutputStream fos = new FileOutputStream(tempManifestFile);
+		try {
+			manifest.writeTo(fos);
+			syncFile(fos);
+			bytesWritten.addAndGet(manifest.size());
+		} finally {
+			fos.close();
+		}
+
+		synchronized (this) {
+
+			if(!tempManifestFile.renameTo(manifestFile))
+				throw new IOException("Error Renaming Manifest File: " + tempManifestFile.getName());
+
+			this.snapshotSize = logSource.size();
+
+			deleteStaleFiles(snapshotGeneration, segments);
+		}
+
+		saveLatency.recordElapsed(startNanos);
+		saveRecords.record(logSource.size());
+
+		return new LogSegmentSet(segments);
+	}
+
+	/*
+	 * Write the segments of the source. When the source is a PagedLogStore based on the segments of
+	 * the previous snapshot, the unchanged segments are reused and only the changed ranges are written.
+	 */
+	private List<LogSegment> writeSegments(LogSource logSource, LogSegmentPolicy policy, long now) throws IOException {
+
+		ArrayList<LogSegment> segments = new ArrayList<LogSegment>();
+
+		//Content already stored (e.g. after dropping the expired segments)
+		if(logSource instanceof LogSegmentSet) {
+			segments.addAll(((LogSegmentSet)logSource).getSegments());
+			return segments;
+		}
+
+		if(!(logSource instanceof PagedLogStore) || !(((PagedLogStore)logSource).getBase() instanceof LogSegmentSet)) {
+			writeRange(logSource, 0, logSource.size(), now, policy, segments);
+			return segments;
+		}
+
+		PagedLogStore pagedStore = (PagedLogStore)logSource;
+		LogSegmentSet segmentSet = (LogSegmentSet)pagedStore.getBase();
+		List<LogSegment> baseSegments = segmentSet.getSegments();
+
+		//Start and creation time of the range of the source that has to be written
+		int rangeStart = 0;
+		long rangeCreationTime = now;
+
+		int position = pagedStore.getHeadSize();
+
+		for(int i = 0; i < baseSegments.size(); i++) {
+
+			LogSegment segment = baseSegments.get(i);
+			int segmentStart = segmentSet.getSegmentStart(i);
+			int[] tombstones = pagedStore.getRemoved(segmentStart, segmentStart + segment.size());
+			int visibleLogs = segment.size() - tombstones.length;
+
+			//The segments with too many removed logs are rewritten, the ones at the ends receive the new logs until they are sealed
+			boolean isReused = visibleLogs > 0 && !policy.isCompactionRequired(segment, tombstones.length);
+			boolean isActiveHead = i == 0 && pagedStore.getHeadSize() > 0;
+			boolean isActiveTail = i == baseSegments.size() - 1 && pagedStore.getTailSize() > 0;
+
+			if(isReused && (isActiveHead || isActiveTail) && !policy.isSealed(segment, now))
+				isReused = false;
+
+			if(isReused) {
+				writeRange(logSource, rangeStart, position - rangeStart, rangeCreationTime, policy, segments);
+				segments.add(segment.withTombstones(tombstones));
+				rangeStart = position + visibleLogs;
+				rangeCreationTime = now;
+			}
+			else if(visibleLogs > 0)
+				rangeCreationTime = Math.min(rangeCreationTime, segment.getCreationTime());
+
+			position += visibleLogs;
+		}
+
+		writeRange(logSource, rangeStart, logSource.size() - rangeStart, rangeCreationTime, policy, segments);
+
+		return segments;
+	}
+
+	/*
+	 * Write a range of the source as new segments of at most maxSegmentRecords logs
+	 */
+	private void writeRange(LogSource logSource, int position, int count, long creationTime, LogSegmentPolicy policy, List<LogSegment> segments) throws IOException {
+
+		while(count > 0) {
+			int segmentCount = Math.min(count, policy.getMaxSegmentRecords());
+			segments.add(writeSegment(new SourceRange(logSource, position, segmentCount), creationTime));
+			position += segmentCount;
+			count -= segmentCount;
+		}
+	}
+
+	private LogSegment writeSegment(LogSource logSource, long creationTime) throws IOException {
+
+		if(nextSegmentId < 0)
+			nextSegmentId = findNextSegmentId();
+
+		long segmentId = nextSegmentId++;
+
+		File snapshotFile = getSegmentFile(segmentId, SNAPSHOT_EXTENSION);
+		File tempFile = new File(directory, snapshotFile.getName() + TEMP_EXTENSION);
+
+		File indexFile = getSegmentFile(segmentId, INDEX_EXTENSION);
+		File tempIndexFile = new File(directory, indexFile.getName() + TEMP_EXTENSION);
+
+		File aggregatesFile = getSegmentFile(segmentId, AGGREGATES_EXTENSION);
+		File tempAggregatesFile = new File(directory, aggregatesFile.getName() + TEMP_EXTENSION);
+
+		File overviewFile = getSegmentFile(segmentId, OVERVIEW_EXTENSION);
+		File tempOverviewFile = new File(directory, overviewFile.getName() + TEMP_EXTENSION);
+
+		LogTimeIndex timeIndex = null;
+		LogAggregates aggregates = new LogAggregates();
+		LogOverview overview = new LogOverview();
+
+		FileOutputStream fos = new FileOutputStream(tempFile);
+		try {
+			timeIndex = LogSnapshotFormat.write(fos.getChannel(), logSource, aggregates, overview);
+			syncFile(fos);
+		} finally {
+			fos.close();
+		}
+
+		fos = new FileOutputStream(tempIndexFile);
+		try {
+			timeIndex.write(fos.getChannel());
+			syncFile(fos);
+		} finally {
+			fos.close();
+		}
+
+		fos = new FileOutputStream(tempAggregatesFile);
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+		try {
+			aggregates.write(dos);
+			dos.flush();
+			syncFile(fos);
+		} finally {
+			dos.close();
+		}
+
+		fos = new FileOutputStream(tempOverviewFile);
+		dos = new DataOutputStream(new BufferedOutputStream(fos));
+		try {
+			overview.write(dos);
+			dos.flush();
+			syncFile(fos);
+		} finally {
+			dos.close();
+		}
+
+		//The sidecar files are renamed first: a segment is never available without them
+		if(!tempIndexFile.renameTo(indexFile))
+			throw new IOException("Error Renaming Index File: " + tempIndexFile.getName());
+
+		if(!tempAggregatesFile.renameTo(aggregatesFile))
+			throw new IOException("Error Renaming Aggregates File: " + tempAggregatesFile.getName());
+
+		if(!tempOverviewFile.renameTo(overviewFile))
+			throw new IOException("Error Renaming Overview File: " + tempOverviewFile.getName());
+
+		if(!tempFile.renameTo(snapshotFile))
+			throw new IOException("Error Renaming Segment File: " + tempFile.getName());
+
+		LogSnapshotReader reader = new LogSnapshotReader(snapshotFile, SEGMENT_CACHED_PAGES);
+		reader.setTimeIndex(timeIndex);
+		reader.setAggregatesFile(aggregatesFile);
+		reader.setOverviewFile(overviewFile);
+
+		long byteSize = snapshotFile.length() + indexFile.length() + aggregatesFile.length() + overviewFile.length();
+		bytesWritten.addAndGet(byteSize);
+
+		return new LogSegment(segmentId, reader, timeIndex.getMinimumTimestamp(), timeIndex.getMaximumTimestamp(), byteSize, creationTime);
+	}
+
+	/*
+	 * Force a written file on the storage device before it is renamed
+	 */
+	private void syncFile(FileOutputStream fos) throws IOException {
+		if(syncPolicy != SYNC_NONE)
+			fos.getFD().sync();
+	}
+
+	/*
+	 * Open the segments listed by a manifest
+	 */
+	private LogSegmentSet readManifest(File manifestFile) throws IOException {
+
+		ByteBuffer buffer = mapFile(manifestFile);
+		byte[] manifest = new byte[buffer.remaining()];
+		buffer.get(manifest);
+
+		if(manifest.length < 4 + 2 + 4 + 4)
+			throw new IOException("Truncated Manifest File: " + manifestFile.getName());
+
+		int checksum = ByteBuffer.wrap(manifest, manifest.length - 4, 4).getInt();
+
+		if(Crc32c.compute(manifest, 0, manifest.length - 4) != checksum)
+			throw new IOException("Invalid Manifest Checksum: " + manifestFile.getName());
+
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(manifest, 0, manifest.length - 4));
+
+		try {
+
+			if(dis.readInt() != MANIFEST_MAGIC)
+				throw new IOException("Invalid Manifest Header: " + manifestFile.getName());
+
+			short version = dis.readShort();
+
+			if(version != MANIFEST_VERSION)
+				throw new IOException("Unsupported Manifest Version: " + version);
+
+			int segmentCount = dis.readInt();
+
+			if(segmentCount < 0)
+				throw new IOException("Invalid Manifest Segments: " + segmentCount);
+
+			ArrayList<LogSegment> segments = new ArrayList<LogSegment>(segmentCount);
+
+			for(int i = 0; i < segmentCount; i++) {
+
+				LogSegment.Entry entry = LogSegment.Entry.read(dis);
+				LogSnapshotReader reader = openSnapshot(getSegmentFile(entry.id, SNAPSHOT_EXTENSION), SEGMENT_CACHED_PAGES);
+
+				if(reader.size() != entry.size)
+					throw new IOException("Invalid Segment Size: " + reader.getFile().getName());
+
+				segments.add(new LogSegment(entry.id, reader, entry.minimumTimestamp, entry.maximumTimestamp, entry.byteSize, entry.creationTime)
+						.withTombstones(entry.tombstones));
+			}
+
+			return new LogSegmentSet(segments);
+
+		} finally {
+			dis.close();
+		}
+	}
+
+	/**
+	 * Open a snapshot file with a paged reader. The time index is loaded from the index file written
+	 * with the snapshot (if it is not available or valid it will be built on demand) while the
+	 * aggregates and overview files are read only when the aggregates or the overview are requested.
+	 *
+	 * @param snapshotFile the file returned by {@link #writeSnapshot(long, LogSource)}
+	 * @return the reader of the snapshot
+	 * @throws IOException
+	 */
+	public LogSnapshotReader openSnapshot(File snapshotFile) throws IOException {
+		return openSnapshot(snapshotFile, LogSnapshotReader.DEFAULT_CACHED_PAGES);
+	}
+
+	private LogSnapshotReader openSnapshot(File snapshotFile, int maxCachedPages) throws IOException {
+
+		LogSnapshotReader reader = new LogSnapshotReader(snapshotFile, maxCachedPages);
+
+		String snapshotName = snapshotFile.getName();
+
+		if(snapshotName.endsWith(SNAPSHOT_EXTENSION)) {
+
+			String generationName = snapshotName.substring(0, snapshotName.length() - SNAPSHOT_EXTENSION.length());
+			File indexFile = new File(snapshotFile.getParentFile(), generationName + INDEX_EXTENSION);
+			File aggregatesFile = new File(snapshotFile.getParentFile(), generationName + AGGREGATES_EXTENSION);
+			File overviewFile = new File(snapshotFile.getParentFile(), generationName + OVERVIEW_EXTENSION);
+
+			if(aggregatesFile.exists())
+				reader.setAggregatesFile(aggregatesFile);
+
+			if(overviewFile.exists())
+				reader.setOverviewFile(overviewFile);
+
+			if(indexFile.exists()) {
+				try {
+					reader.setTimeIndex(LogTimeIndex.read(mapFile(indexFile)));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		return reader;
+	}
+
+	/**
+	 * @return the number of records appended after the latest snapshot
+	 */
+	public synchronized int getJournalDepth() {
+		return journalDepth;
+	}
+
+	/**
+	 * Map the whole file in memory (read only). The mapping stays valid after the channel is closed.
+	 */
+	static MappedByteBuffer mapFile(File file) throws IOException {
+
+		FileInputStream fis = new FileInputStream(file);
+		FileChannel channel = fis.getChannel();
+
+		try {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+			fis.close();
+		}
+	}
+
+	private ArrayLogStore readJsonSnapshot(File file) throws IOException {
+
+		Type collectionType = new TypeToken<Collection<LogDescriptor>>(){}.getType();
+
+		Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+		try {
+			Collection<LogDescriptor> dLogList = gson.fromJson(reader, collectionType);
+
+			ArrayLogStore logStore = new ArrayLogStore(dLogList != null ? dLogList.size() : 0);
+
+			if(dLogList != null)
+				for(LogDescriptor log : dLogList)
+					logStore.add(log.getTimestamp(), log.getValue());
+
+			return logStore;
+
+		} catch (RuntimeException e) {
+			throw new IOException("Error Parsing Snapshot File: " + file.getName(), e);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void deleteStaleFiles(long snapshotGeneration, List<LogSegment> segments) {
+
+		for(long staleGeneration : listGenerations(MANIFEST_EXTENSION))
+			if(staleGeneration < snapshotGeneration)
+				getManifestFile(staleGeneration).delete();
+
+		for(long staleGeneration : listGenerations(JOURNAL_EXTENSION))
+			if(staleGeneration < snapshotGeneration)
+				getJournalFile(staleGeneration).delete();
+
+		File legacyFile = new File(directory, legacyFileName);
+		if(legacyFile.exists())
+			legacyFile.delete();
+
+		//Segments not listed by the new manifest (rewritten or dropped by the retention)
+		HashSet<Long> segmentIds = new HashSet<Long>();
+		for(LogSegment segment : segments)
+			segmentIds.add(segment.getId());
+
+		String[] fileNames = directory.list();
+
+		if(fileNames != null)
+			for(String fileName : fileNames) {
+				long segmentId = parseSegmentId(fileName);
+				if(segmentId >= 0 && !segmentIds.contains(segmentId))
+					new File(directory, fileName).delete();
+			}
+	}
+
+	/**
+	 * @return the id of a segment file (including its index, aggregates, overview and temporary files) or -1
+	 */
+	private long parseSegmentId(String fileName) {
+
+		String prefix = baseName + "-";
+
+		if(!fileName.startsWith(prefix))
+			return -1;
+
+		int end = fileName.indexOf('.', prefix.length());
+
+		if(end < 0)
+			return -1;
+
+		try {
+			return Long.parseLong(fileName.substring(prefix.length(), end));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private long findNextSegmentId() {
+
+		long maxSegmentId = -1;
+		String[] fileNames = directory.list();
+
+		if(fileNames != null)
+			for(String fileName : fileNames)
+				maxSegmentId = Math.max(maxSegmentId, parseSegmentId(fileName));
+
+		return maxSegmentId + 1;
+	}
+
+	/**
+	 * List the generations of the available files with the target extension
+	 * @param extension the extension of the files (e.g. MANIFEST_EXTENSION or JOURNAL_EXTENSION)
+	 * @return the sorted array of the generations
+	 */
+	private long[] listGenerations(String extension) {
+
+		String[] fileNames = directory.list();
+
+		if(fileNames == null)
+			return new long[0];
+
+		String prefix = baseName + ".";
+		long[] generations = new long[fileNames.length];
+		int count = 0;
+
+		for(String fileName : fileNames) {
+			if(fileName.startsWith(prefix) && fileName.endsWith(extension)) {
+				try {
+					generations[count] = Long.parseLong(fileName.substring(prefix.length(), fileName.length() - extension.length()));
+					count++;
+				} catch (NumberFormatException e) {
+					//Not a generation file
+				}
+			}
+		}
+
+		long[] result = Arrays.copyOf(generations, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private File getManifestFile(long generation) {
+		return new File(directory, baseName + "." + generation + MANIFEST_EXTENSION);
+	}
+
+	private File getSegmentFile(long segmentId, String extension) {
+		return new File(directory, baseName + "-" + segmentId + extension);
+	}
+
+	private File getJournalFile(long generation) {
+		return new File(directory, baseName + "." + generation + JOURNAL_EXTENSION);
+	}
+
+	/**
+	 * Range of positions of a source seen as a LogSource
+	 */
+	private static class SourceRange implements LogSource {
+
+		private LogSource logSource = null;
+
+		private int start = 0;
+
+		private int size = 0;
+
+		private SourceRange(LogSource logSource, int start, int size) {
+			this.logSource = logSource;
+			this.start = start;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public long getTimestamp(int position) {
+			checkPosition(position);
+			return logSource.getTimestamp(start + position);
+		}
+
+		@Override
+		public double getValue(int position) {
+			checkPosition(position);
+			return logSource.getValue(start + position);
+		}
+
+		@Override
+		public void getRange(int position, int count, long[] timestamps, double[] values, int offset) {
+			if(position < 0 || count < 0 || position + count > size)
+				throw new IndexOutOfBoundsException("Range: " + position + "+" + count + " Size: " + size);
+			logSource.getRange(start + position, count, timestamps, values, offset);
+		}
+
+		private void checkPosition(int position) {
+			if(position < 0 || position >= size)
+				throw new IndexOutOfBoundsException("Position: " + position + " Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Positional collection of logs stored as primitive values.
+ * Timestamps and values are accessed through their position without creating a LogDescriptor
+ * object for each record.
+ */
+public interface LogStore extends LogSource {
+
+	/**
+	 * Append a log at the end of the store
+	 */
+	void add(long timestamp, double value);
+
+	/**
+	 * Insert a log at the beginning of the store (position 0)
+	 */
+	void addToHead(long timestamp, double value);
+
+	/**
+	 * Remove the log at the target position
+	 */
+	void remove(int position);
+
+	/**
+	 * @return the position of the first log with the same timestamp and value or -1
+	 */
+	int indexOf(long timestamp, double value);
+
+	/**
+	 * @return an independent copy of the store content
+	 */
+	LogStore copy();
+}
@@ -0,0 +1,158 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Cache of the text shown for each log by the history list.
+ *
+ * The cache is direct mapped: a log is stored in the slot selected by the hash of its timestamp and
+ * value, replacing the previous one. The text of a slot is formatted in a char array that is reused
+ * by the next logs stored in the same slot, so once the slots have been filled a lookup or a miss
+ * does not allocate any object. The text is copied in a buffer of the caller (e.g. a view holder)
+ * since the slots are overwritten while the caller is still showing it.
+ *
+ * The timestamps are rendered by the display LogTimestampFormatter of the calling thread and the
+ * cached texts are discarded when its settings change.
+ *
+ * It is not thread safe: it is used only by the Main Thread.
+ */
+public class LogTextCache {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/*
+	 * Initial length of the text of a slot (date, time and double value with separators)
+	 */
+	private static final int INITIAL_TEXT_LENGTH = 64;
+
+	private int mask = 0;
+
+	private long[] timestamps = null;
+
+	private long[] valueBits = null;
+
+	private boolean[] isFilled = null;
+
+	private char[][] texts = null;
+
+	private int[] textLengths = null;
+
+	private StringBuilder builder = new StringBuilder(INITIAL_TEXT_LENGTH);
+
+	private LogTimestampFormatter timestampFormatter = null;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	public LogTextCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the number of slots (rounded up to a power of 2). It should be larger than the number of visible rows.
+	 */
+	public LogTextCache(int capacity) {
+
+		int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+
+		this.mask = slots - 1;
+		this.timestamps = new long[slots];
+		this.valueBits = new long[slots];
+		this.isFilled = new boolean[slots];
+		this.texts = new char[slots][];
+		this.textLengths = new int[slots];
+	}
+
+	/**
+	 * Copy the text of a log in the target buffer, formatting it only if it is not cached
+	 * @param buffer the destination of the text
+	 * @return the length of the text, or the required length (greater than the buffer length) if the buffer is too small
+	 */
+	public int getText(long timestamp, double value, char[] buffer) {
+
+		int slot = getSlot(timestamp, value);
+		int length = textLengths[slot];
+
+		if(length > buffer.length)
+			return length;
+
+		System.arraycopy(texts[slot], 0, buffer, 0, length);
+		return length;
+	}
+
+	/**
+	 * Discard the cached texts (e.g. when the format changes)
+	 */
+	public void clear() {
+		for(int slot = 0; slot <= mask; slot++)
+			isFilled[slot] = false;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/*
+	 * Slot containing the text of the log (formatted now if it was not cached)
+	 */
+	private int getSlot(long timestamp, double value) {
+
+		LogTimestampFormatter formatter = LogTimestampFormatter.getDisplayInstance();
+
+		if(formatter != timestampFormatter) {
+			clear();
+			timestampFormatter = formatter;
+		}
+
+		long bits = Double.doubleToRawLongBits(value);
+		int slot = hash(timestamp, bits) & mask;
+
+		if(isFilled[slot] && timestamps[slot] == timestamp && valueBits[slot] == bits) {
+			hits++;
+			return slot;
+		}
+
+		misses++;
+
+		builder.setLength(0);
+		format(timestamp, value, builder);
+
+		int length = builder.length();
+		if(texts[slot] == null || texts[slot].length < length)
+			texts[slot] = new char[Math.max(length, INITIAL_TEXT_LENGTH)];
+
+		builder.getChars(0, length, texts[slot], 0);
+		textLengths[slot] = length;
+		timestamps[slot] = timestamp;
+		valueBits[slot] = bits;
+		isFilled[slot] = true;
+
+		return slot;
+	}
+
+	/*
+	 * Same text of "[" + date and time + "]: " + value without the intermediate Strings
+	 */
+	private void format(long timestamp, double value, StringBuilder builder) {
+		builder.append('[');
+		timestampFormatter.format(timestamp, builder);
+		builder.append("]: ").append(value);
+	}
+
+	private static int hash(long timestamp, long bits) {
+		long hash = (timestamp ^ (bits * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "LogTextCache{" +
+				"slots=" + (mask + 1) +
+				", hits=" + hits +
+				", misses=" + misses +
+				'}';
+	}
+}
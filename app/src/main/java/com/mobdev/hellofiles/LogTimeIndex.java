@@ -0,0 +1,415 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Sparse index over the timestamps of a LogSource used to answer time-range queries.
+ *
+ * The source is split in blocks of blockSize positions (the same blocks of the snapshot file) and
+ * only the minimum and maximum timestamp of each block are stored. The index also records if the
+ * whole sequence is sorted: logs appended with increasing timestamps are ascending, while logs
+ * inserted at the head (e.g. with addLogToHead) are descending. A sorted source is searched with a
+ * binary search over the blocks followed by a binary search inside a single block, so only
+ * O(log n) timestamps are read. An unsorted source is scanned reading only the blocks whose
+ * timestamp range overlaps the query.
+ *
+ * The index is stored in a file next to the snapshot:
+ * MAGIC (int) | VERSION (short) | ORDER (short) | Record Count (int) | Block Size (int) |
+ * (Minimum Timestamp (long) | Maximum Timestamp (long)) for each block
+ */
+public class LogTimeIndex {
+
+	public static final int MAGIC = 0x48464C49; // "HFLI"
+
+	public static final short VERSION = 1;
+
+	public static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4;
+
+	public static final short ORDER_UNSORTED = 0;
+
+	public static final short ORDER_ASCENDING = 1;
+
+	public static final short ORDER_DESCENDING = 2;
+
+	private int blockSize = 0;
+
+	private int size = 0;
+
+	private int blockCount = 0;
+
+	private long[] blockMinimums = null;
+
+	private long[] blockMaximums = null;
+
+	/*
+	 * Order of the indexed timestamps, updated while the blocks are added
+	 */
+	private boolean isAscending = true;
+
+	private boolean isDescending = true;
+
+	private long lastTimestamp = 0;
+
+	/**
+	 * Create an empty index. The blocks are added with {@link #addBlock(long[], int)}.
+	 * @param blockSize the number of positions of each block
+	 */
+	LogTimeIndex(int blockSize) {
+		this.blockSize = blockSize;
+		this.blockMinimums = new long[16];
+		this.blockMaximums = new long[16];
+	}
+
+	/**
+	 * Build the index of a source reading it a block at a time
+	 * @param logSource the source to index
+	 * @return the index of the source
+	 */
+	public static LogTimeIndex build(LogSource logSource) {
+
+		LogTimeIndex index = new LogTimeIndex(LogSnapshotFormat.BLOCK_SIZE);
+
+		int size = logSource.size();
+		long[] timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+		double[] values = new double[LogSnapshotFormat.BLOCK_SIZE];
+
+		for(int blockStart = 0; blockStart < size; blockStart += LogSnapshotFormat.BLOCK_SIZE) {
+			int blockRecords = Math.min(LogSnapshotFormat.BLOCK_SIZE, size - blockStart);
+			logSource.getRange(blockStart, blockRecords, timestamps, values, 0);
+			index.addBlock(timestamps, blockRecords);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Add the timestamps of the next block (only the last block can be smaller than the block size)
+	 */
+	void addBlock(long[] timestamps, int count) {
+
+		if(count == 0)
+			return;
+
+		if(blockCount == blockMinimums.length) {
+			blockMinimums = Arrays.copyOf(blockMinimums, blockCount * 2);
+			blockMaximums = Arrays.copyOf(blockMaximums, blockCount * 2);
+		}
+
+		long minimum = timestamps[0];
+		long maximum = timestamps[0];
+		long previous = size > 0 ? lastTimestamp : timestamps[0];
+
+		for(int i = 0; i < count; i++) {
+
+			long timestamp = timestamps[i];
+
+			if(timestamp < minimum)
+				minimum = timestamp;
+			if(timestamp > maximum)
+				maximum = timestamp;
+
+			if(timestamp < previous)
+				isAscending = false;
+			else if(timestamp > previous)
+				isDescending = false;
+
+			previous = timestamp;
+		}
+
+		blockMinimums[blockCount] = minimum;
+		blockMaximums[blockCount] = maximum;
+		blockCount++;
+		size += count;
+		lastTimestamp = previous;
+	}
+
+	/**
+	 * @return the number of indexed positions
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @return the lowest indexed timestamp (Long.MAX_VALUE if the index is empty)
+	 */
+	public long getMinimumTimestamp() {
+		long minimum = Long.MAX_VALUE;
+		for(int i = 0; i < blockCount; i++)
+			minimum = Math.min(minimum, blockMinimums[i]);
+		return minimum;
+	}
+
+	/**
+	 * @return the highest indexed timestamp (Long.MIN_VALUE if the index is empty)
+	 */
+	public long getMaximumTimestamp() {
+		long maximum = Long.MIN_VALUE;
+		for(int i = 0; i < blockCount; i++)
+			maximum = Math.max(maximum, blockMaximums[i]);
+		return maximum;
+	}
+
+	/**
+	 * @return ORDER_ASCENDING, ORDER_DESCENDING or ORDER_UNSORTED
+	 */
+	public short getOrder() {
+		if(isAscending)
+			return ORDER_ASCENDING;
+		if(isDescending)
+			return ORDER_DESCENDING;
+		return ORDER_UNSORTED;
+	}
+
+	/**
+	 * Select the logs of the indexed source with fromTimestamp <= timestamp <= toTimestamp
+	 * @param logSource the indexed source
+	 * @param fromTimestamp the first timestamp of the range (inclusive)
+	 * @param toTimestamp the last timestamp of the range (inclusive)
+	 * @return the cursor over the selected logs, sorted by position
+	 */
+	public LogCursor query(LogSource logSource, long fromTimestamp, long toTimestamp) {
+
+		if(logSource.size() != size)
+			throw new IllegalArgumentException("Index Size: " + size + " Source Size: " + logSource.size());
+
+		if(fromTimestamp > toTimestamp || size == 0)
+			return new BlockCursor(logSource, fromTimestamp, toTimestamp, 0, 0);
+
+		switch (getOrder()) {
+			case ORDER_ASCENDING:
+				return new BlockCursor(logSource, fromTimestamp, toTimestamp,
+						search(logSource, blockMaximums, true, fromTimestamp, false),
+						search(logSource, blockMaximums, true, toTimestamp, true));
+			case ORDER_DESCENDING:
+				return new BlockCursor(logSource, fromTimestamp, toTimestamp,
+						search(logSource, blockMinimums, false, toTimestamp, false),
+						search(logSource, blockMinimums, false, fromTimestamp, true));
+			default:
+				return new BlockCursor(logSource, fromTimestamp, toTimestamp, 0, size);
+		}
+	}
+
+	/*
+	 * First position after the timestamp in the sorted source (at the timestamp if exclusive is
+	 * false). The blocks are searched through the timestamp of their last position (the maximum
+	 * for an ascending source and the minimum for a descending one), then the block is searched
+	 * reading the source.
+	 */
+	private int search(LogSource logSource, long[] blockLastTimestamps, boolean isAscending, long timestamp, boolean exclusive) {
+
+		int low = 0;
+		int high = blockCount;
+
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(isAfter(blockLastTimestamps[middle], isAscending, timestamp, exclusive))
+				high = middle;
+			else
+				low = middle + 1;
+		}
+
+		if(low == blockCount)
+			return size;
+
+		low = low * blockSize;
+		high = Math.min(low + blockSize, size) - 1;
+
+		//The last position of the block is known to be after the timestamp
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(isAfter(logSource.getTimestamp(middle), isAscending, timestamp, exclusive))
+				high = middle;
+			else
+				low = middle + 1;
+		}
+
+		return low;
+	}
+
+	private static boolean isAfter(long value, boolean isAscending, long timestamp, boolean exclusive) {
+		if(isAscending)
+			return exclusive ? value > timestamp : value >= timestamp;
+		return exclusive ? value < timestamp : value <= timestamp;
+	}
+
+	/**
+	 * Write the index on the channel
+	 * @param channel the output channel positioned at the beginning of the file
+	 * @throws IOException
+	 */
+	public void write(FileChannel channel) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + blockCount * 16);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort(getOrder());
+		buffer.putInt(size);
+		buffer.putInt(blockSize);
+
+		for(int i = 0; i < blockCount; i++) {
+			buffer.putLong(blockMinimums[i]);
+			buffer.putLong(blockMaximums[i]);
+		}
+
+		buffer.flip();
+
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Read an index written with {@link #write(FileChannel)}
+	 * @param buffer the buffer of the whole file
+	 * @return the index
+	 * @throws IOException if the file is not a valid index
+	 */
+	public static LogTimeIndex read(ByteBuffer buffer) throws IOException {
+
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("Invalid Time Index Header !");
+
+		short version = buffer.getShort(4);
+
+		if(version != VERSION)
+			throw new IOException("Unsupported Time Index Version: " + version);
+
+		short order = buffer.getShort(6);
+		int size = buffer.getInt(8);
+		int blockSize = buffer.getInt(12);
+
+		if(size < 0 || blockSize <= 0)
+			throw new IOException("Invalid Time Index Header !");
+
+		int blockCount = (int)(((long)size + blockSize - 1) / blockSize);
+
+		if(buffer.limit() < HEADER_SIZE + (long)blockCount * 16)
+			throw new IOException("Truncated Time Index !");
+
+		LogTimeIndex index = new LogTimeIndex(blockSize);
+		index.size = size;
+		index.blockCount = blockCount;
+		index.blockMinimums = new long[Math.max(blockCount, 1)];
+		index.blockMaximums = new long[Math.max(blockCount, 1)];
+		index.isAscending = order == ORDER_ASCENDING;
+		index.isDescending = order == ORDER_DESCENDING;
+
+		for(int i = 0; i < blockCount; i++) {
+			index.blockMinimums[i] = buffer.getLong(HEADER_SIZE + i * 16);
+			index.blockMaximums[i] = buffer.getLong(HEADER_SIZE + i * 16 + 8);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Cursor over the positions [start, end) of the source. The positions are read a block at a
+	 * time and the blocks whose timestamp range does not overlap the query are skipped.
+	 */
+	private class BlockCursor implements LogCursor {
+
+		private LogSource logSource = null;
+
+		private long fromTimestamp = 0;
+
+		private long toTimestamp = 0;
+
+		private int end = 0;
+
+		private int position = -1;
+
+		/*
+		 * Chunk of the source read with a single getRange and its first position
+		 */
+		private long[] timestamps = null;
+
+		private double[] values = null;
+
+		private int chunkStart = 0;
+
+		private int chunkEnd = 0;
+
+		private BlockCursor(LogSource logSource, long fromTimestamp, long toTimestamp, int start, int end) {
+			this.logSource = logSource;
+			this.fromTimestamp = fromTimestamp;
+			this.toTimestamp = toTimestamp;
+			this.end = end;
+			this.position = start - 1;
+			this.chunkStart = start;
+			this.chunkEnd = start;
+		}
+
+		@Override
+		public boolean moveToNext() {
+
+			while(++position < end) {
+
+				if(position >= chunkEnd && !readChunk())
+					return false;
+
+				long timestamp = timestamps[position - chunkStart];
+
+				if(timestamp >= fromTimestamp && timestamp <= toTimestamp)
+					return true;
+			}
+
+			position = end;
+			return false;
+		}
+
+		/*
+		 * Read the chunk of the next block overlapping the query, starting from the current position
+		 */
+		private boolean readChunk() {
+
+			int block = position / blockSize;
+
+			while(block < blockCount && (blockMinimums[block] > toTimestamp || blockMaximums[block] < fromTimestamp))
+				block++;
+
+			if(block >= blockCount) {
+				position = end;
+				return false;
+			}
+
+			position = Math.max(position, block * blockSize);
+
+			if(position >= end) {
+				position = end;
+				return false;
+			}
+
+			if(timestamps == null) {
+				timestamps = new long[blockSize];
+				values = new double[blockSize];
+			}
+
+			chunkStart = position;
+			chunkEnd = Math.min((block + 1) * blockSize, end);
+			logSource.getRange(chunkStart, chunkEnd - chunkStart, timestamps, values, 0);
+			return true;
+		}
+
+		@Override
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamps[position - chunkStart];
+		}
+
+		@Override
+		public double getValue() {
+			return values[position - chunkStart];
+		}
+	}
+}
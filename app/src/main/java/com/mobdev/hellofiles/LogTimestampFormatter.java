@@ -0,0 +1,240 @@
+package com.mobdev.hellofiles;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Human-readable rendering of the log timestamps (date followed by HH:mm:ss.SSS).
+ *
+ * The date part is formatted with a DateFormat only once per day and kept in a small cache of
+ * prefixes, while the time of day is written digit by digit from the local milliseconds. The offset
+ * of the time zone is computed once per day too (unless the day contains a daylight saving
+ * transition), so formatting consecutive timestamps costs a few comparisons and character appends
+ * and does not allocate any object.
+ *
+ * An instance is not thread safe: the list uses the thread-local instance returned by
+ * {@link #getDisplayInstance()} and each export creates its own one.
+ */
+public class LogTimestampFormatter {
+
+	private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+	/*
+	 * Number of cached day prefixes (power of 2)
+	 */
+	private static final int CACHED_DAYS = 16;
+
+	private static volatile DisplaySettings displaySettings = new DisplaySettings(Locale.getDefault(), TimeZone.getDefault());
+
+	private static final ThreadLocal<LogTimestampFormatter> displayInstance = new ThreadLocal<LogTimestampFormatter>();
+
+	private DisplaySettings settings = null;
+
+	private DateFormat dayFormat = null;
+
+	private TimeZone timeZone = null;
+
+	private String separator = null;
+
+	private String suffix = null;
+
+	private Date date = new Date();
+
+	/*
+	 * Cached days: local epoch day, prefix and offset valid in [dayStart, dayEnd) (UTC milliseconds)
+	 */
+	private long[] days = new long[CACHED_DAYS];
+
+	private char[][] prefixes = new char[CACHED_DAYS][];
+
+	private int[] prefixLengths = new int[CACHED_DAYS];
+
+	private long[] dayStarts = new long[CACHED_DAYS];
+
+	private long[] dayEnds = new long[CACHED_DAYS];
+
+	private int[] dayOffsets = new int[CACHED_DAYS];
+
+	/*
+	 * Slot of the day of the latest timestamp with a constant offset (-1 if none)
+	 */
+	private int lastSlot = -1;
+
+	/**
+	 * Immutable locale and time zone of the timestamps shown by the UI
+	 */
+	private static class DisplaySettings {
+
+		private Locale locale = null;
+
+		private TimeZone timeZone = null;
+
+		private DisplaySettings(Locale locale, TimeZone timeZone) {
+			this.locale = locale;
+			this.timeZone = (TimeZone)timeZone.clone();
+		}
+	}
+
+	/**
+	 * Formatter with the medium date style of the locale (e.g. "Mar 20, 2020 14:05:09.123")
+	 */
+	public LogTimestampFormatter(Locale locale, TimeZone timeZone) {
+		this(DateFormat.getDateInstance(DateFormat.MEDIUM, locale), timeZone, " ", "");
+	}
+
+	/**
+	 * @param dayFormat the format of the date part (it is owned by the formatter)
+	 * @param timeZone the time zone of the date and of the time of day
+	 * @param separator the text between the date and the time of day
+	 * @param suffix the text after the time of day
+	 */
+	public LogTimestampFormatter(DateFormat dayFormat, TimeZone timeZone, String separator, String suffix) {
+
+		this.timeZone = (TimeZone)timeZone.clone();
+		this.dayFormat = dayFormat;
+		this.dayFormat.setTimeZone(this.timeZone);
+		this.separator = separator;
+		this.suffix = suffix;
+
+		for(int slot = 0; slot < CACHED_DAYS; slot++)
+			days[slot] = Long.MIN_VALUE;
+	}
+
+	/**
+	 * ISO 8601 formatter in UTC used by the exports (e.g. "2020-03-20T14:05:09.123Z")
+	 */
+	public static LogTimestampFormatter createIso8601() {
+		return new LogTimestampFormatter(new SimpleDateFormat("yyyy-MM-dd", Locale.ROOT), TimeZone.getTimeZone("UTC"), "T", "Z");
+	}
+
+	/**
+	 * Set the locale and the time zone of the timestamps shown by the UI
+	 */
+	public static void setDisplaySettings(Locale locale, TimeZone timeZone) {
+		displaySettings = new DisplaySettings(locale, timeZone);
+	}
+
+	public static Locale getDisplayLocale() {
+		return displaySettings.locale;
+	}
+
+	public static TimeZone getDisplayTimeZone() {
+		return (TimeZone)displaySettings.timeZone.clone();
+	}
+
+	/**
+	 * @return the formatter of the calling thread with the current display settings (a new one is
+	 * created when the settings change, so the caller can compare it with the previous one)
+	 */
+	public static LogTimestampFormatter getDisplayInstance() {
+
+		DisplaySettings settings = displaySettings;
+		LogTimestampFormatter formatter = displayInstance.get();
+
+		if(formatter == null || formatter.settings != settings) {
+			formatter = new LogTimestampFormatter(settings.locale, settings.timeZone);
+			formatter.settings = settings;
+			displayInstance.set(formatter);
+		}
+
+		return formatter;
+	}
+
+	public TimeZone getTimeZone() {
+		return (TimeZone)timeZone.clone();
+	}
+
+	/**
+	 * Append the formatted timestamp to the builder
+	 */
+	public void format(long timestamp, StringBuilder builder) {
+
+		int slot = lastSlot;
+		int offset = 0;
+
+		if(slot >= 0 && timestamp >= dayStarts[slot] && timestamp < dayEnds[slot])
+			offset = dayOffsets[slot];
+		else {
+			offset = timeZone.getOffset(timestamp);
+			slot = getDaySlot(timestamp, offset);
+		}
+
+		long localTime = timestamp + offset;
+		int timeOfDay = (int)(localTime - floorDiv(localTime, DAY_MS) * DAY_MS);
+
+		builder.append(prefixes[slot], 0, prefixLengths[slot]);
+
+		int hours = timeOfDay / 3600000;
+		int minutes = (timeOfDay / 60000) % 60;
+		int seconds = (timeOfDay / 1000) % 60;
+		int millis = timeOfDay % 1000;
+
+		appendTwoDigits(hours, builder);
+		builder.append(':');
+		appendTwoDigits(minutes, builder);
+		builder.append(':');
+		appendTwoDigits(seconds, builder);
+		builder.append('.');
+		builder.append((char)('0' + millis / 100));
+		appendTwoDigits(millis % 100, builder);
+
+		if(suffix.length() > 0)
+			builder.append(suffix);
+	}
+
+	/**
+	 * @return the formatted timestamp in a new String
+	 */
+	public String format(long timestamp) {
+		StringBuilder builder = new StringBuilder(32);
+		format(timestamp, builder);
+		return builder.toString();
+	}
+
+	/*
+	 * Slot of the local day of the timestamp, formatting its prefix if it is not cached
+	 */
+	private int getDaySlot(long timestamp, int offset) {
+
+		long day = floorDiv(timestamp + offset, DAY_MS);
+		int slot = (int)(day & (CACHED_DAYS - 1));
+
+		if(days[slot] != day) {
+
+			date.setTime(timestamp);
+			String prefix = dayFormat.format(date) + separator;
+
+			if(prefixes[slot] == null || prefixes[slot].length < prefix.length())
+				prefixes[slot] = new char[Math.max(prefix.length(), 32)];
+
+			prefix.getChars(0, prefix.length(), prefixes[slot], 0);
+			prefixLengths[slot] = prefix.length();
+			days[slot] = day;
+			dayStarts[slot] = day * DAY_MS - offset;
+			dayEnds[slot] = dayStarts[slot] + DAY_MS;
+			dayOffsets[slot] = offset;
+
+			//The offset can be reused only if it does not change within the day (no daylight saving transition)
+			if(timeZone.getOffset(dayStarts[slot]) != offset || timeZone.getOffset(dayEnds[slot] - 1) != offset)
+				dayEnds[slot] = dayStarts[slot];
+		}
+
+		lastSlot = slot;
+		return slot;
+	}
+
+	private static void appendTwoDigits(int value, StringBuilder builder) {
+		builder.append((char)('0' + value / 10));
+		builder.append((char)('0' + value % 10));
+	}
+
+	private static long floorDiv(long dividend, long divisor) {
+		long quotient = dividend / divisor;
+		if((dividend % divisor != 0) && ((dividend ^ divisor) < 0))
+			quotient--;
+		return quotient;
+	}
+}
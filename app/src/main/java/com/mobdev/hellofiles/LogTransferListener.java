@@ -0,0 +1,20 @@
+package com.mobdev.hellofiles;
+
+/**
+ * Listener notified (on the Main Thread) about the status of an import or export of the log list
+ */
+public interface LogTransferListener {
+
+	/**
+	 * @param processedLogs the number of logs processed so far
+	 * @param processedBytes the number of bytes read or written so far
+	 * @param totalBytes the expected number of bytes or -1 if it is not known
+	 */
+	void onProgress(int processedLogs, long processedBytes, long totalBytes);
+
+	void onCompleted(int processedLogs);
+
+	void onFailed(Exception e);
+
+	void onCancelled();
+}
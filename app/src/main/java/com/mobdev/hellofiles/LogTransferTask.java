@@ -0,0 +1,72 @@
+package com.mobdev.hellofiles;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Handle of an import or export running in background. It can be used to cancel the operation and
+ * it delivers the notifications to the listener through the callback executor.
+ */
+public class LogTransferTask {
+
+	private volatile boolean isCancelled = false;
+
+	private LogTransferListener listener = null;
+
+	private Executor callbackExecutor = null;
+
+	public LogTransferTask(LogTransferListener listener, Executor callbackExecutor) {
+		this.listener = listener;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * Request the cancellation of the operation. It is stopped at the end of the current chunk.
+	 */
+	public void cancel() {
+		isCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	void notifyProgress(final int processedLogs, final long processedBytes, final long totalBytes) {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onProgress(processedLogs, processedBytes, totalBytes);
+				}
+			});
+	}
+
+	void notifyCompleted(final int processedLogs) {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onCompleted(processedLogs);
+				}
+			});
+	}
+
+	void notifyFailed(final Exception e) {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onFailed(e);
+				}
+			});
+	}
+
+	void notifyCancelled() {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onCancelled();
+				}
+			});
+	}
+}
@@ -28,9 +28,13 @@ public class MainActivity extends AppCompatActivity {
 
     public static String TAG = "HelloFiles";
 
-    private static final String EXTERNAL_DOCUMENT_FILENAME = "loglist.txt";
+    // The progress of the transfers is logged only by the debug builds
+    private static final boolean VERBOSE = BuildConfig.DEBUG;
 
-    private static final String DOCUMENT_APPLICATION_TYPE = "text/plain";
+    private static final String EXTERNAL_DOCUMENT_BASE_NAME = "loglist";
+
+    // The type of the imported documents is detected from their content
+    private static final String[] IMPORTED_DOCUMENT_TYPES = {"text/plain", "text/csv", "text/comma-separated-values", "application/json", "application/x-ndjson", "application/octet-stream"};
 
 	private Context mContext = null;
 
@@ -38,12 +42,23 @@ public class MainActivity extends AppCompatActivity {
 
     private static final int EXTERNAL_FILE_OPEN_REQUEST_ID = 2828;
 
+    private static final String STATE_EXPORT_CODEC = "exportCodec";
+
     private HistoryFragment historyFragment = null;
 
+    private LogTransferTask importTask = null;
+
+    // Format of the document being created by the picker
+    private LogCodec exportCodec = LogCodecs.JSON;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.single_fragment_activity);
+
+        // The activity can be recreated while the document picker is shown
+        if(savedInstanceState != null && savedInstanceState.getString(STATE_EXPORT_CODEC) != null)
+            exportCodec = LogCodecs.forName(savedInstanceState.getString(STATE_EXPORT_CODEC));
         
         historyFragment = new HistoryFragment();
 
@@ -64,6 +79,26 @@ public class MainActivity extends AppCompatActivity {
         checkForWriteExternalStoragePermissions();
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_EXPORT_CODEC, exportCodec.getName());
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Write the pending log mutations when the application goes in background
+        LogDescriptorManager.getInstance(getApplicationContext()).flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if(importTask != null)
+            importTask.cancel();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
@@ -79,7 +114,17 @@ public class MainActivity extends AppCompatActivity {
         int id = item.getItemId();
 
         if(id == R.id.action_create_document){
-            exportOnSharedDocument();
+            exportOnSharedDocument(LogCodecs.JSON);
+            return true;
+        }
+
+        if(id == R.id.action_export_csv){
+            exportOnSharedDocument(LogCodecs.CSV);
+            return true;
+        }
+
+        if(id == R.id.action_export_ndjson){
+            exportOnSharedDocument(LogCodecs.NDJSON);
             return true;
         }
 
@@ -93,16 +138,19 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Send the request to create a file on the external shared memory (both internal or external)
+     * @param codec the format of the document
      */
-    public void exportOnSharedDocument(){
+    public void exportOnSharedDocument(LogCodec codec){
         try{
 
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT) {
 
+                exportCodec = codec;
+
                 Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
-                intent.setType(DOCUMENT_APPLICATION_TYPE);
-                intent.putExtra(Intent.EXTRA_TITLE, EXTERNAL_DOCUMENT_FILENAME);
+                intent.setType(codec.getMimeType());
+                intent.putExtra(Intent.EXTRA_TITLE, EXTERNAL_DOCUMENT_BASE_NAME + "." + codec.getFileExtension());
 
                 startActivityForResult(intent, EXTERNAL_FILE_CREATE_REQUEST_ID);
             }else {
@@ -123,7 +171,8 @@ public class MainActivity extends AppCompatActivity {
 
                 Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
-                intent.setType(DOCUMENT_APPLICATION_TYPE);
+                intent.setType("*/*");
+                intent.putExtra(Intent.EXTRA_MIME_TYPES, IMPORTED_DOCUMENT_TYPES);
                 startActivityForResult(intent, EXTERNAL_FILE_OPEN_REQUEST_ID);
             }
             else {
@@ -141,7 +190,7 @@ public class MainActivity extends AppCompatActivity {
             switch (resultCode) {
                 case Activity.RESULT_OK:
                     if (data != null && data.getData() != null) {
-                        LogDescriptorManager.getInstance(getApplicationContext()).exportOnSharedDocument(data.getData());
+                        exportSharedDocument(data);
                     }
                     break;
                 case Activity.RESULT_CANCELED:
@@ -152,8 +201,7 @@ public class MainActivity extends AppCompatActivity {
             switch (resultCode) {
                 case Activity.RESULT_OK:
                     if (data != null && data.getData() != null) {
-                        if(LogDescriptorManager.getInstance(getApplicationContext()).readFromSharedDocument(data.getData()))
-                            this.historyFragment.updateHistory();
+                        importSharedDocument(data);
                     }
                     break;
                 case Activity.RESULT_CANCELED:
@@ -162,6 +210,72 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Export in background the log list on the selected document
+     */
+    private void exportSharedDocument(Intent data){
+
+        LogDescriptorManager.getInstance(getApplicationContext()).exportOnSharedDocument(data.getData(), exportCodec, new LogTransferListener() {
+            @Override
+            public void onProgress(int processedLogs, long processedBytes, long totalBytes) {
+                if(VERBOSE)
+                    Log.d(TAG, "Exporting Log Document ... Logs: " + processedLogs + " Bytes: " + processedBytes);
+            }
+
+            @Override
+            public void onCompleted(int processedLogs) {
+                Toast.makeText(mContext, "Log Document Exported ! Logs: " + processedLogs, Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                Toast.makeText(mContext, "Error Exporting Log Document !", Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onCancelled() {
+                Log.d(TAG, "Log Document Export Cancelled !");
+            }
+        });
+    }
+
+    /**
+     * Import in background the log list from the selected document, merging it with the current one
+     * (the logs already in the list are not duplicated), and update the history when completed
+     */
+    private void importSharedDocument(Intent data){
+
+        if(importTask != null)
+            importTask.cancel();
+
+        importTask = LogDescriptorManager.getInstance(getApplicationContext()).readFromSharedDocument(data.getData(), LogDescriptorManager.IMPORT_MERGE, new LogTransferListener() {
+            @Override
+            public void onProgress(int processedLogs, long processedBytes, long totalBytes) {
+                if(VERBOSE)
+                    Log.d(TAG, "Importing Log Document ... Logs: " + processedLogs + " Bytes: " + processedBytes + "/" + totalBytes);
+            }
+
+            @Override
+            public void onCompleted(int processedLogs) {
+                importTask = null;
+                historyFragment.updateHistory();
+                Toast.makeText(mContext, "Log Document Imported ! New Logs: " + processedLogs, Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                importTask = null;
+                Toast.makeText(mContext, "Error Reading Log Document !", Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onCancelled() {
+                importTask = null;
+                Log.d(TAG, "Log Document Import Cancelled !");
+            }
+        });
+    }
+
     private void showStoragePermissionDeniedMessage() {
         Toast.makeText(this,"Write External Storage Permission Not Granted !",Toast.LENGTH_LONG).show();
     }
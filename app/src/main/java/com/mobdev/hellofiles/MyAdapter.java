@@ -1,6 +1,5 @@
 package com.mobdev.hellofiles;
 
-import java.util.ArrayList;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -16,37 +15,66 @@ import androidx.recyclerview.widget.RecyclerView;
  */
 public class MyAdapter extends RecyclerView.Adapter<MyAdapter.ViewHolder> {
 
-	private ArrayList<LogDescriptor> mDataset;
+	private LogStore mDataset;
 	private Context mContext = null;
 
+	/*
+	 * Text of the recently shown logs and buffers used to read a row, so the binding of a row does
+	 * not allocate any object
+	 */
+	private LogTextCache textCache = new LogTextCache();
+	private long[] rowTimestamp = new long[1];
+	private double[] rowValue = new double[1];
+
 	public class ViewHolder extends RecyclerView.ViewHolder {
 
 		private View v = null;
 
+		private TextView tView = null;
+
+		/*
+		 * Text shown by the TextView: it keeps a reference to the array, so each holder has its own one
+		 */
+		private char[] textBuffer = new char[64];
+
 		public ViewHolder(View v) {
 			super(v);
 			this.v = v;
+			this.tView = (TextView)v.findViewById(R.id.myTextView);
 
 			v.setOnLongClickListener(new OnLongClickListener() {
 
 				@Override
 				public boolean onLongClick(View v) {
 					int position = getPosition();
+					//The removal is notified to the adapter by the LogListListener of the fragment
 					LogDescriptorManager.getInstance(mContext).removeLog(position);
-					notifyItemRemoved(position);
 					return false;
 				}
 			});
 		}
 
 		public void setText(String text){
-			TextView tView = (TextView)v.findViewById(R.id.myTextView);
 			tView.setText(text);
 		}
+
+		/**
+		 * Show the text of a log copying it from the cache
+		 */
+		public void setLog(long timestamp, double value){
+			int length = textCache.getText(timestamp, value, textBuffer);
+
+			if(length > textBuffer.length) {
+				textBuffer = new char[length];
+				length = textCache.getText(timestamp, value, textBuffer);
+			}
+
+			tView.setText(textBuffer, 0, length);
+		}
 	}
 
 	// Provide a suitable constructor (depends on the kind of dataset)
-	public MyAdapter(ArrayList<LogDescriptor> myDataset, Context context) {
+	public MyAdapter(LogStore myDataset, Context context) {
 		mDataset = myDataset;
 		mContext  = context;
 	}
@@ -69,7 +97,9 @@ public class MyAdapter extends RecyclerView.Adapter<MyAdapter.ViewHolder> {
 	public void onBindViewHolder(ViewHolder holder, final int position) {
 		// - get element from your dataset at this position
 		// - replace the contents of the view with that element
-		holder.setText("["+mDataset.get(position).getTimestamp()+"]: "+mDataset.get(position).getValue());
+		// (a single lookup of the position reads both the fields)
+		mDataset.getRange(position, 1, rowTimestamp, rowValue, 0);
+		holder.setLog(rowTimestamp[0], rowValue[0]);
 
 	}
 
@@ -79,11 +109,11 @@ public class MyAdapter extends RecyclerView.Adapter<MyAdapter.ViewHolder> {
 		return mDataset.size();
 	}
 
-	public ArrayList<LogDescriptor> getmDataset() {
+	public LogStore getmDataset() {
 		return mDataset;
 	}
 
-	public void setmDataset(ArrayList<LogDescriptor> mDataset) {
+	public void setmDataset(LogStore mDataset) {
 		this.mDataset = mDataset;
 	}
 
@@ -0,0 +1,188 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+
+/**
+ * Newline delimited JSON: a LogDescriptor object for each line, e.g.
+ *
+ * {"timestamp":1585000000000,"value":12.5}
+ *
+ * The objects are scanned in place: the timestamp and value fields are parsed with
+ * {@link LogNumberParser} and the other fields are skipped. As for the JSON array, NaN and Infinity
+ * values are written as unquoted literals (accepted by lenient JSON readers).
+ */
+public class NdjsonLogCodec extends LineLogCodec {
+
+	public static final String NAME = "ndjson";
+
+	private static final char[] TIMESTAMP_KEY = JsonLogCodec.TIMESTAMP_FIELD.toCharArray();
+
+	private static final char[] VALUE_KEY = JsonLogCodec.VALUE_FIELD.toCharArray();
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public String getMimeType() {
+		return "application/x-ndjson";
+	}
+
+	@Override
+	public String getFileExtension() {
+		return "ndjson";
+	}
+
+	@Override
+	protected LineDecoder createDecoder() {
+		return new LineDecoder() {
+			@Override
+			protected boolean decode(char[] chars, int start, int end) throws IOException {
+				decodeObject(this, chars, start, end);
+				return true;
+			}
+		};
+	}
+
+	@Override
+	protected LineEncoder createEncoder() {
+		return new LineEncoder() {
+			@Override
+			protected void encode(long timestamp, double value, StringBuilder builder) {
+				builder.append("{\"").append(JsonLogCodec.TIMESTAMP_FIELD).append("\":").append(timestamp)
+						.append(",\"").append(JsonLogCodec.VALUE_FIELD).append("\":").append(value).append('}');
+			}
+		};
+	}
+
+	/*
+	 * Scan a flat object setting the fields of the decoder (the missing fields are 0 as for the JSON array)
+	 */
+	private static void decodeObject(LineDecoder decoder, char[] chars, int start, int end) throws IOException {
+
+		decoder.timestamp = 0;
+		decoder.value = 0.0;
+
+		int i = expect(chars, start, end, '{');
+		i = skipSpaces(chars, i, end);
+
+		if(i < end && chars[i] == '}')
+			return;
+
+		while(true) {
+
+			i = expect(chars, i, end, '"');
+			int keyStart = i;
+			i = skipString(chars, i, end);
+			int keyEnd = i - 1;
+
+			i = expect(chars, i, end, ':');
+			i = skipSpaces(chars, i, end);
+
+			int valueEnd = skipValue(chars, i, end);
+
+			if(isKey(chars, keyStart, keyEnd, TIMESTAMP_KEY))
+				decoder.timestamp = LogNumberParser.parseLong(chars, unquoteStart(chars, i, valueEnd), unquoteEnd(chars, i, valueEnd));
+			else if(isKey(chars, keyStart, keyEnd, VALUE_KEY))
+				decoder.value = LogNumberParser.parseDouble(chars, unquoteStart(chars, i, valueEnd), unquoteEnd(chars, i, valueEnd));
+
+			i = skipSpaces(chars, valueEnd, end);
+
+			if(i < end && chars[i] == ',') {
+				i = skipSpaces(chars, i + 1, end);
+				continue;
+			}
+
+			expect(chars, i, end, '}');
+			return;
+		}
+	}
+
+	/*
+	 * Position after the expected character (the spaces before it are skipped)
+	 */
+	private static int expect(char[] chars, int i, int end, char expected) throws IOException {
+
+		i = skipSpaces(chars, i, end);
+
+		if(i >= end || chars[i] != expected)
+			throw new IOException("Expected '" + expected + "'");
+
+		return i + 1;
+	}
+
+	private static int skipSpaces(char[] chars, int i, int end) {
+		while(i < end && chars[i] <= ' ')
+			i++;
+		return i;
+	}
+
+	/*
+	 * Position after the closing quote of the string starting at the target position (after the opening quote)
+	 */
+	private static int skipString(char[] chars, int i, int end) throws IOException {
+
+		for(; i < end; i++) {
+			if(chars[i] == '\\')
+				i++;
+			else if(chars[i] == '"')
+				return i + 1;
+		}
+
+		throw new IOException("Unterminated String");
+	}
+
+	/*
+	 * Position after the value starting at the target position (nested objects and arrays are skipped)
+	 */
+	private static int skipValue(char[] chars, int i, int end) throws IOException {
+
+		if(i < end && chars[i] == '"')
+			return skipString(chars, i + 1, end);
+
+		int depth = 0;
+
+		for(; i < end; i++) {
+
+			char c = chars[i];
+
+			if(c == '"')
+				i = skipString(chars, i + 1, end) - 1;
+			else if(c == '{' || c == '[')
+				depth++;
+			else if(c == '}' || c == ']') {
+				if(depth == 0)
+					return i;
+				depth--;
+			}
+			else if(depth == 0 && (c == ',' || c <= ' '))
+				return i;
+		}
+
+		return i;
+	}
+
+	private static boolean isKey(char[] chars, int start, int end, char[] key) {
+
+		if(end - start != key.length)
+			return false;
+
+		for(int i = 0; i < key.length; i++)
+			if(chars[start + i] != key[i])
+				return false;
+
+		return true;
+	}
+
+	/*
+	 * The numbers can also be written as strings (e.g. "NaN")
+	 */
+	private static int unquoteStart(char[] chars, int start, int end) {
+		return end - start >= 2 && chars[start] == '"' ? start + 1 : start;
+	}
+
+	private static int unquoteEnd(char[] chars, int start, int end) {
+		return end - start >= 2 && chars[start] == '"' ? end - 1 : end;
+	}
+}
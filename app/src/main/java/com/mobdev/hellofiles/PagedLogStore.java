@@ -0,0 +1,715 @@
+package com.mobdev.hellofiles;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LogStore composed of an immutable base (e.g. a {@link LogSnapshotReader} on the latest snapshot)
+ * and of small in-memory overlays with the mutations applied after it.
+ *
+ * The logs added to the head and to the tail are kept in two ArrayLogStore objects (ring buffers,
+ * so both the insertions at the head and at the tail cost O(1)) while the logs removed from the base
+ * are tracked as a sorted array of base positions. The content of the base is never copied in memory, so the
+ * memory used depends only on the mutations applied after the latest snapshot.
+ *
+ * When the base is a {@link LogSegmentSet} the removed positions start from the tombstones of its
+ * segments, i.e. the stored logs that have been removed but not yet compacted.
+ *
+ * The logical sequence is: head logs | base logs not removed | tail logs
+ */
+public class PagedLogStore implements LogStore {
+
+	private LogSource base = null;
+
+	/*
+	 * Logs inserted at the head, in the same order of the list
+	 */
+	private ArrayLogStore head = null;
+
+	private ArrayLogStore tail = null;
+
+	/*
+	 * Sorted positions of the base logs that have been removed
+	 */
+	private int[] removed = null;
+
+	private int removedCount = 0;
+
+	/*
+	 * Time index of a base that is not a snapshot reader, built on the first query
+	 */
+	private LogTimeIndex baseTimeIndex = null;
+
+	/*
+	 * Aggregates of the content, loaded on the first request and then updated by each mutation
+	 */
+	private LogAggregates aggregates = null;
+
+	/*
+	 * Multi-resolution overview of the content, built on the first request and then updated by each mutation
+	 */
+	private LogOverview overview = null;
+
+	public PagedLogStore(LogSource base) {
+		this(base, new ArrayLogStore(), new ArrayLogStore(), new int[16], 0);
+		applyTombstones(base);
+	}
+
+	private PagedLogStore(LogSource base, ArrayLogStore head, ArrayLogStore tail, int[] removed, int removedCount) {
+		this.base = base;
+		this.head = head;
+		this.tail = tail;
+		this.removed = removed;
+		this.removedCount = removedCount;
+	}
+
+	public LogSource getBase() {
+		return base;
+	}
+
+	/**
+	 * @return the number of logs inserted at the head after the base
+	 */
+	int getHeadSize() {
+		return head.size();
+	}
+
+	/**
+	 * @return the number of logs appended at the tail after the base
+	 */
+	int getTailSize() {
+		return tail.size();
+	}
+
+	/**
+	 * @return the number of removed base logs with fromBasePosition <= position < toBasePosition
+	 */
+	int countRemoved(int fromBasePosition, int toBasePosition) {
+		return countRemovedBefore(toBasePosition) - countRemovedBefore(fromBasePosition);
+	}
+
+	/**
+	 * @return the sorted removed base positions with fromBasePosition <= position < toBasePosition,
+	 * relative to fromBasePosition (e.g. the tombstones of a segment of the base)
+	 */
+	int[] getRemoved(int fromBasePosition, int toBasePosition) {
+
+		int first = countRemovedBefore(fromBasePosition);
+		int[] positions = new int[countRemovedBefore(toBasePosition) - first];
+
+		for(int i = 0; i < positions.length; i++)
+			positions[i] = removed[first + i] - fromBasePosition;
+
+		return positions;
+	}
+
+	@Override
+	public int size() {
+		return head.size() + getBaseSize() + tail.size();
+	}
+
+	@Override
+	public long getTimestamp(int position) {
+
+		checkPosition(position);
+
+		int headSize = head.size();
+
+		if(position < headSize)
+			return head.getTimestamp(position);
+
+		position -= headSize;
+		int baseSize = getBaseSize();
+
+		if(position < baseSize)
+			return base.getTimestamp(mapToBase(position));
+
+		return tail.getTimestamp(position - baseSize);
+	}
+
+	@Override
+	public double getValue(int position) {
+
+		checkPosition(position);
+
+		int headSize = head.size();
+
+		if(position < headSize)
+			return head.getValue(position);
+
+		position -= headSize;
+		int baseSize = getBaseSize();
+
+		if(position < baseSize)
+			return base.getValue(mapToBase(position));
+
+		return tail.getValue(position - baseSize);
+	}
+
+	@Override
+	public void getRange(int position, int count, long[] timestamps, double[] values, int offset) {
+
+		if(position < 0 || count < 0 || position + count > size())
+			throw new IndexOutOfBoundsException("Range: " + position + "+" + count + " Size: " + size());
+
+		int headSize = head.size();
+
+		//Head logs
+		if(count > 0 && position < headSize) {
+			int headCount = Math.min(count, headSize - position);
+			head.getRange(position, headCount, timestamps, values, offset);
+			position += headCount;
+			offset += headCount;
+			count -= headCount;
+		}
+
+		position -= headSize;
+		int baseSize = getBaseSize();
+
+		//Base logs, copied as runs of consecutive positions between two removed ones
+		if(count > 0 && position < baseSize) {
+
+			int basePosition = mapToBase(position);
+			int nextRemoved = countRemovedBefore(basePosition);
+			int baseCount = Math.min(count, baseSize - position);
+
+			while(baseCount > 0) {
+
+				while(nextRemoved < removedCount && removed[nextRemoved] == basePosition) {
+					basePosition++;
+					nextRemoved++;
+				}
+
+				int runEnd = nextRemoved < removedCount ? removed[nextRemoved] : base.size();
+				int copied = Math.min(baseCount, runEnd - basePosition);
+
+				base.getRange(basePosition, copied, timestamps, values, offset);
+
+				basePosition += copied;
+				position += copied;
+				offset += copied;
+				count -= copied;
+				baseCount -= copied;
+			}
+		}
+
+		//Tail logs
+		if(count > 0)
+			tail.getRange(position - baseSize, count, timestamps, values, offset);
+	}
+
+	@Override
+	public void add(long timestamp, double value) {
+		tail.add(timestamp, value);
+
+		if(aggregates != null)
+			aggregates.add(timestamp, value);
+
+		if(overview != null)
+			overview.add(timestamp, value);
+	}
+
+	@Override
+	public void addToHead(long timestamp, double value) {
+		head.addToHead(timestamp, value);
+
+		if(aggregates != null)
+			aggregates.add(timestamp, value);
+
+		if(overview != null)
+			overview.add(timestamp, value);
+	}
+
+	@Override
+	public void remove(int position) {
+
+		checkPosition(position);
+
+		if(aggregates != null || overview != null) {
+			long timestamp = getTimestamp(position);
+			double value = getValue(position);
+			removeAt(position);
+
+			if(aggregates != null)
+				aggregates.remove(timestamp, value);
+
+			if(overview != null)
+				overview.remove(timestamp, value);
+		}
+		else
+			removeAt(position);
+	}
+
+	private void removeAt(int position) {
+
+		int headSize = head.size();
+
+		if(position < headSize) {
+			head.remove(position);
+			return;
+		}
+
+		position -= headSize;
+		int baseSize = getBaseSize();
+
+		if(position >= baseSize) {
+			tail.remove(position - baseSize);
+			return;
+		}
+
+		int basePosition = mapToBase(position);
+		int insertionIndex = countRemovedBefore(basePosition);
+
+		if(removedCount == removed.length)
+			removed = Arrays.copyOf(removed, removedCount + (removedCount >> 1) + 1);
+
+		System.arraycopy(removed, insertionIndex, removed, insertionIndex + 1, removedCount - insertionIndex);
+		removed[insertionIndex] = basePosition;
+		removedCount++;
+	}
+
+	/**
+	 * The candidates are selected through the time index of the base (see {@link #query(long, long)}),
+	 * so the logs are not scanned.
+	 */
+	@Override
+	public int indexOf(long timestamp, double value) {
+
+		long valueBits = Double.doubleToLongBits(value);
+		LogCursor cursor = query(timestamp, timestamp);
+
+		while(cursor.moveToNext())
+			if(Double.doubleToLongBits(cursor.getValue()) == valueBits)
+				return cursor.getPosition();
+
+		return -1;
+	}
+
+	/**
+	 * Select the logs with fromTimestamp <= timestamp <= toTimestamp. The base is searched through its
+	 * time index while the overlays (bounded by the journal compaction) are scanned.
+	 *
+	 * @param fromTimestamp the first timestamp of the range (inclusive)
+	 * @param toTimestamp the last timestamp of the range (inclusive)
+	 * @return the cursor over the selected logs, sorted by position. It is valid until the store is modified.
+	 */
+	public LogCursor query(long fromTimestamp, long toTimestamp) {
+
+		LogCursor baseCursor = base instanceof LogSegmentSet ? ((LogSegmentSet)base).query(fromTimestamp, toTimestamp) :
+				getBaseTimeIndex().query(base, fromTimestamp, toTimestamp);
+
+		return new RangeCursor(baseCursor, fromTimestamp, toTimestamp);
+	}
+
+	/**
+	 * @return the aggregates of the content. The first call loads the aggregates of the base (e.g.
+	 * from the aggregates file of the snapshot) and applies the overlays, then they are updated by
+	 * each mutation.
+	 */
+	public LogAggregates getAggregates() {
+
+		if(aggregates == null) {
+
+			LogAggregates loadedAggregates = null;
+
+			if(base instanceof LogSegmentSet)
+				loadedAggregates = ((LogSegmentSet)base).loadAggregates();
+			else if(base instanceof LogSnapshotReader)
+				loadedAggregates = ((LogSnapshotReader)base).loadAggregates();
+			else
+				loadedAggregates = LogAggregates.build(base);
+
+			for(int i = 0; i < removedCount; i++)
+				loadedAggregates.remove(base.getTimestamp(removed[i]), base.getValue(removed[i]));
+
+			for(int i = 0; i < head.size(); i++)
+				loadedAggregates.add(head.getTimestamp(i), head.getValue(i));
+
+			for(int i = 0; i < tail.size(); i++)
+				loadedAggregates.add(tail.getTimestamp(i), tail.getValue(i));
+
+			loadedAggregates.setRangeQuery(newRangeQuery());
+
+			aggregates = loadedAggregates;
+		}
+
+		return aggregates;
+	}
+
+	/**
+	 * @return the multi-resolution overview of the content, used to chart the whole list. The first
+	 * call loads the overview of the base (e.g. merging the overview files of its segments) and
+	 * applies the overlays, then it is updated by each mutation.
+	 */
+	public LogOverview getOverview() {
+
+		if(overview == null) {
+
+			LogOverview loadedOverview = loadOverview();
+
+			loadedOverview.setRangeQuery(newRangeQuery());
+			overview = loadedOverview;
+		}
+
+		return overview;
+	}
+
+	/*
+	 * New overview of the content: only a base that is not stored (e.g. an imported list) is read
+	 */
+	private LogOverview loadOverview() {
+
+		LogOverview loadedOverview = null;
+
+		if(base instanceof LogSegmentSet)
+			loadedOverview = ((LogSegmentSet)base).loadOverview();
+		else if(base instanceof LogSnapshotReader)
+			loadedOverview = ((LogSnapshotReader)base).loadOverview();
+		else if(base instanceof PagedLogStore)
+			loadedOverview = ((PagedLogStore)base).loadOverview();
+		else
+			loadedOverview = LogOverview.build(base);
+
+		for(int i = 0; i < removedCount; i++)
+			loadedOverview.remove(base.getTimestamp(removed[i]), base.getValue(removed[i]));
+
+		for(int i = 0; i < head.size(); i++)
+			loadedOverview.add(head.getTimestamp(i), head.getValue(i));
+
+		for(int i = 0; i < tail.size(); i++)
+			loadedOverview.add(tail.getTimestamp(i), tail.getValue(i));
+
+		return loadedOverview;
+	}
+
+	/*
+	 * Query used by aggregates and overview to recompute their stale extremes
+	 */
+	private LogAggregates.RangeQuery newRangeQuery() {
+		return new LogAggregates.RangeQuery() {
+			@Override
+			public LogCursor query(long fromTimestamp, long toTimestamp) {
+				return PagedLogStore.this.query(fromTimestamp, toTimestamp);
+			}
+		};
+	}
+
+	private LogTimeIndex getBaseTimeIndex() {
+
+		if(base instanceof LogSnapshotReader)
+			return ((LogSnapshotReader)base).getTimeIndex();
+
+		if(baseTimeIndex == null)
+			baseTimeIndex = LogTimeIndex.build(base);
+
+		return baseTimeIndex;
+	}
+
+	/**
+	 * The base is shared with the copy (it is never modified) while the overlays are copied
+	 */
+	@Override
+	public LogStore copy() {
+		return new PagedLogStore(base, (ArrayLogStore)head.copy(), (ArrayLogStore)tail.copy(),
+				Arrays.copyOf(removed, Math.max(removedCount, 16)), removedCount);
+	}
+
+	/**
+	 * Move the current content in a new immutable store that becomes the base of this one.
+	 * The overlays are moved and not copied, so the cost does not depend on the size of the list.
+	 *
+	 * @return the immutable content of the store at the moment of the call
+	 */
+	public LogSource freeze() {
+
+		if(head.size() == 0 && tail.size() == 0 && removedCount == 0)
+			return base;
+
+		PagedLogStore frozen = new PagedLogStore(base, head, tail, removed, removedCount);
+
+		this.base = frozen;
+		this.baseTimeIndex = null;
+		this.head = new ArrayLogStore();
+		this.tail = new ArrayLogStore();
+		this.removed = new int[16];
+		this.removedCount = 0;
+
+		return frozen;
+	}
+
+	/**
+	 * Replace the base with an equivalent one (e.g. a reader of the snapshot written from it).
+	 * The positions removed after the freeze are moved on the records of the new base, skipping its
+	 * tombstones.
+	 *
+	 * @param expectedBase the base returned by {@link #freeze()}
+	 * @param newBase a source with the same content of the expected base (once its tombstones are applied)
+	 * @return false if the base has been changed in the meantime and the new one has been ignored
+	 */
+	public boolean rebase(LogSource expectedBase, LogSource newBase) {
+
+		int[] tombstones = getTombstones(newBase);
+
+		if(base != expectedBase || newBase.size() - tombstones.length != expectedBase.size())
+			return false;
+
+		int[] newRemoved = new int[Math.max(removedCount + tombstones.length, 16)];
+		int newRemovedCount = 0;
+		int tombstoneIndex = 0;
+
+		//Each removed position of the expected base is shifted by the tombstones before it (as in mapToBase())
+		for(int i = 0; i < removedCount; i++) {
+
+			while(tombstoneIndex < tombstones.length && tombstones[tombstoneIndex] - tombstoneIndex <= removed[i])
+				newRemoved[newRemovedCount++] = tombstones[tombstoneIndex++];
+
+			newRemoved[newRemovedCount++] = removed[i] + tombstoneIndex;
+		}
+
+		while(tombstoneIndex < tombstones.length)
+			newRemoved[newRemovedCount++] = tombstones[tombstoneIndex++];
+
+		this.base = newBase;
+		this.baseTimeIndex = null;
+		this.removed = newRemoved;
+		this.removedCount = newRemovedCount;
+		return true;
+	}
+
+	/**
+	 * Remove whole segments of the base (e.g. the ones expired by the retention policy). The logs
+	 * are not read or copied: the segments are excluded from the base and the removed positions
+	 * after them are shifted.
+	 *
+	 * @param droppedSegments the segments to remove
+	 * @return the number of removed logs (0 if the base is not a set of segments)
+	 */
+	public int dropSegments(List<LogSegment> droppedSegments) {
+
+		if(!(base instanceof LogSegmentSet) || droppedSegments.isEmpty())
+			return 0;
+
+		LogSegmentSet segmentSet = (LogSegmentSet)base;
+		List<LogSegment> segments = segmentSet.getSegments();
+
+		int[] newRemoved = new int[Math.max(removedCount, 16)];
+		int newRemovedCount = 0;
+		int removedIndex = 0;
+		int droppedPositions = 0;
+		int droppedLogs = 0;
+
+		for(int i = 0; i < segments.size(); i++) {
+
+			int segmentStart = segmentSet.getSegmentStart(i);
+			int segmentEnd = segmentSet.getSegmentStart(i + 1);
+			boolean isDropped = droppedSegments.contains(segments.get(i));
+
+			int segmentRemoved = 0;
+
+			for(; removedIndex < removedCount && removed[removedIndex] < segmentEnd; removedIndex++) {
+				if(isDropped)
+					segmentRemoved++;
+				else
+					newRemoved[newRemovedCount++] = removed[removedIndex] - droppedPositions;
+			}
+
+			if(isDropped) {
+				droppedPositions += segmentEnd - segmentStart;
+				droppedLogs += segmentEnd - segmentStart - segmentRemoved;
+			}
+		}
+
+		this.base = segmentSet.without(droppedSegments);
+		this.baseTimeIndex = null;
+		this.aggregates = null;
+		this.overview = null;
+		this.removed = newRemoved;
+		this.removedCount = newRemovedCount;
+
+		return droppedLogs;
+	}
+
+	/**
+	 * Replace the whole content of the store
+	 * @param newBase the new content (it must not be modified anymore by the caller)
+	 */
+	public void reset(LogSource newBase) {
+		reset(newBase, null);
+	}
+
+	/**
+	 * Replace the whole content of the store with its overview, e.g. built in background with
+	 * {@link LogOverview#build(LogSource)} while the new content was read
+	 * @param newBase the new content (it must not be modified anymore by the caller)
+	 * @param newOverview the overview of the new content (null to load it on the next request)
+	 */
+	public void reset(LogSource newBase, LogOverview newOverview) {
+		this.base = newBase;
+		this.baseTimeIndex = null;
+		this.aggregates = null;
+		this.overview = null;
+		this.head = new ArrayLogStore();
+		this.tail = new ArrayLogStore();
+		this.removed = new int[16];
+		this.removedCount = 0;
+		applyTombstones(newBase);
+
+		if(newOverview != null) {
+			newOverview.setRangeQuery(newRangeQuery());
+			this.overview = newOverview;
+		}
+	}
+
+	/*
+	 * Start the removed positions from the tombstones of a stored base
+	 */
+	private void applyTombstones(LogSource newBase) {
+
+		int[] tombstones = getTombstones(newBase);
+
+		if(tombstones.length > 0) {
+			this.removed = tombstones;
+			this.removedCount = tombstones.length;
+		}
+	}
+
+	private static int[] getTombstones(LogSource logSource) {
+		return logSource instanceof LogSegmentSet ? ((LogSegmentSet)logSource).getTombstones() : new int[0];
+	}
+
+	private int getBaseSize() {
+		return base.size() - removedCount;
+	}
+
+	/*
+	 * Position in the base of the visible base log with the target index. It is the index plus the
+	 * number j of removed positions before it, where j is the count of removed[m] with removed[m] - m <= index
+	 * (removed[m] - m is not decreasing so it is found with a binary search).
+	 */
+	private int mapToBase(int index) {
+
+		int low = 0;
+		int high = removedCount;
+
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(removed[middle] - middle <= index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		return index + low;
+	}
+
+	/*
+	 * Number of removed positions lower than the target base position
+	 */
+	private int countRemovedBefore(int basePosition) {
+		int index = Arrays.binarySearch(removed, 0, removedCount, basePosition);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	private void checkPosition(int position) {
+		if(position < 0 || position >= size())
+			throw new IndexOutOfBoundsException("Position: " + position + " Size: " + size());
+	}
+
+	/**
+	 * Cursor over the head logs, the base logs selected by the index that have not been removed and
+	 * the tail logs. The positions of the base logs are translated in positions of the store.
+	 */
+	private class RangeCursor implements LogCursor {
+
+		private LogCursor baseCursor = null;
+
+		private long fromTimestamp = 0;
+
+		private long toTimestamp = 0;
+
+		private int position = -1;
+
+		private long timestamp = 0;
+
+		private double value = 0.0;
+
+		/*
+		 * Index of the first removed base position not lower than the current base position
+		 */
+		private int nextRemoved = 0;
+
+		private RangeCursor(LogCursor baseCursor, long fromTimestamp, long toTimestamp) {
+			this.baseCursor = baseCursor;
+			this.fromTimestamp = fromTimestamp;
+			this.toTimestamp = toTimestamp;
+		}
+
+		@Override
+		public boolean moveToNext() {
+
+			int headSize = head.size();
+
+			//Head logs
+			while(position + 1 < headSize) {
+				position++;
+				timestamp = head.getTimestamp(position);
+				if(timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+					value = head.getValue(position);
+					return true;
+				}
+			}
+
+			//Base logs selected by the index
+			if(baseCursor != null) {
+
+				while(baseCursor.moveToNext()) {
+
+					int basePosition = baseCursor.getPosition();
+
+					while(nextRemoved < removedCount && removed[nextRemoved] < basePosition)
+						nextRemoved++;
+
+					if(nextRemoved < removedCount && removed[nextRemoved] == basePosition)
+						continue;
+
+					position = headSize + basePosition - nextRemoved;
+					timestamp = baseCursor.getTimestamp();
+					value = baseCursor.getValue();
+					return true;
+				}
+
+				baseCursor = null;
+				position = headSize + getBaseSize() - 1;
+			}
+
+			//Tail logs
+			int tailStart = headSize + getBaseSize();
+
+			while(position + 1 < tailStart + tail.size()) {
+				position++;
+				timestamp = tail.getTimestamp(position - tailStart);
+				if(timestamp >= fromTimestamp && timestamp <= toTimestamp) {
+					value = tail.getValue(position - tailStart);
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public double getValue() {
+			return value;
+		}
+	}
+}
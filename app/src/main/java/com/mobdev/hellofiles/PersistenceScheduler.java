@@ -0,0 +1,365 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single writer that persists the mutations of the log list on a dedicated background thread.
+ *
+ * The mutations submitted within the batch window are coalesced and appended on the journal with
+ * a single write. Batches and snapshot requests are queued in submission order and executed one
+ * after the other by the writer thread, so every snapshot contains exactly the mutations submitted
+ * before it was requested. Errors are delivered to the listener through the callback executor
+ * (e.g. the main thread).
+ *
+ * The journal is forced on the storage device following the sync policy of the storage: when an
+ * append is not forced immediately, a sync is scheduled at the end of the sync interval.
+ *
+ * The journal records are positioned on the list as it is after the previous records, so after a
+ * failed append, or after a failed snapshot of a reset, the journal diverges from the list: the
+ * following batches are not appended, the mutations are not durable and a new snapshot is required
+ * (see {@link #isJournalDiverged()}).
+ */
+public class PersistenceScheduler {
+
+	public interface Listener {
+
+		void onPersistenceError(Exception e);
+
+		/**
+		 * Called when a snapshot request has been executed
+		 * @param snapshot the content passed to {@link #scheduleSnapshot(LogSource)} or {@link #scheduleReset(LogSource)}
+		 * @param storedSnapshot the same content read on demand from the written segments or null if the snapshot has failed
+		 */
+		void onSnapshotCompleted(LogSource snapshot, LogSegmentSet storedSnapshot);
+	}
+
+	public static final long DEFAULT_BATCH_WINDOW_MS = 200;
+
+	private LogStorage logStorage = null;
+
+	private Executor callbackExecutor = null;
+
+	private Listener listener = null;
+
+	private ScheduledExecutorService writerExecutor = null;
+
+	private volatile long batchWindowMs = DEFAULT_BATCH_WINDOW_MS;
+
+	private final Object lock = new Object();
+
+	/*
+	 * Closed batches and snapshot requests waiting for the writer thread (guarded by lock)
+	 */
+	private ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<PendingWrite>();
+
+	/*
+	 * Batch collecting the mutations submitted in the current window (guarded by lock)
+	 */
+	private LogJournal.Batch openBatch = new LogJournal.Batch();
+
+	private boolean isDrainScheduled = false;
+
+	private boolean isSyncScheduled = false;
+
+	/*
+	 * The journal does not contain all the mutations submitted so far (written by the writer thread)
+	 */
+	private volatile boolean isJournalDiverged = false;
+
+	private static class PendingWrite {
+
+		private LogJournal.Batch batch = null;
+
+		private LogSource snapshot = null;
+
+		private boolean isReset = false;
+
+		private PendingWrite(LogJournal.Batch batch, LogSource snapshot, boolean isReset) {
+			this.batch = batch;
+			this.snapshot = snapshot;
+			this.isReset = isReset;
+		}
+	}
+
+	private Runnable drainTask = new Runnable() {
+		@Override
+		public void run() {
+			drainPendingWrites();
+		}
+	};
+
+	private Runnable syncTask = new Runnable() {
+		@Override
+		public void run() {
+
+			synchronized (lock) {
+				isSyncScheduled = false;
+			}
+
+			try {
+				logStorage.sync();
+			} catch (Exception e) {
+				notifyError(e);
+			}
+		}
+	};
+
+	/*
+	 * Write the pending mutations and force them on the storage device
+	 */
+	private Callable<Void> durableTask = new Callable<Void>() {
+		@Override
+		public Void call() throws IOException {
+			drainPendingWrites();
+			logStorage.sync();
+			if(isJournalDiverged)
+				throw new IOException("The Journal does not Contain all the Mutations !");
+			return null;
+		}
+	};
+
+	/**
+	 * @param logStorage the storage used to write journal and snapshots
+	 * @param callbackExecutor the executor used to notify the listener
+	 * @param listener the listener notified when a write fails
+	 */
+	public PersistenceScheduler(LogStorage logStorage, Executor callbackExecutor, Listener listener) {
+		this.logStorage = logStorage;
+		this.callbackExecutor = callbackExecutor;
+		this.listener = listener;
+		this.writerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "LogPersistence");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Set how long the mutations are collected before being written on the journal
+	 * @param batchWindowMs the window in milliseconds (0 to write each mutation as soon as possible)
+	 */
+	public void setBatchWindow(long batchWindowMs) {
+		this.batchWindowMs = Math.max(0, batchWindowMs);
+	}
+
+	public long getBatchWindow() {
+		return batchWindowMs;
+	}
+
+	/**
+	 * Add a mutation to the current batch. The batch is written when the window expires.
+	 */
+	public void submit(byte operation, int position, long timestamp, double value) {
+		synchronized (lock) {
+			openBatch.add(operation, position, timestamp, value);
+
+			if(!isDrainScheduled) {
+				isDrainScheduled = true;
+				writerExecutor.schedule(drainTask, batchWindowMs, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Write a batch of mutations with a single append without waiting for the end of the window.
+	 * The mutations submitted before are written first.
+	 *
+	 * @param batch the mutations (not modified anymore by the caller)
+	 */
+	public void submitBatch(LogJournal.Batch batch) {
+		synchronized (lock) {
+			closeOpenBatch();
+			pendingWrites.add(new PendingWrite(batch, null, false));
+		}
+		writerExecutor.execute(drainTask);
+	}
+
+	/**
+	 * Request a new snapshot of the store. The mutations submitted so far are written on the current
+	 * journal generation and then the snapshot starts a new one.
+	 *
+	 * @param logSource the content of the store that is not modified anymore by the caller
+	 */
+	public void scheduleSnapshot(LogSource logSource) {
+		scheduleSnapshot(logSource, false);
+	}
+
+	/**
+	 * Request the snapshot of a store changed without journal records (e.g. replaced by an import
+	 * or with segments dropped by the retention). The records submitted after the call are
+	 * positioned on the new content, so if the snapshot fails they are not appended on the journal
+	 * of the previous content: the journal diverges until the next snapshot (see {@link #isJournalDiverged()}).
+	 *
+	 * @param logSource the content of the store that is not modified anymore by the caller
+	 */
+	public void scheduleReset(LogSource logSource) {
+		scheduleSnapshot(logSource, true);
+	}
+
+	private void scheduleSnapshot(LogSource logSource, boolean isReset) {
+		synchronized (lock) {
+			closeOpenBatch();
+			pendingWrites.add(new PendingWrite(null, logSource, isReset));
+		}
+		writerExecutor.execute(drainTask);
+	}
+
+	/**
+	 * Write the current batch without waiting for the end of the window. It does not block the caller.
+	 */
+	public void flush() {
+		synchronized (lock) {
+			closeOpenBatch();
+		}
+		writerExecutor.execute(drainTask);
+	}
+
+	/**
+	 * @return true if a write has failed and the files do not contain all the mutations submitted so
+	 * far: the mutations are not written anymore until a new snapshot of the whole store succeeds
+	 */
+	public boolean isJournalDiverged() {
+		return isJournalDiverged;
+	}
+
+	/**
+	 * Flush the current batch and wait until all the mutations submitted before the call are written
+	 * and forced on the storage device (unless the sync policy is SYNC_NONE)
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if the mutations have been written, false if the timeout elapsed or the journal
+	 * has diverged (see {@link #isJournalDiverged()})
+	 * @throws InterruptedException
+	 */
+	public boolean awaitDurable(long timeout, TimeUnit unit) throws InterruptedException {
+
+		flush();
+
+		//The writer is a single thread: the marker is executed after all the previous writes
+		Future<Void> marker = writerExecutor.submit(durableTask);
+
+		try {
+			marker.get(timeout, unit);
+			return true;
+		} catch (ExecutionException e) {
+			return false;
+		} catch (TimeoutException e) {
+			return false;
+		}
+	}
+
+	private void closeOpenBatch() {
+		if(!openBatch.isEmpty()) {
+			pendingWrites.add(new PendingWrite(openBatch, null, false));
+			openBatch = new LogJournal.Batch();
+		}
+	}
+
+	/*
+	 * Executed only by the writer thread
+	 */
+	private void drainPendingWrites() {
+
+		synchronized (lock) {
+			isDrainScheduled = false;
+			closeOpenBatch();
+		}
+
+		while(true) {
+
+			PendingWrite pendingWrite = null;
+
+			synchronized (lock) {
+				pendingWrite = pendingWrites.poll();
+			}
+
+			if(pendingWrite == null) {
+				scheduleSync();
+				return;
+			}
+
+			//The mutations that are not appended are kept in memory and stored by the next snapshot
+			if(pendingWrite.batch != null && !isJournalDiverged) {
+				try {
+					logStorage.append(pendingWrite.batch);
+				} catch (Exception e) {
+					isJournalDiverged = true;
+					notifyError(e);
+				}
+			}
+
+			if(pendingWrite.snapshot != null)
+				writeSnapshot(pendingWrite.snapshot, pendingWrite.isReset);
+		}
+	}
+
+	/*
+	 * Schedule the sync of the appended records that the sync policy has not forced yet
+	 */
+	private void scheduleSync() {
+		if(logStorage.isSyncPending()) {
+			synchronized (lock) {
+				if(!isSyncScheduled) {
+					isSyncScheduled = true;
+					writerExecutor.schedule(syncTask, logStorage.getSyncIntervalMs(), TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Executed only by the writer thread. The written segments are read on demand and can replace
+	 * the in-memory content of the snapshot. The snapshot contains all the mutations submitted
+	 * before it, so it ends a divergence of the journal.
+	 */
+	private void writeSnapshot(LogSource snapshot, boolean isReset) {
+
+		LogSegmentSet storedSnapshot = null;
+
+		try {
+			long snapshotGeneration = logStorage.startNewGeneration();
+			storedSnapshot = logStorage.writeSnapshot(snapshotGeneration, snapshot);
+			isJournalDiverged = false;
+		} catch (Exception e) {
+			//The previous snapshot and journals hold the content before the reset, not the following records
+			if(isReset)
+				isJournalDiverged = true;
+			notifyError(e);
+		}
+
+		notifySnapshotCompleted(snapshot, storedSnapshot);
+	}
+
+	private void notifySnapshotCompleted(final LogSource snapshot, final LogSegmentSet storedSnapshot) {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onSnapshotCompleted(snapshot, storedSnapshot);
+				}
+			});
+	}
+
+	private void notifyError(final Exception e) {
+		if(listener != null)
+			callbackExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.onPersistenceError(e);
+				}
+			});
+	}
+}
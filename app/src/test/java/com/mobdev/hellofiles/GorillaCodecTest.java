@@ -0,0 +1,139 @@
+package com.mobdev.hellofiles;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trip of the bit streams and of the Gorilla timestamp and value columns
+ */
+public class GorillaCodecTest {
+
+	@Test
+	public void bitsRoundTrip() {
+
+		Random random = new Random(1);
+		int count = 10000;
+		int[] widths = new int[count];
+		long[] fields = new long[count];
+		BitWriter writer = new BitWriter(16);
+
+		for(int i = 0; i < count; i++) {
+			widths[i] = random.nextInt(65);
+			fields[i] = widths[i] == 0 ? 0 : random.nextLong() & (-1L >>> (64 - widths[i]));
+			writer.writeBits(fields[i], widths[i]);
+		}
+
+		writer.writeBit(true);
+
+		long bitCount = writer.getBitCount();
+		int byteLength = writer.getByteLength();
+		BitReader reader = new BitReader(ByteBuffer.wrap(writer.finish(), 0, byteLength));
+
+		assertEquals((bitCount + 7) / 8, byteLength);
+
+		for(int i = 0; i < count; i++)
+			assertEquals("Field " + i, fields[i], reader.readBits(widths[i]));
+
+		assertTrue(reader.readBit());
+		assertFalse(reader.readBit());
+	}
+
+	@Test
+	public void regularTimestampsRoundTrip() {
+
+		long[] timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+
+		for(int i = 0; i < timestamps.length; i++)
+			timestamps[i] = 1600000000000L + i * 1000L + (i % 7 == 0 ? 3 : 0);
+
+		assertTimestampsRoundTrip(timestamps);
+	}
+
+	@Test
+	public void timestampJumpsRoundTrip() {
+
+		Random random = new Random(2);
+		long[] timestamps = new long[LogSnapshotFormat.BLOCK_SIZE];
+		timestamps[0] = 1600000000000L;
+
+		//Deltas of every size class, with overflowing deltas of delta between the extremes
+		for(int i = 1; i < timestamps.length; i++) {
+			switch (i % 8) {
+				case 0: timestamps[i] = timestamps[i - 1]; break;
+				case 1: timestamps[i] = timestamps[i - 1] + random.nextInt(100); break;
+				case 2: timestamps[i] = timestamps[i - 1] - random.nextInt(5000); break;
+				case 3: timestamps[i] = timestamps[i - 1] + random.nextInt(Integer.MAX_VALUE); break;
+				case 4: timestamps[i] = Long.MAX_VALUE; break;
+				case 5: timestamps[i] = Long.MIN_VALUE; break;
+				case 6: timestamps[i] = random.nextLong(); break;
+				default: timestamps[i] = 0; break;
+			}
+		}
+
+		assertTimestampsRoundTrip(timestamps);
+	}
+
+	@Test
+	public void specialValuesRoundTrip() {
+
+		double[] values = {
+				1.0, 1.0, 1.0, -0.0, 0.0, -0.0, Double.NaN, Double.NaN, Double.longBitsToDouble(0x7FF8000000000123L),
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE, 21.5, 21.5,
+				21.625, 21.5, 0.0, 0.0, 1e-300, 1e300
+		};
+
+		assertValuesRoundTrip(values);
+	}
+
+	@Test
+	public void randomValuesRoundTrip() {
+
+		Random random = new Random(3);
+		double[] values = new double[LogSnapshotFormat.BLOCK_SIZE];
+
+		for(int i = 0; i < values.length; i++) {
+			switch (i % 4) {
+				case 0: values[i] = Double.longBitsToDouble(random.nextLong()); break;
+				case 1: values[i] = values[i - 1]; break;
+				case 2: values[i] = Math.round(random.nextGaussian() * 100) / 10.0; break;
+				default: values[i] = random.nextDouble(); break;
+			}
+		}
+
+		assertValuesRoundTrip(values);
+	}
+
+	private static void assertTimestampsRoundTrip(long[] timestamps) {
+
+		BitWriter writer = new BitWriter(64);
+		GorillaCodec.encodeTimestamps(timestamps, timestamps.length, writer);
+
+		int byteLength = writer.getByteLength();
+		GorillaCodec.TimestampDecoder decoder = new GorillaCodec.TimestampDecoder(timestamps[0], ByteBuffer.wrap(writer.finish(), 0, byteLength));
+
+		//The first timestamp is stored outside of the stream
+		for(int i = 1; i < timestamps.length; i++)
+			assertEquals("Timestamp " + i, timestamps[i], decoder.next());
+	}
+
+	/*
+	 * The values are compared by their raw bits, so -0.0 and the NaN payloads are checked too
+	 */
+	private static void assertValuesRoundTrip(double[] values) {
+
+		BitWriter writer = new BitWriter(64);
+		GorillaCodec.encodeValues(values, values.length, writer);
+
+		int byteLength = writer.getByteLength();
+		GorillaCodec.ValueDecoder decoder = new GorillaCodec.ValueDecoder(ByteBuffer.wrap(writer.finish(), 0, byteLength));
+
+		for(int i = 0; i < values.length; i++)
+			assertEquals("Value " + i, Double.doubleToRawLongBits(values[i]), decoder.nextBits());
+	}
+}
@@ -0,0 +1,161 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replay of the journal records and truncation of the invalid tail
+ */
+public class LogJournalTest {
+
+	private File file = null;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("journal", ".journal");
+		file.delete();
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void replayAppliesAllTheRecords() throws IOException {
+
+		writeRecords(10);
+
+		ArrayLogStore logStore = new ArrayLogStore();
+
+		assertEquals(10, LogJournal.replay(file, logStore));
+		assertEquals(8, logStore.size());
+		assertEquals(1000L, logStore.getTimestamp(0));
+		assertEquals(9000L, logStore.getTimestamp(logStore.size() - 1));
+		assertEquals(LogJournal.HEADER_SIZE + 10L * LogJournal.RECORD_SIZE, file.length());
+	}
+
+	@Test
+	public void tornTailIsTruncated() throws IOException {
+
+		writeRecords(10);
+
+		//The last record has been written only in part
+		long validLength = LogJournal.HEADER_SIZE + 9L * LogJournal.RECORD_SIZE;
+		setLength(validLength + LogJournal.RECORD_SIZE / 2);
+
+		ArrayLogStore logStore = new ArrayLogStore();
+
+		assertEquals(9, LogJournal.replay(file, logStore));
+		assertEquals(validLength, file.length());
+
+		//The following appends start after the last valid record
+		appendRecord(LogJournal.OP_ADD, 42000L);
+
+		logStore = new ArrayLogStore();
+		assertEquals(10, LogJournal.replay(file, logStore));
+		assertEquals(42000L, logStore.getTimestamp(logStore.size() - 1));
+	}
+
+	@Test
+	public void badChecksumTruncatesFromTheDamagedRecord() throws IOException {
+
+		writeRecords(10);
+
+		//Flip a byte of the timestamp of the fifth record
+		long damagedOffset = LogJournal.HEADER_SIZE + 4L * LogJournal.RECORD_SIZE + 6;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(damagedOffset);
+			int damagedByte = raf.read();
+			raf.seek(damagedOffset);
+			raf.write(damagedByte ^ 0xFF);
+		} finally {
+			raf.close();
+		}
+
+		ArrayLogStore logStore = new ArrayLogStore();
+
+		assertEquals(4, LogJournal.replay(file, logStore));
+		assertEquals(4, logStore.size());
+		assertEquals(LogJournal.HEADER_SIZE + 4L * LogJournal.RECORD_SIZE, file.length());
+	}
+
+	@Test
+	public void tornHeaderIsTruncated() throws IOException {
+
+		writeRecords(10);
+		setLength(LogJournal.HEADER_SIZE - 2);
+
+		assertEquals(0, LogJournal.replay(file, new ArrayLogStore()));
+		assertEquals(0, file.length());
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownHeaderFails() throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.write(new byte[LogJournal.HEADER_SIZE + LogJournal.RECORD_SIZE]);
+		} finally {
+			raf.close();
+		}
+
+		LogJournal.replay(file, new ArrayLogStore());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidRemoveFails() throws IOException {
+		appendRecord(LogJournal.OP_REMOVE, 0);
+		LogJournal.replay(file, new ArrayLogStore());
+	}
+
+	/*
+	 * Nine adds (timestamps 1000 to 9000) and then the removal of the log at position 4
+	 */
+	private void writeRecords(int count) throws IOException {
+
+		LogJournal journal = new LogJournal(file);
+		LogJournal.Batch batch = new LogJournal.Batch();
+
+		for(int i = 0; i < count - 1; i++)
+			batch.add(LogJournal.OP_ADD, i, (i + 1) * 1000L, i);
+
+		batch.add(LogJournal.OP_REMOVE, 4, 5000L, 4);
+
+		try {
+			journal.append(batch);
+		} finally {
+			journal.close();
+		}
+	}
+
+	private void appendRecord(byte operation, long timestamp) throws IOException {
+
+		LogJournal journal = new LogJournal(file);
+		LogJournal.Batch batch = new LogJournal.Batch();
+		batch.add(operation, 0, timestamp, 1.0);
+
+		try {
+			journal.append(batch);
+		} finally {
+			journal.close();
+		}
+	}
+
+	private void setLength(long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+}
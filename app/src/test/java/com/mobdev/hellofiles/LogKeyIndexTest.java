@@ -0,0 +1,261 @@
+package com.mobdev.hellofiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Key index compared with a map of the counts, and merge of an imported document
+ */
+public class LogKeyIndexTest {
+
+	/*
+	 * Mask of the table of a new index (16 slots)
+	 */
+	private static final int MIN_MASK = 15;
+
+	@Test
+	public void randomOperationsMatchTheModel() {
+
+		Random random = new Random(1);
+		LogKeyIndex index = new LogKeyIndex();
+		Map<String, Integer> model = new HashMap<String, Integer>();
+
+		for(int i = 0; i < 20000; i++) {
+
+			//Few distinct keys, so most of the operations hit a key already in the index
+			long timestamp = random.nextInt(500);
+			double value = random.nextInt(4);
+
+			if(random.nextInt(3) == 0)
+				assertEquals(modelRemove(model, timestamp, value), index.remove(timestamp, value));
+			else {
+				index.add(timestamp, value);
+				modelAdd(model, timestamp, value);
+			}
+
+			if(i % 1000 == 0)
+				assertMatchesModel(model, index);
+		}
+
+		assertMatchesModel(model, index);
+	}
+
+	@Test
+	public void removalShiftsBackAcrossTheTableEnd() {
+
+		//Three keys with the last slot as home slot wrap to the first slots, followed by a key of the first slot
+		long[] lastSlotKeys = findTimestamps(MIN_MASK, 3);
+		long firstSlotKey = findTimestamps(0, 1)[0];
+		LogKeyIndex index = new LogKeyIndex();
+		Map<String, Integer> model = new HashMap<String, Integer>();
+
+		for(int i = 0; i < lastSlotKeys.length; i++) {
+			index.add(lastSlotKeys[i], 0);
+			modelAdd(model, lastSlotKeys[i], 0);
+		}
+		index.add(firstSlotKey, 0);
+		index.add(firstSlotKey, 0);
+		modelAdd(model, firstSlotKey, 0);
+		modelAdd(model, firstSlotKey, 0);
+
+		assertTrue(index.remove(lastSlotKeys[0], 0));
+		modelRemove(model, lastSlotKeys[0], 0);
+		assertMatchesModel(model, index);
+
+		assertTrue(index.remove(lastSlotKeys[2], 0));
+		modelRemove(model, lastSlotKeys[2], 0);
+		assertMatchesModel(model, index);
+
+		assertTrue(index.remove(firstSlotKey, 0));
+		modelRemove(model, firstSlotKey, 0);
+		assertMatchesModel(model, index);
+
+		assertTrue(index.remove(lastSlotKeys[1], 0));
+		modelRemove(model, lastSlotKeys[1], 0);
+		assertMatchesModel(model, index);
+
+		assertTrue(index.remove(firstSlotKey, 0));
+		assertFalse(index.remove(firstSlotKey, 0));
+		assertEquals(0, index.size());
+		assertEquals(0, index.getKeyCount());
+	}
+
+	@Test
+	public void resizeKeepsTheCounts() {
+
+		LogKeyIndex index = new LogKeyIndex();
+		Map<String, Integer> model = new HashMap<String, Integer>();
+
+		//From 16 slots to 16384 slots
+		for(int i = 0; i < 5000; i++) {
+			for(int j = 0; j <= i % 3; j++) {
+				index.add(i * 1000L, i * 0.5);
+				modelAdd(model, i * 1000L, i * 0.5);
+			}
+			if(Integer.bitCount(i) == 1)
+				assertMatchesModel(model, index);
+		}
+
+		assertMatchesModel(model, index);
+		assertFalse(index.contains(1000L, 0.0));
+		assertFalse(index.contains(5000 * 1000L, 2500.0));
+	}
+
+	@Test
+	public void valuesAreComparedByTheirBits() {
+
+		LogKeyIndex index = new LogKeyIndex();
+		index.add(1, 0.0);
+		index.add(1, Double.NaN);
+
+		assertFalse(index.contains(1, -0.0));
+		assertTrue(index.contains(1, Double.NaN));
+		assertTrue(index.remove(1, Double.NaN));
+		assertFalse(index.contains(1, Double.NaN));
+		assertTrue(index.contains(1, 0.0));
+	}
+
+	@Test
+	public void mergeIsIdempotent() {
+
+		ArrayLogStore logList = new ArrayLogStore();
+		logList.add(1000, 1.0);
+		logList.add(2000, 2.0);
+		logList.add(2000, 2.0);
+		logList.add(3000, 3.0);
+
+		//Logs already in the list, a log more than in the list, duplicates and new logs
+		ArrayLogStore document = new ArrayLogStore();
+		document.add(1000, 1.0);
+		document.add(2000, 2.0);
+		document.add(2000, 2.0);
+		document.add(2000, 2.0);
+		document.add(4000, 4.0);
+		document.add(4000, 4.0);
+		document.add(5000, 5.0);
+		document.add(3000, -3.0);
+
+		assertEquals(5, merge(logList, document));
+		assertEquals(9, logList.size());
+		assertEquals(2000, logList.getTimestamp(4));
+		assertEquals(4000, logList.getTimestamp(5));
+		assertEquals(4000, logList.getTimestamp(6));
+		assertEquals(5000, logList.getTimestamp(7));
+		assertEquals(-3.0, logList.getValue(8), 0);
+
+		ArrayLogStore mergedList = (ArrayLogStore)logList.copy();
+
+		assertEquals(0, merge(logList, document));
+		assertSameLogs(mergedList, logList);
+	}
+
+	@Test
+	public void randomMergeIsIdempotent() {
+
+		Random random = new Random(2);
+		ArrayLogStore logList = new ArrayLogStore();
+		ArrayLogStore document = new ArrayLogStore();
+
+		for(int i = 0; i < 3000; i++)
+			logList.add(random.nextInt(2000), random.nextInt(3));
+		for(int i = 0; i < 10000; i++)
+			document.add(random.nextInt(4000), random.nextInt(3));
+
+		merge(logList, document);
+		ArrayLogStore mergedList = (ArrayLogStore)logList.copy();
+
+		assertEquals(0, merge(logList, document));
+		assertSameLogs(mergedList, logList);
+
+		//Every log of the document is in the list at least as many times
+		LogKeyIndex listKeys = LogKeyIndex.build(logList);
+		for(int i = 0; i < document.size(); i++)
+			assertTrue(listKeys.remove(document.getTimestamp(i), document.getValue(i)));
+	}
+
+	/*
+	 * Append the missing logs as the import in LogDescriptorManager.IMPORT_MERGE mode
+	 */
+	private static int merge(ArrayLogStore logList, LogSource document) {
+		ArrayLogStore newLogs = LogKeyIndex.selectMissing(logList, document);
+		for(int i = 0; i < newLogs.size(); i++)
+			logList.add(newLogs.getTimestamp(i), newLogs.getValue(i));
+		return newLogs.size();
+	}
+
+	/*
+	 * Timestamps of keys with value 0 whose home slot in a new index is the target one
+	 */
+	private static long[] findTimestamps(int homeSlot, int count) {
+
+		List<Long> found = new ArrayList<Long>();
+		long bits = Double.doubleToLongBits(0);
+
+		for(long timestamp = 1; found.size() < count; timestamp++)
+			if((LogKeyIndex.hash(timestamp, bits) & MIN_MASK) == homeSlot)
+				found.add(timestamp);
+
+		long[] timestamps = new long[count];
+		for(int i = 0; i < count; i++)
+			timestamps[i] = found.get(i);
+		return timestamps;
+	}
+
+	private static String getKey(long timestamp, double value) {
+		return timestamp + "/" + Double.doubleToLongBits(value);
+	}
+
+	private static void modelAdd(Map<String, Integer> model, long timestamp, double value) {
+		String key = getKey(timestamp, value);
+		Integer count = model.get(key);
+		model.put(key, count == null ? 1 : count + 1);
+	}
+
+	private static boolean modelRemove(Map<String, Integer> model, long timestamp, double value) {
+
+		String key = getKey(timestamp, value);
+		Integer count = model.get(key);
+
+		if(count == null)
+			return false;
+
+		if(count == 1)
+			model.remove(key);
+		else
+			model.put(key, count - 1);
+		return true;
+	}
+
+	private static void assertMatchesModel(Map<String, Integer> model, LogKeyIndex index) {
+
+		int size = 0;
+
+		for(Map.Entry<String, Integer> entry : model.entrySet()) {
+			String[] parts = entry.getKey().split("/");
+			long timestamp = Long.parseLong(parts[0]);
+			double value = Double.longBitsToDouble(Long.parseLong(parts[1]));
+			assertEquals(entry.getKey(), (long)entry.getValue(), index.count(timestamp, value));
+			size += entry.getValue();
+		}
+
+		assertEquals(model.size(), index.getKeyCount());
+		assertEquals(size, index.size());
+	}
+
+	private static void assertSameLogs(LogSource expected, LogSource actual) {
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+			assertEquals(Double.doubleToLongBits(expected.getValue(i)), Double.doubleToLongBits(actual.getValue(i)));
+		}
+	}
+}
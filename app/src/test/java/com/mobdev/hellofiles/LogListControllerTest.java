@@ -0,0 +1,217 @@
+package com.mobdev.hellofiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Mutations, imports and reload of the log list, with the test thread as the Main Thread
+ */
+public class LogListControllerTest {
+
+	private static final String BASE_NAME = "loglist";
+
+	private static final long TIMEOUT_MS = 10000;
+
+	private static final String DOCUMENT = "[{\"timestamp\":1000,\"value\":1.0},{\"timestamp\":3000,\"value\":3.0},{\"timestamp\":3000,\"value\":3.0}]";
+
+	private File directory = null;
+
+	private final Thread mainThread = Thread.currentThread();
+
+	private final LinkedBlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<Runnable>();
+
+	private final Executor mainThreadExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			callbacks.add(command);
+		}
+	};
+
+	private int changedLists = 0;
+
+	private final LogListController.Host host = new LogListController.Host() {
+		@Override
+		public boolean isMainThread() {
+			return Thread.currentThread() == mainThread;
+		}
+
+		@Override
+		public LogListController.ListDiff calculateDiff(LogSource oldList, LogSource newList) {
+			return null;
+		}
+
+		@Override
+		public void onDebugMessage(String message) {
+		}
+
+		@Override
+		public void onErrorMessage(String message) {
+		}
+
+		@Override
+		public void onPersistenceError(Exception e) {
+			throw new IllegalStateException(e);
+		}
+
+		@Override
+		public void onLoadError(Exception e, File recoveryDirectory) {
+			throw new IllegalStateException(e);
+		}
+	};
+
+	private final LogListListener listListener = new LogListListener() {
+		@Override
+		public void onLogsInserted(int position, int count) {
+		}
+
+		@Override
+		public void onLogsRemoved(int position, int count) {
+		}
+
+		@Override
+		public void onLogsChanged(int position, int count) {
+		}
+
+		@Override
+		public void onLogListChanged() {
+			changedLists++;
+		}
+	};
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("controller", "");
+		directory.delete();
+		assertTrue(directory.mkdir());
+	}
+
+	@After
+	public void deleteDirectory() {
+		delete(directory);
+	}
+
+	@Test
+	public void mutationsAreReloaded() throws Exception {
+
+		LogListController controller = createController();
+		controller.addLog(2000L, 2.0);
+		controller.addLogs(new long[] { 3000L, 4000L }, new double[] { 3.0, 4.0 });
+		controller.addLogToHead(1000L, 1.0);
+		controller.removeLog(3000L, 3.0);
+		assertTrue(controller.close(TIMEOUT_MS));
+
+		assertSameTimestamps(new long[] { 1000L, 2000L, 4000L }, createController().getLogStore());
+	}
+
+	@Test
+	public void mergeImportAppendsOnlyTheMissingLogs() throws Exception {
+
+		LogListController controller = createController();
+		controller.addLog(1000L, 1.0);
+		controller.addLog(2000L, 2.0);
+
+		assertEquals(2, runImport(controller, LogListController.IMPORT_MERGE));
+		assertEquals(0, runImport(controller, LogListController.IMPORT_MERGE));
+		assertSameTimestamps(new long[] { 1000L, 2000L, 3000L, 3000L }, controller.getLogStore());
+		assertTrue(controller.close(TIMEOUT_MS));
+
+		assertSameTimestamps(new long[] { 1000L, 2000L, 3000L, 3000L }, createController().getLogStore());
+	}
+
+	@Test
+	public void replaceImportIsStored() throws Exception {
+
+		LogListController controller = createController();
+		controller.addLog(2000L, 2.0);
+		controller.addLogListListener(listListener);
+
+		assertEquals(3, runImport(controller, LogListController.IMPORT_REPLACE));
+		assertEquals(1, changedLists);
+		assertEquals(3, controller.getOverview().size());
+
+		//Positioned on the imported list
+		controller.removeLog(0);
+		assertTrue(controller.close(TIMEOUT_MS));
+
+		assertSameTimestamps(new long[] { 3000L, 3000L }, createController().getLogStore());
+	}
+
+	private LogListController createController() {
+		LogListController controller = new LogListController(directory, BASE_NAME, "loglist.txt", mainThreadExecutor, host);
+		controller.load();
+		return controller;
+	}
+
+	/*
+	 * Run the callbacks of the background threads until the import is completed
+	 */
+	private int runImport(LogListController controller, int importMode) throws Exception {
+
+		final int[] result = { -1 };
+
+		controller.startImport(new LogListController.ImportSource() {
+			@Override
+			public InputStream openInputStream() throws IOException {
+				return new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8"));
+			}
+
+			@Override
+			public long getSize() {
+				return DOCUMENT.length();
+			}
+		}, importMode, new LogTransferListener() {
+			@Override
+			public void onProgress(int processedLogs, long processedBytes, long totalBytes) {
+			}
+
+			@Override
+			public void onCompleted(int processedLogs) {
+				result[0] = processedLogs;
+			}
+
+			@Override
+			public void onFailed(Exception e) {
+				throw new IllegalStateException(e);
+			}
+
+			@Override
+			public void onCancelled() {
+				throw new IllegalStateException("Import Cancelled");
+			}
+		});
+
+		while(result[0] < 0) {
+			Runnable callback = callbacks.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+			assertTrue("Import not Completed", callback != null);
+			callback.run();
+		}
+
+		return result[0];
+	}
+
+	private static void assertSameTimestamps(long[] expectedTimestamps, LogSource logs) {
+		assertEquals(expectedTimestamps.length, logs.size());
+		for(int i = 0; i < expectedTimestamps.length; i++)
+			assertEquals("Timestamp " + i, expectedTimestamps[i], logs.getTimestamp(i));
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
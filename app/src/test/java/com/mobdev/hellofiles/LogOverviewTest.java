@@ -0,0 +1,92 @@
+package com.mobdev.hellofiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Overview of separate groups of logs (e.g. segments) written, read and merged
+ */
+public class LogOverviewTest {
+
+	/*
+	 * Slice counts of the compared envelopes: the longer slices are drawn from the coarser levels
+	 */
+	private static final int[] SLICE_COUNTS = {1, 7, 64, 1000};
+
+	@Test
+	public void mergedPartsMatchTheWholeList() throws IOException {
+
+		Random random = new Random(3);
+		ArrayLogStore logs = new ArrayLogStore();
+		long timestamp = 1600000000000L;
+
+		for(int i = 0; i < 20000; i++) {
+			timestamp += random.nextInt(10000);
+			logs.add(timestamp, random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian());
+		}
+
+		//The parts end in the middle of a bucket, which is merged from two parts
+		int[] partEnds = {1234, 5000, 12345, logs.size()};
+		LogOverview mergedOverview = new LogOverview();
+		int partStart = 0;
+
+		for(int partEnd : partEnds) {
+			ArrayLogStore part = new ArrayLogStore();
+			for(int i = partStart; i < partEnd; i++)
+				part.add(logs.getTimestamp(i), logs.getValue(i));
+			mergedOverview.merge(roundTrip(LogOverview.build(part)));
+			partStart = partEnd;
+		}
+
+		assertSameOverview(LogOverview.build(logs), mergedOverview);
+	}
+
+	@Test
+	public void emptyOverviewRoundTrip() throws IOException {
+		LogOverview overview = roundTrip(new LogOverview());
+		assertEquals(0, overview.size());
+		assertEquals(Long.MAX_VALUE, overview.getFirstTimestamp());
+		assertEquals(Long.MIN_VALUE, overview.getLastTimestamp());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidHeaderFails() throws IOException {
+		LogOverview.read(new DataInputStream(new ByteArrayInputStream(new byte[64])));
+	}
+
+	private static LogOverview roundTrip(LogOverview overview) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		overview.write(new DataOutputStream(bytes));
+		return LogOverview.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	static void assertSameOverview(LogOverview expectedOverview, LogOverview overview) {
+
+		assertEquals(expectedOverview.size(), overview.size());
+		assertEquals(expectedOverview.getFirstTimestamp(), overview.getFirstTimestamp());
+		assertEquals(expectedOverview.getLastTimestamp(), overview.getLastTimestamp());
+
+		for(int sliceCount : SLICE_COUNTS) {
+
+			ArrayLogStore expectedEnvelope = new ArrayLogStore();
+			ArrayLogStore envelope = new ArrayLogStore();
+			expectedOverview.getEnvelope(expectedOverview.getFirstTimestamp(), expectedOverview.getLastTimestamp(), sliceCount, expectedEnvelope);
+			overview.getEnvelope(expectedOverview.getFirstTimestamp(), expectedOverview.getLastTimestamp(), sliceCount, envelope);
+
+			assertEquals("Slices " + sliceCount, expectedEnvelope.size(), envelope.size());
+
+			for(int i = 0; i < expectedEnvelope.size(); i++) {
+				assertEquals("Slices " + sliceCount + " Timestamp " + i, expectedEnvelope.getTimestamp(i), envelope.getTimestamp(i));
+				assertEquals("Slices " + sliceCount + " Value " + i, expectedEnvelope.getValue(i), envelope.getValue(i), 0.0);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round trip of the snapshot files through the column encodings selected for each block
+ */
+public class LogSnapshotFormatTest {
+
+	private File file = null;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("loglist", ".snapshot");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void blocksRoundTrip() throws IOException {
+
+		Random random = new Random(4);
+		ArrayLogStore logs = new ArrayLogStore();
+		long timestamp = 1600000000000L;
+
+		//Blocks of sensor samples, of random values and of irregular timestamps with special values
+		for(int i = 0; i < LogSnapshotFormat.BLOCK_SIZE; i++)
+			logs.add(timestamp += 1000, 20.0 + (i / 50) * 0.5);
+
+		for(int i = 0; i < LogSnapshotFormat.BLOCK_SIZE; i++)
+			logs.add(timestamp += 1000, Double.longBitsToDouble(random.nextLong()));
+
+		double[] specialValues = {Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, 1.0, 1.0};
+
+		for(int i = 0; i < LogSnapshotFormat.BLOCK_SIZE / 2; i++)
+			logs.add(timestamp += random.nextInt(1 << 20) - (1 << 18), specialValues[i % specialValues.length]);
+
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			LogSnapshotFormat.write(fos.getChannel(), logs, null);
+		} finally {
+			fos.close();
+		}
+
+		LogSnapshotReader reader = new LogSnapshotReader(file);
+
+		assertEquals(logs.size(), reader.size());
+
+		for(int i = 0; i < logs.size(); i++) {
+			assertEquals("Timestamp " + i, logs.getTimestamp(i), reader.getTimestamp(i));
+			assertEquals("Value " + i, Double.doubleToRawLongBits(logs.getValue(i)), Double.doubleToRawLongBits(reader.getValue(i)));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void previousVersionIsRejected() throws IOException {
+
+		ArrayLogStore logs = new ArrayLogStore();
+		logs.add(1000L, 1.0);
+
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			LogSnapshotFormat.write(fos.getChannel(), logs, null);
+		} finally {
+			fos.close();
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(4);
+			raf.writeShort(1);
+		} finally {
+			raf.close();
+		}
+
+		new LogSnapshotReader(file);
+	}
+}
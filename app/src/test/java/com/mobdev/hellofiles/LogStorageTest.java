@@ -0,0 +1,273 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Journal generations, snapshots and reload of the files of the log list
+ */
+public class LogStorageTest {
+
+	private static final String BASE_NAME = "loglist";
+
+	private static final int SEGMENT_RECORDS = 1000;
+
+	private static final int SEGMENT_COUNT = 5;
+
+	private File directory = null;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("storage", "");
+		directory.delete();
+		assertTrue(directory.mkdir());
+	}
+
+	@After
+	public void deleteDirectory() {
+		delete(directory);
+	}
+
+	@Test
+	public void legacyJsonListIsLoaded() throws IOException {
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "loglist.txt")), "UTF-8");
+		try {
+			writer.write("[{\"timestamp\":1000,\"value\":1.5},{\"timestamp\":2000,\"value\":2.5}]");
+		} finally {
+			writer.close();
+		}
+
+		PagedLogStore logStore = new LogStorage(directory, BASE_NAME, "loglist.txt").load();
+
+		assertEquals(2, logStore.size());
+		assertEquals(1000L, logStore.getTimestamp(0));
+		assertEquals(2.5, logStore.getValue(1), 0.0);
+	}
+
+	@Test
+	public void failedGenerationKeepsTheCurrentJournal() throws IOException {
+
+		LogStorage logStorage = new LogStorage(directory, BASE_NAME, "loglist.txt");
+		PagedLogStore logStore = logStorage.load();
+
+		append(logStorage, logStore, 1000L);
+
+		//The journal of the next generation can not be opened
+		File blockedJournal = new File(directory, BASE_NAME + ".1.journal");
+		assertTrue(blockedJournal.mkdir());
+
+		try {
+			logStorage.startNewGeneration();
+			fail("The new journal has been opened");
+		} catch (IOException e) {
+			//Expected
+		}
+
+		append(logStorage, logStore, 2000L);
+
+		assertTrue(blockedJournal.delete());
+		assertEquals(1, logStorage.startNewGeneration());
+
+		append(logStorage, logStore, 3000L);
+		logStorage.close();
+
+		PagedLogStore reloadedStore = new LogStorage(directory, BASE_NAME, "loglist.txt").load();
+
+		assertEquals(3, reloadedStore.size());
+		assertEquals(1000L, reloadedStore.getTimestamp(0));
+		assertEquals(2000L, reloadedStore.getTimestamp(1));
+		assertEquals(3000L, reloadedStore.getTimestamp(2));
+	}
+
+	@Test
+	public void fewRemovalsReuseEverySegment() throws IOException {
+
+		LogStorage logStorage = createSegmentedStorage();
+		PagedLogStore logStore = logStorage.load();
+		ArrayLogStore expectedLogs = new ArrayLogStore();
+		List<Long> segmentIds = writeSegments(logStorage, logStore, expectedLogs);
+
+		//Removals spread over all the segments, below the compaction threshold of each one
+		for(int i = 0; i < 50; i++)
+			remove(logStore, expectedLogs, (i * 97) % logStore.size());
+
+		LogSegmentSet storedSnapshot = snapshot(logStorage, logStore);
+
+		assertEquals(segmentIds, getSegmentIds(storedSnapshot));
+		assertEquals(50, storedSnapshot.getTombstoneCount());
+		assertEquals(SEGMENT_COUNT, countSegmentFiles());
+		assertSameLogs(expectedLogs, logStore);
+	}
+
+	@Test
+	public void tombstonesSurviveReload() throws IOException {
+
+		LogStorage logStorage = createSegmentedStorage();
+		PagedLogStore logStore = logStorage.load();
+		ArrayLogStore expectedLogs = new ArrayLogStore();
+		writeSegments(logStorage, logStore, expectedLogs);
+
+		for(int i = 0; i < 50; i++)
+			remove(logStore, expectedLogs, (i * 97) % logStore.size());
+
+		snapshot(logStorage, logStore);
+
+		//A removal applied after the snapshot is replayed from the journal
+		remove(logStore, expectedLogs, 10);
+		LogJournal.Batch batch = new LogJournal.Batch();
+		batch.add(LogJournal.OP_REMOVE, 10, 0, 0);
+		logStorage.append(batch);
+		logStorage.close();
+
+		PagedLogStore reloadedStore = createSegmentedStorage().load();
+
+		assertEquals(50, ((LogSegmentSet)reloadedStore.getBase()).getTombstoneCount());
+		assertSameLogs(expectedLogs, reloadedStore);
+		assertEquals(123, reloadedStore.indexOf(expectedLogs.getTimestamp(123), expectedLogs.getValue(123)));
+		assertEquals(expectedLogs.size(), reloadedStore.getAggregates().getStatistics().getCount());
+	}
+
+	@Test
+	public void manyRemovalsRewriteOnlyTheirSegment() throws IOException {
+
+		LogStorage logStorage = createSegmentedStorage();
+		PagedLogStore logStore = logStorage.load();
+		ArrayLogStore expectedLogs = new ArrayLogStore();
+		List<Long> segmentIds = writeSegments(logStorage, logStore, expectedLogs);
+
+		//300 removals in the first segment, over the 25% threshold
+		for(int i = 0; i < 300; i++)
+			remove(logStore, expectedLogs, 100);
+
+		LogSegmentSet storedSnapshot = snapshot(logStorage, logStore);
+		List<Long> newSegmentIds = getSegmentIds(storedSnapshot);
+
+		assertEquals(SEGMENT_COUNT, newSegmentIds.size());
+		assertFalse(segmentIds.contains(newSegmentIds.get(0)));
+		assertEquals(segmentIds.subList(1, SEGMENT_COUNT), newSegmentIds.subList(1, SEGMENT_COUNT));
+		assertEquals(0, storedSnapshot.getTombstoneCount());
+		assertEquals(SEGMENT_RECORDS - 300, storedSnapshot.getSegments().get(0).size());
+		assertEquals(SEGMENT_COUNT, countSegmentFiles());
+		assertSameLogs(expectedLogs, logStore);
+	}
+
+	@Test
+	public void overviewIsLoadedFromTheSegments() throws IOException {
+
+		LogStorage logStorage = createSegmentedStorage();
+		PagedLogStore logStore = logStorage.load();
+		ArrayLogStore expectedLogs = new ArrayLogStore();
+		List<Long> segmentIds = writeSegments(logStorage, logStore, expectedLogs);
+
+		for(int i = 0; i < 50; i++)
+			remove(logStore, expectedLogs, (i * 97) % logStore.size());
+
+		snapshot(logStorage, logStore);
+		logStorage.close();
+
+		for(long segmentId : segmentIds)
+			assertTrue(new File(directory, BASE_NAME + "-" + segmentId + ".overview").exists());
+
+		PagedLogStore reloadedStore = createSegmentedStorage().load();
+		reloadedStore.add(1700000000000L, 500.0);
+		expectedLogs.add(1700000000000L, 500.0);
+
+		LogOverviewTest.assertSameOverview(LogOverview.build(expectedLogs), reloadedStore.getOverview());
+	}
+
+	private LogStorage createSegmentedStorage() {
+		LogStorage logStorage = new LogStorage(directory, BASE_NAME, "loglist.txt");
+		logStorage.setSegmentPolicy(new LogSegmentPolicy(SEGMENT_RECORDS, LogSegmentPolicy.UNLIMITED, LogSegmentPolicy.UNLIMITED,
+				LogSegmentPolicy.UNLIMITED, LogSegmentPolicy.UNLIMITED, 0.25f));
+		return logStorage;
+	}
+
+	/*
+	 * Store SEGMENT_COUNT full segments and return their ids
+	 */
+	private static List<Long> writeSegments(LogStorage logStorage, PagedLogStore logStore, ArrayLogStore expectedLogs) throws IOException {
+
+		for(int i = 0; i < SEGMENT_COUNT * SEGMENT_RECORDS; i++) {
+			logStore.add(1600000000000L + i * 1000L, i % 100);
+			expectedLogs.add(1600000000000L + i * 1000L, i % 100);
+		}
+
+		LogSegmentSet storedSnapshot = snapshot(logStorage, logStore);
+
+		assertEquals(SEGMENT_COUNT, storedSnapshot.getSegments().size());
+		return getSegmentIds(storedSnapshot);
+	}
+
+	/*
+	 * Same steps of the snapshots of LogDescriptorManager (without the background writer)
+	 */
+	private static LogSegmentSet snapshot(LogStorage logStorage, PagedLogStore logStore) throws IOException {
+
+		LogSource frozenStore = logStore.freeze();
+		long generation = logStorage.startNewGeneration();
+		LogSegmentSet storedSnapshot = logStorage.writeSnapshot(generation, frozenStore);
+
+		assertTrue(logStore.rebase(frozenStore, storedSnapshot));
+		return storedSnapshot;
+	}
+
+	private static void remove(PagedLogStore logStore, ArrayLogStore expectedLogs, int position) {
+		logStore.remove(position);
+		expectedLogs.remove(position);
+	}
+
+	private static List<Long> getSegmentIds(LogSegmentSet segmentSet) {
+		ArrayList<Long> segmentIds = new ArrayList<Long>();
+		for(LogSegment segment : segmentSet.getSegments())
+			segmentIds.add(segment.getId());
+		return segmentIds;
+	}
+
+	private int countSegmentFiles() {
+		int count = 0;
+		for(String fileName : directory.list())
+			if(fileName.startsWith(BASE_NAME + "-") && fileName.endsWith(".snapshot"))
+				count++;
+		return count;
+	}
+
+	private static void assertSameLogs(LogSource expectedLogs, LogSource logs) {
+
+		assertEquals(expectedLogs.size(), logs.size());
+
+		for(int i = 0; i < expectedLogs.size(); i++) {
+			assertEquals("Timestamp " + i, expectedLogs.getTimestamp(i), logs.getTimestamp(i));
+			assertEquals("Value " + i, expectedLogs.getValue(i), logs.getValue(i), 0.0);
+		}
+	}
+
+	private static void append(LogStorage logStorage, PagedLogStore logStore, long timestamp) throws IOException {
+		logStore.add(timestamp, 1.0);
+		LogJournal.Batch batch = new LogJournal.Batch();
+		batch.add(LogJournal.OP_ADD, logStore.size() - 1, timestamp, 1.0);
+		logStorage.append(batch);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
@@ -0,0 +1,163 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Failed writes of the background writer and snapshots that end the divergence of the journal
+ */
+public class PersistenceSchedulerTest {
+
+	private static final String BASE_NAME = "loglist";
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private File directory = null;
+
+	private final List<Exception> errors = new ArrayList<Exception>();
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("scheduler", "");
+		directory.delete();
+		assertTrue(directory.mkdir());
+	}
+
+	@After
+	public void deleteDirectory() {
+		delete(directory);
+	}
+
+	@Test
+	public void failedAppendRequiresASnapshot() throws Exception {
+
+		LogStorage logStorage = createStorage();
+		PagedLogStore logStore = logStorage.load();
+
+		//The journal of the current generation can not be opened again
+		logStorage.close();
+		File blockedJournal = new File(directory, BASE_NAME + ".0.journal");
+		assertTrue(blockedJournal.delete());
+		assertTrue(blockedJournal.mkdir());
+
+		PersistenceScheduler scheduler = createScheduler(logStorage);
+
+		add(scheduler, logStore, 1000L);
+		assertFalse(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(scheduler.isJournalDiverged());
+		assertEquals(1, errors.size());
+
+		//The following mutations are not appended on the diverged journal
+		add(scheduler, logStore, 2000L);
+		assertFalse(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(1, errors.size());
+
+		scheduler.scheduleSnapshot(logStore.freeze());
+		assertTrue(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertFalse(scheduler.isJournalDiverged());
+
+		add(scheduler, logStore, 3000L);
+		assertTrue(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		logStorage.close();
+
+		assertSameTimestamps(new long[] { 1000L, 2000L, 3000L }, createStorage().load());
+	}
+
+	@Test
+	public void failedResetKeepsThePreviousList() throws Exception {
+
+		LogStorage logStorage = createStorage();
+		PagedLogStore logStore = logStorage.load();
+		PersistenceScheduler scheduler = createScheduler(logStorage);
+
+		add(scheduler, logStore, 1000L);
+		add(scheduler, logStore, 2000L);
+		assertTrue(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		//The journal of the snapshot of the reset can not be opened
+		File blockedJournal = new File(directory, BASE_NAME + ".1.journal");
+		assertTrue(blockedJournal.mkdir());
+
+		ArrayLogStore importedStore = new ArrayLogStore();
+		importedStore.add(5000L, 1.0);
+		logStore.reset(importedStore);
+		scheduler.scheduleReset(logStore.freeze());
+
+		//Records positioned on the new content, not valid on the journal of the previous one
+		add(scheduler, logStore, 6000L);
+		logStore.remove(0);
+		scheduler.submit(LogJournal.OP_REMOVE, 0, 0, 0);
+
+		assertFalse(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(scheduler.isJournalDiverged());
+		logStorage.close();
+		assertTrue(blockedJournal.delete());
+
+		assertSameTimestamps(new long[] { 1000L, 2000L }, createStorage().load());
+
+		//The next snapshot stores the new content
+		scheduler.scheduleSnapshot(logStore.freeze());
+		assertTrue(scheduler.awaitDurable(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		logStorage.close();
+
+		assertSameTimestamps(new long[] { 6000L }, createStorage().load());
+	}
+
+	private LogStorage createStorage() {
+		return new LogStorage(directory, BASE_NAME, "loglist.txt");
+	}
+
+	/*
+	 * The callbacks are executed by the writer thread
+	 */
+	private PersistenceScheduler createScheduler(LogStorage logStorage) {
+		return new PersistenceScheduler(logStorage, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		}, new PersistenceScheduler.Listener() {
+			@Override
+			public void onPersistenceError(Exception e) {
+				synchronized (errors) {
+					errors.add(e);
+				}
+			}
+
+			@Override
+			public void onSnapshotCompleted(LogSource snapshot, LogSegmentSet storedSnapshot) {
+			}
+		});
+	}
+
+	private static void add(PersistenceScheduler scheduler, PagedLogStore logStore, long timestamp) {
+		logStore.add(timestamp, 1.0);
+		scheduler.submit(LogJournal.OP_ADD, logStore.size() - 1, timestamp, 1.0);
+	}
+
+	private static void assertSameTimestamps(long[] expectedTimestamps, LogSource logs) {
+		assertEquals(expectedTimestamps.length, logs.size());
+		for(int i = 0; i < expectedTimestamps.length; i++)
+			assertEquals("Timestamp " + i, expectedTimestamps[i], logs.getTimestamp(i));
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
@@ -0,0 +1,96 @@
+package com.mobdev.hellofiles;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Histories of logs used by the benchmarks. The logs are generated with a fixed seed and the
+ * timestamps are sorted newest first, as produced by addLogToHead.
+ */
+public class BenchmarkHistory {
+
+	public static final String STORAGE_BASE_NAME = "loglist";
+
+	public static final String LEGACY_FILE_NAME = "loglist.txt";
+
+	private static final long SEED = 42;
+
+	private static final long FIRST_TIMESTAMP = 1585000000000L;
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private BenchmarkHistory() {
+	}
+
+	/**
+	 * @param size the number of logs
+	 * @return an in-memory history with one log per second
+	 */
+	public static ArrayLogStore generate(int size) {
+
+		Random random = new Random(SEED);
+		ArrayLogStore logStore = new ArrayLogStore(size);
+
+		for(int i = 0; i < size; i++)
+			logStore.add(FIRST_TIMESTAMP + (size - i) * 1000L, random.nextInt(10000) / 100.0);
+
+		return logStore;
+	}
+
+	/**
+	 * @return the timestamp following the newest log of a generated history
+	 */
+	public static long getNextTimestamp(int size) {
+		return FIRST_TIMESTAMP + (size + 1) * 1000L;
+	}
+
+	/**
+	 * Store a generated history on the internal storage of the context as a snapshot, as
+	 * LogListController does
+	 */
+	public static void writeSnapshot(LocalFilesContext context, int size) throws IOException {
+
+		context.clearFilesDir();
+
+		LogStorage logStorage = new LogStorage(context.getFilesDir(), STORAGE_BASE_NAME, LEGACY_FILE_NAME);
+		logStorage.load();
+		logStorage.writeSnapshot(logStorage.startNewGeneration(), generate(size));
+		logStorage.close();
+	}
+
+	/**
+	 * Store a generated history on the internal storage of the context as the single JSON file
+	 * written by the previous versions of the application
+	 */
+	public static void writeLegacyFile(LocalFilesContext context, int size) throws IOException {
+		context.clearFilesDir();
+		writeJsonDocument(context, new File(context.getFilesDir(), LEGACY_FILE_NAME), size);
+	}
+
+	/**
+	 * Write a generated history as a JSON document (the default format of the exports)
+	 */
+	public static void writeJsonDocument(LocalFilesContext context, File document, int size) throws IOException {
+		writeDocument(context, document, size, LogCodecs.JSON);
+	}
+
+	/**
+	 * Write a generated history as a document with the target format
+	 */
+	public static void writeDocument(LocalFilesContext context, File document, int size, LogCodec codec) throws IOException {
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(context.openOutputStream(document), "UTF-8"), WRITE_BUFFER_SIZE);
+
+		try {
+			codec.write(writer, generate(size), CHUNK_SIZE, null);
+		} finally {
+			writer.close();
+		}
+	}
+}
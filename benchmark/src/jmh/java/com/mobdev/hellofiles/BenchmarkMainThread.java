@@ -0,0 +1,140 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the Main Thread of the application used by the benchmarks on the JVM.
+ *
+ * The thread that creates it (the benchmark thread) plays the Main Thread: the callbacks posted by
+ * the background threads of LogListController are queued and executed by it before each operation,
+ * like the Looper does. It is also the Host of the controller: the messages are discarded and the
+ * errors stop the benchmark.
+ */
+public class BenchmarkMainThread implements Executor, LogListController.Host {
+
+	private Thread thread = Thread.currentThread();
+
+	private LinkedBlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<Runnable>();
+
+	/**
+	 * Listener collecting the result of an import or an export (Main Thread only)
+	 */
+	public static class Transfer implements LogTransferListener {
+
+		private boolean isDone = false;
+
+		private int processedLogs = 0;
+
+		private Exception error = null;
+
+		@Override
+		public void onProgress(int processedLogs, long processedBytes, long totalBytes) {
+		}
+
+		@Override
+		public void onCompleted(int processedLogs) {
+			this.processedLogs = processedLogs;
+			this.isDone = true;
+		}
+
+		@Override
+		public void onFailed(Exception e) {
+			this.error = e;
+			this.isDone = true;
+		}
+
+		@Override
+		public void onCancelled() {
+			onFailed(new IOException("Transfer Cancelled !"));
+		}
+	}
+
+	/**
+	 * Create a controller on the internal storage of the context and load the stored list, as
+	 * LogDescriptorManager does
+	 */
+	public LogListController createController(LocalFilesContext context) {
+		LogListController controller = new LogListController(context.getFilesDir(), BenchmarkHistory.STORAGE_BASE_NAME, BenchmarkHistory.LEGACY_FILE_NAME, this, this);
+		controller.load();
+		return controller;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		callbacks.add(command);
+	}
+
+	/**
+	 * Execute the queued callbacks
+	 */
+	public void runPending() {
+		Runnable callback;
+		while((callback = callbacks.poll()) != null)
+			callback.run();
+	}
+
+	/**
+	 * Execute the callbacks until the transfer is completed (the background thread of the transfer
+	 * also waits for the Main Thread, e.g. to copy the list)
+	 * @param transfer the listener of the transfer
+	 * @param timeoutMs the maximum time to wait in milliseconds
+	 * @return the processed logs
+	 * @throws IOException if the transfer has failed
+	 * @throws InterruptedException
+	 */
+	public int awaitTransfer(Transfer transfer, long timeoutMs) throws IOException, InterruptedException {
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+		while(!transfer.isDone) {
+
+			Runnable callback = callbacks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+			if(callback == null)
+				throw new IOException("Transfer not Completed in " + timeoutMs + " ms !");
+
+			callback.run();
+		}
+
+		if(transfer.error != null)
+			throw new IOException("Transfer Failed !", transfer.error);
+
+		return transfer.processedLogs;
+	}
+
+	@Override
+	public boolean isMainThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * LogListDiff depends on the RecyclerView library, so the benchmarks notify the replaced list as
+	 * a whole change (there are no listeners)
+	 */
+	@Override
+	public LogListController.ListDiff calculateDiff(LogSource oldList, LogSource newList) {
+		return null;
+	}
+
+	@Override
+	public void onDebugMessage(String message) {
+	}
+
+	@Override
+	public void onErrorMessage(String message) {
+	}
+
+	@Override
+	public void onPersistenceError(Exception e) {
+		throw new IllegalStateException("Error Saving Log List on File", e);
+	}
+
+	@Override
+	public void onLoadError(Exception e, File recoveryDirectory) {
+		throw new IllegalStateException("Error Reading Log List on File", e);
+	}
+}
@@ -0,0 +1,127 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stand-in for the file I/O of the Android Context used by the benchmarks on the JVM.
+ * The internal storage (getFilesDir()) and the external storage (getExternalFilesDir()) are two
+ * directories of a temporary folder of the local file system, and the shared documents (Uri) are
+ * plain files opened through openInputStream() and openOutputStream() like the ContentResolver.
+ */
+public class LocalFilesContext {
+
+	private File rootDir = null;
+
+	private File filesDir = null;
+
+	private File externalFilesDir = null;
+
+	private LocalFilesContext(File rootDir) {
+		this.rootDir = rootDir;
+		this.filesDir = new File(rootDir, "files");
+		this.externalFilesDir = new File(rootDir, "external");
+		this.filesDir.mkdirs();
+		this.externalFilesDir.mkdirs();
+	}
+
+	/**
+	 * Create a context on a new temporary folder
+	 * @param name the prefix of the folder name
+	 * @return the new context
+	 * @throws IOException
+	 */
+	public static LocalFilesContext create(String name) throws IOException {
+
+		File rootDir = File.createTempFile(name, "");
+
+		if(!rootDir.delete() || !rootDir.mkdirs())
+			throw new IOException("Error Creating Benchmark Folder: " + rootDir.getAbsolutePath());
+
+		return new LocalFilesContext(rootDir);
+	}
+
+	public File getFilesDir() {
+		return filesDir;
+	}
+
+	public File getExternalFilesDir(String type) {
+		File dir = type != null ? new File(externalFilesDir, type) : externalFilesDir;
+		dir.mkdirs();
+		return dir;
+	}
+
+	public InputStream openInputStream(File document) throws IOException {
+		return new FileInputStream(document);
+	}
+
+	public OutputStream openOutputStream(File document) throws IOException {
+		return new FileOutputStream(document);
+	}
+
+	/**
+	 * @return the document read by an import, as the Uri selected by the user
+	 */
+	public LogListController.ImportSource getImportSource(final File document) {
+		return new LogListController.ImportSource() {
+			@Override
+			public InputStream openInputStream() throws IOException {
+				return LocalFilesContext.this.openInputStream(document);
+			}
+
+			@Override
+			public long getSize() {
+				return document.length();
+			}
+		};
+	}
+
+	/**
+	 * @return the destination of an export, as the Uri selected by the user
+	 */
+	public LogListController.ExportTarget getExportTarget(final File document) {
+		return new LogListController.ExportTarget() {
+			@Override
+			public OutputStream openOutputStream() throws IOException {
+				return LocalFilesContext.this.openOutputStream(document);
+			}
+
+			@Override
+			public void close(boolean isCompleted) {
+			}
+		};
+	}
+
+	/**
+	 * Remove all the files of the internal storage (e.g. to start again from a new history)
+	 */
+	public void clearFilesDir() {
+		deleteContent(filesDir);
+	}
+
+	/**
+	 * Remove the temporary folder with all its content
+	 */
+	public void delete() {
+		deleteContent(rootDir);
+		rootDir.delete();
+	}
+
+	private static void deleteContent(File dir) {
+
+		File[] files = dir.listFiles();
+
+		if(files == null)
+			return;
+
+		for(File file : files) {
+			if(file.isDirectory())
+				deleteContent(file);
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.mobdev.hellofiles;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of rendering the timestamps of a history (as done by an export) with LogTimestampFormatter
+ * compared to a SimpleDateFormat, and of the row texts of the list read through LogTextCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LogFormattingBenchmark {
+
+	@Param({"100000", "1000000"})
+	public int historySize;
+
+	private long[] timestamps = null;
+
+	private double[] values = null;
+
+	private StringBuilder builder = new StringBuilder(64);
+
+	private char[] rowBuffer = new char[128];
+
+	@Setup(Level.Trial)
+	public void createHistory() {
+		ArrayLogStore history = BenchmarkHistory.generate(historySize);
+		timestamps = new long[historySize];
+		values = new double[historySize];
+		history.getRange(0, historySize, timestamps, values, 0);
+	}
+
+	@Benchmark
+	public int formatTimestamps() {
+
+		LogTimestampFormatter formatter = LogTimestampFormatter.createIso8601();
+		int length = 0;
+
+		for(long timestamp : timestamps) {
+			builder.setLength(0);
+			formatter.format(timestamp, builder);
+			length += builder.length();
+		}
+
+		return length;
+	}
+
+	@Benchmark
+	public int formatTimestampsSimpleDateFormat() {
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		int length = 0;
+
+		for(long timestamp : timestamps)
+			length += dateFormat.format(new Date(timestamp)).length();
+
+		return length;
+	}
+
+	/**
+	 * Rows shown twice, as when the list is scrolled back and forth over the same window of rows
+	 */
+	@Benchmark
+	public int formatRows() {
+
+		LogTextCache textCache = new LogTextCache();
+		int length = 0;
+
+		for(int window = 0; window < historySize; window += 32)
+			for(int pass = 0; pass < 2; pass++)
+				for(int i = window; i < Math.min(window + 32, historySize); i++)
+					length += textCache.getText(timestamps[i], values[i], rowBuffer);
+
+		return length;
+	}
+}
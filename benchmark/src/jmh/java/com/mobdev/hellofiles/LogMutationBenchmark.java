@@ -0,0 +1,101 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single mutation of the log list (in memory update plus journal submission), as
+ * executed on the Main Thread by LogListController.addLogToHead(), removeLog(int) and removeLog(long, double).
+ * The history is stored again before each iteration so every iteration starts from the same list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogMutationBenchmark {
+
+	/*
+	 * Removals executed by each iteration of the single shot benchmarks
+	 */
+	private static final int REMOVE_BATCH_SIZE = 100;
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int historySize;
+
+	private LocalFilesContext context = null;
+
+	private BenchmarkMainThread mainThread = null;
+
+	private LogListController controller = null;
+
+	private Random random = null;
+
+	private long nextTimestamp = 0;
+
+	@Setup(Level.Trial)
+	public void createContext() throws IOException {
+		context = LocalFilesContext.create("log-mutation");
+	}
+
+	@Setup(Level.Iteration)
+	public void loadHistory() throws IOException {
+		BenchmarkHistory.writeSnapshot(context, historySize);
+		mainThread = new BenchmarkMainThread();
+		controller = mainThread.createController(context);
+		random = new Random(historySize);
+		nextTimestamp = BenchmarkHistory.getNextTimestamp(historySize);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeController() throws IOException {
+		controller.close(TimeUnit.MINUTES.toMillis(1));
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteContext() {
+		context.delete();
+	}
+
+	@Benchmark
+	public int insertAtHead() {
+		mainThread.runPending();
+		controller.addLogToHead(nextTimestamp++, random.nextInt(10000) / 100.0);
+		return controller.getLogStore().size();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = REMOVE_BATCH_SIZE)
+	@Measurement(iterations = 10, batchSize = REMOVE_BATCH_SIZE)
+	public int removeByPosition() {
+		mainThread.runPending();
+		LogStore logStore = controller.getLogStore();
+		controller.removeLog(random.nextInt(logStore.size()));
+		return logStore.size();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 3, batchSize = REMOVE_BATCH_SIZE)
+	@Measurement(iterations = 10, batchSize = REMOVE_BATCH_SIZE)
+	public int removeByObject() {
+		mainThread.runPending();
+		LogStore logStore = controller.getLogStore();
+		int position = random.nextInt(logStore.size());
+		controller.removeLog(logStore.getTimestamp(position), logStore.getValue(position));
+		return logStore.size();
+	}
+}
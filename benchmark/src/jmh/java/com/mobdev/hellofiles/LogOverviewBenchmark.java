@@ -0,0 +1,87 @@
+package com.mobdev.hellofiles;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of charting the whole history from the LogOverview levels (min/max envelope and LTTB points
+ * for a chart of the width of a phone screen), which should not depend on the size of the history,
+ * compared to the LTTB of all the logs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LogOverviewBenchmark {
+
+	private static final int CHART_WIDTH = 1080;
+
+	@Param({"100000", "1000000"})
+	public int historySize;
+
+	private PagedLogStore logStore = null;
+
+	private LogOverview overview = null;
+
+	private long[] timestamps = null;
+
+	private double[] values = null;
+
+	private ArrayLogStore points = new ArrayLogStore(2 * CHART_WIDTH);
+
+	@Setup(Level.Trial)
+	public void createHistory() {
+
+		ArrayLogStore history = BenchmarkHistory.generate(historySize);
+		logStore = new PagedLogStore(history.copy());
+		overview = logStore.getOverview();
+
+		//The generated history is newest first, LTTB needs the logs in timestamp order
+		timestamps = new long[historySize];
+		values = new double[historySize];
+
+		for(int i = 0; i < historySize; i++) {
+			timestamps[i] = history.getTimestamp(historySize - 1 - i);
+			values[i] = history.getValue(historySize - 1 - i);
+		}
+	}
+
+	@Benchmark
+	public int overviewEnvelope() {
+		points.clear();
+		return overview.getEnvelope(overview.getFirstTimestamp(), overview.getLastTimestamp(), CHART_WIDTH, points);
+	}
+
+	@Benchmark
+	public int overviewPoints() {
+		points.clear();
+		return overview.getPoints(overview.getFirstTimestamp(), overview.getLastTimestamp(), CHART_WIDTH / 4, points);
+	}
+
+	@Benchmark
+	public int fullHistoryPoints() {
+		points.clear();
+		return LogDownsampler.largestTriangleThreeBuckets(timestamps, values, historySize, CHART_WIDTH / 4, points);
+	}
+
+	/**
+	 * Log added to the list with the overview kept up to date
+	 */
+	@Benchmark
+	public int addLog() {
+		logStore.add(BenchmarkHistory.getNextTimestamp(historySize) + logStore.size() * 1000L, 42.0);
+		return logStore.size();
+	}
+}
@@ -0,0 +1,135 @@
+package com.mobdev.hellofiles;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of loading the stored log list (LogListController.load()) and of writing a new snapshot
+ * (the background part of the snapshots of LogListController).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class LogStorageBenchmark {
+
+	private static final int SCAN_CHUNK_SIZE = 4096;
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int historySize;
+
+	private LocalFilesContext snapshotContext = null;
+
+	private LocalFilesContext legacyContext = null;
+
+	private ArrayLogStore history = null;
+
+	@Setup(Level.Trial)
+	public void createHistory() throws IOException {
+		snapshotContext = LocalFilesContext.create("log-storage");
+		legacyContext = LocalFilesContext.create("log-storage-legacy");
+		BenchmarkHistory.writeSnapshot(snapshotContext, historySize);
+		history = BenchmarkHistory.generate(historySize);
+	}
+
+	@Setup(Level.Iteration)
+	public void createLegacyFile() throws IOException {
+		//The legacy file is removed by the first snapshot written after loading it
+		BenchmarkHistory.writeLegacyFile(legacyContext, historySize);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteHistory() {
+		snapshotContext.delete();
+		legacyContext.delete();
+	}
+
+	/**
+	 * Open the snapshot: only the header and the block offsets are read
+	 */
+	@Benchmark
+	public int load() throws IOException {
+		LogStorage logStorage = newLogStorage(snapshotContext);
+		try {
+			return logStorage.load().size();
+		} finally {
+			logStorage.close();
+		}
+	}
+
+	/**
+	 * Open the snapshot and decode all its logs
+	 */
+	@Benchmark
+	public double loadAndScan() throws IOException {
+		LogStorage logStorage = newLogStorage(snapshotContext);
+		try {
+			return scan(logStorage.load());
+		} finally {
+			logStorage.close();
+		}
+	}
+
+	/**
+	 * Load the single JSON file of the previous versions (Gson with a TypeToken of Collection<LogDescriptor>)
+	 */
+	@Benchmark
+	public double loadLegacyJson() throws IOException {
+		LogStorage logStorage = newLogStorage(legacyContext);
+		try {
+			return scan(logStorage.load());
+		} finally {
+			logStorage.close();
+		}
+	}
+
+	/**
+	 * Write a new snapshot (all the segments with their time index and aggregates)
+	 */
+	@Benchmark
+	public long writeSnapshot() throws IOException {
+		LogStorage logStorage = newLogStorage(snapshotContext);
+		try {
+			logStorage.load();
+			LogSegmentSet storedSnapshot = logStorage.writeSnapshot(logStorage.startNewGeneration(), history);
+			return storedSnapshot.getByteSize();
+		} finally {
+			logStorage.close();
+		}
+	}
+
+	private static LogStorage newLogStorage(LocalFilesContext context) {
+		return new LogStorage(context.getFilesDir(), BenchmarkHistory.STORAGE_BASE_NAME, BenchmarkHistory.LEGACY_FILE_NAME);
+	}
+
+	private static double scan(LogSource logSource) {
+
+		long[] timestamps = new long[SCAN_CHUNK_SIZE];
+		double[] values = new double[SCAN_CHUNK_SIZE];
+		double sum = 0.0;
+		int size = logSource.size();
+
+		for(int chunkStart = 0; chunkStart < size; chunkStart += SCAN_CHUNK_SIZE) {
+			int chunkCount = Math.min(SCAN_CHUNK_SIZE, size - chunkStart);
+			logSource.getRange(chunkStart, chunkCount, timestamps, values, 0);
+			for(int i = 0; i < chunkCount; i++)
+				sum += values[i];
+		}
+
+		return sum;
+	}
+}
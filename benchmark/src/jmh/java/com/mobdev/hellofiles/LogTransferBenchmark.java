@@ -0,0 +1,92 @@
+package com.mobdev.hellofiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the export of the log list as a document of each format and of the import of a document
+ * (format detection, decoding, overview and replacement of the list and snapshot of the imported list),
+ * executed by LogListController on its transfer thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LogTransferBenchmark {
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int historySize;
+
+	@Param({"json", "ndjson", "csv"})
+	public String format;
+
+	private LocalFilesContext context = null;
+
+	private BenchmarkMainThread mainThread = null;
+
+	private LogListController controller = null;
+
+	private File importedDocument = null;
+
+	private File exportedDocument = null;
+
+	@Setup(Level.Trial)
+	public void createHistory() throws IOException {
+		context = LocalFilesContext.create("log-transfer");
+		importedDocument = new File(context.getExternalFilesDir("Documents"), "imported_loglist.txt");
+		exportedDocument = new File(context.getExternalFilesDir("Documents"), "exported_loglist.txt");
+		BenchmarkHistory.writeDocument(context, importedDocument, historySize, LogCodecs.forName(format));
+	}
+
+	@Setup(Level.Iteration)
+	public void loadHistory() throws IOException {
+		BenchmarkHistory.writeSnapshot(context, historySize);
+		mainThread = new BenchmarkMainThread();
+		controller = mainThread.createController(context);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeController() throws IOException {
+		controller.close(TimeUnit.MINUTES.toMillis(1));
+		exportedDocument.delete();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteHistory() {
+		context.delete();
+	}
+
+	@Benchmark
+	public int export() throws IOException, InterruptedException {
+		BenchmarkMainThread.Transfer transfer = new BenchmarkMainThread.Transfer();
+		controller.startExport(context.getExportTarget(exportedDocument), LogCodecs.forName(format), transfer);
+		return mainThread.awaitTransfer(transfer, TimeUnit.MINUTES.toMillis(10));
+	}
+
+	/**
+	 * The import is completed when the snapshot of the imported list has been written
+	 */
+	@Benchmark
+	public int importDocument() throws IOException, InterruptedException {
+		BenchmarkMainThread.Transfer transfer = new BenchmarkMainThread.Transfer();
+		controller.startImport(context.getImportSource(importedDocument), LogListController.IMPORT_REPLACE, transfer);
+		int importedLogs = mainThread.awaitTransfer(transfer, TimeUnit.MINUTES.toMillis(10));
+		controller.awaitDurable(TimeUnit.MINUTES.toMillis(10));
+		return importedLogs;
+	}
+}